@@ -1,16 +1,30 @@
 import ast.ASTPrinter;
+import ast.ConstantFolder;
 import ast.Program;
 import gen.CodeGenerator;
+import ir.IRBuilder;
+import ir.IRPrinter;
+import ir.Inliner;
+import ir.Module;
+import ir.Optimizer;
+import lexer.BufferScanner;
+import lexer.ParallelTokeniser;
 import lexer.Scanner;
 import lexer.Token;
+import lexer.TokenStream;
 import lexer.Tokeniser;
 import parser.Parser;
+import parser.TableParser;
+import sem.HeaderCache;
 import sem.SemanticAnalyzer;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -28,43 +42,116 @@ public class Main {
     private static final int PASS           = 0;
     
     private enum Mode {
-        LEXER, PARSER, AST, SEMANTICANALYSIS, GEN
+        LEXER, PARSER, AST, SEMANTICANALYSIS, IR, GEN
     }
 
     private static void usage() {
-        System.out.println("Usage: java "+Main.class.getSimpleName()+" pass inputfile outputfile");
-        System.out.println("where pass is either: -lexer, -parser, -ast, -sem or -gen");
+        System.out.println("Usage: java "+Main.class.getSimpleName()+" pass inputfile outputfile [options]");
+        System.out.println("where pass is either: -lexer, -parser, -ast, -sem, -ir or -gen");
+        System.out.println("and options are any of:");
+        System.out.println("  -mmap    read the whole input through a memory-mapped buffer");
+        System.out.println("  -plex    lex large inputs in parallel chunks (implies -mmap)");
+        System.out.println("  -chunk n lex in parallel chunks of about n characters (implies -plex)");
+        System.out.println("  -table   parse with the table driven LL(k) parser generated from the grammar");
+        System.out.println("  -I dir   also search dir for the headers of #include directives");
+        System.out.println("  -two-pass  resolve names and check types in two traversals instead of one");
+        System.out.println("  -psem    check the function bodies in parallel (not with -two-pass)");
+        System.out.println("  -peephole-stats  print how many instructions each peephole rule removed");
+        System.out.println("  -inline-threshold n  inline the functions of at most n IR instructions, 0 for none");
         System.exit(-1);
     }
 
     public static void main(String[] args) {
 
-        if (args.length != 3)
+        if (args.length < 3)
             usage();
 
         Mode mode = null;
         switch (args[0]) {
             case "-lexer": mode = Mode.LEXER; break;	case "-parser": mode = Mode.PARSER; break;
             case "-ast":   mode = Mode.AST; break;		case "-sem":    mode = Mode.SEMANTICANALYSIS; break;
-            case "-gen":   mode = Mode.GEN; break;
+            case "-ir":    mode = Mode.IR; break;		case "-gen":    mode = Mode.GEN; break;
             default:
                 usage();
                 break;
         }
 
+        boolean mmap = false;
+        boolean parallelLex = false;
+        int chunkSize = ParallelTokeniser.DEFAULT_CHUNK_SIZE;
+        boolean tableParser = false;
+        boolean twoPass = false;
+        boolean parallelSem = false;
+        boolean peepholeStats = false;
+        int inlineThreshold = Inliner.DEFAULT_THRESHOLD;
+        List<File> includePaths = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            switch (args[i]) {
+                case "-mmap": mmap = true; break;
+                case "-plex": mmap = parallelLex = true; break;
+                case "-table": tableParser = true; break;
+                case "-two-pass": twoPass = true; break;
+                case "-psem": parallelSem = true; break;
+                case "-peephole-stats": peepholeStats = true; break;
+                case "-I":
+                    if (++i == args.length)
+                        usage();
+                    includePaths.add(new File(args[i]));
+                    break;
+                case "-chunk":
+                    if (++i == args.length || !args[i].matches("\\d+") || Integer.parseInt(args[i]) == 0)
+                        usage();
+                    chunkSize = Integer.parseInt(args[i]);
+                    mmap = parallelLex = true;
+                    break;
+                case "-inline-threshold":
+                    if (++i == args.length || !args[i].matches("\\d+"))
+                        usage();
+                    inlineThreshold = Integer.parseInt(args[i]);
+                    break;
+                default:
+                    usage();
+                    break;
+            }
+        }
+
+        // the parallel analyzer runs the fused visitor per body, there is no two-pass variant of it
+        if (twoPass && parallelSem)
+            usage();
+
         File inputFile = new File(args[1]);
         File outputFile = new File(args[2]);
 
         Scanner scanner;
         try {
-            scanner = new Scanner(inputFile);
+            scanner = mmap ? new BufferScanner(inputFile) : new Scanner(inputFile);
         } catch (FileNotFoundException e) {
             System.out.println("File "+inputFile.toString()+" does not exist.");
             System.exit(FILE_NOT_FOUND);
             return;
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(FILE_NOT_FOUND);
+            return;
         }
 
         Tokeniser tokeniser = new Tokeniser(scanner);
+        TokenStream tokens;
+        if (parallelLex) {
+            ParallelTokeniser parallel = new ParallelTokeniser(((BufferScanner) scanner).getBuffer(), tokeniser.getNameTable(), chunkSize);
+            tokens = parallel.tokenise();
+            if (mode == Mode.LEXER) {
+                for (int i = 0; tokens.tokenClass(i) != Token.TokenClass.EOF; i++)
+                    System.out.println(tokens.token(i));
+                if (parallel.getErrorCount() == 0)
+                    System.out.println("Lexing: pass");
+                else
+                    System.out.println("Lexing: failed ("+parallel.getErrorCount()+" errors)");
+                System.exit(parallel.getErrorCount() == 0 ? PASS : LEXER_FAIL);
+            }
+        } else
+            tokens = new TokenStream(tokeniser);
+
         if (mode == Mode.LEXER) {
             for (Token t = tokeniser.nextToken(); t.tokenClass != Token.TokenClass.EOF; t = tokeniser.nextToken()) 
             	System.out.println(t);
@@ -73,18 +160,28 @@ public class Main {
     	    else
         		System.out.println("Lexing: failed ("+tokeniser.getErrorCount()+" errors)");	
             System.exit(tokeniser.getErrorCount() == 0 ? PASS : LEXER_FAIL);
-        } else if (mode == Mode.PARSER) {
-		    Parser parser = new Parser(tokeniser);
-		    parser.parse();
-		    if (parser.getErrorCount() == 0)
+        }
+
+        Program programAst;
+        int parseErrors;
+        if (tableParser) {
+            TableParser parser = new TableParser(tokens);
+            programAst = parser.parse();
+            parseErrors = parser.getErrorCount();
+        } else {
+            Parser parser = new Parser(tokens);
+            programAst = parser.parse();
+            parseErrors = parser.getErrorCount();
+        }
+
+        if (mode == Mode.PARSER) {
+		    if (parseErrors == 0)
 		    	System.out.println("Parsing: pass");
 		    else
-		    	System.out.println("Parsing: failed ("+parser.getErrorCount()+" errors)");
-		    System.exit(parser.getErrorCount() == 0 ? PASS : PARSER_FAIL);
+		    	System.out.println("Parsing: failed ("+parseErrors+" errors)");
+		    System.exit(parseErrors == 0 ? PASS : PARSER_FAIL);
         }  else if (mode == Mode.AST) {
-            Parser parser = new Parser(tokeniser);
-            Program programAst = parser.parse();
-            if (parser.getErrorCount() == 0) {
+            if (parseErrors == 0) {
                 System.out.println("Parsing: pass");
                 System.out.println("Printing out AST:");
                 PrintWriter writer;
@@ -99,14 +196,13 @@ public class Main {
                     e.printStackTrace();
                 }
             } else
-                System.out.println("Parsing: failed ("+parser.getErrorCount()+" errors)");
-            System.exit(parser.getErrorCount() == 0 ? PASS : PARSER_FAIL);
+                System.out.println("Parsing: failed ("+parseErrors+" errors)");
+            System.exit(parseErrors == 0 ? PASS : PARSER_FAIL);
         } else if (mode == Mode.SEMANTICANALYSIS) {
-            Parser parser = new Parser(tokeniser);
-            Program programAst = parser.parse();
-            if (parser.getErrorCount() == 0) {
-                SemanticAnalyzer sem = new SemanticAnalyzer();
-                int errors = sem.analyze(programAst);
+            if (parseErrors == 0) {
+                SemanticAnalyzer sem = new SemanticAnalyzer(twoPass, parallelSem);
+                int errors = HeaderCache.shared().resolve(programAst, inputFile, includePaths, sem);
+                errors += sem.analyze(programAst);
                 if (errors == 0)
                     System.out.println("Semantic analysis: Pass");
                 else
@@ -114,18 +210,31 @@ public class Main {
                 System.exit(errors == 0 ? PASS : SEM_FAIL);
             } else
                 System.exit(PARSER_FAIL);
-        } else if (mode == Mode.GEN) {
-            Parser parser = new Parser(tokeniser);
-            Program programAst = parser.parse();
-            if (parser.getErrorCount() > 0)
+        } else if (mode == Mode.IR || mode == Mode.GEN) {
+            if (parseErrors > 0)
                 System.exit(PARSER_FAIL);
-            SemanticAnalyzer sem = new SemanticAnalyzer();
-            int errors = sem.analyze(programAst);
+            SemanticAnalyzer sem = new SemanticAnalyzer(twoPass, parallelSem);
+            int errors = HeaderCache.shared().resolve(programAst, inputFile, includePaths, sem);
+            errors += sem.analyze(programAst);
             if (errors > 0)
                 System.exit(SEM_FAIL);
-            CodeGenerator codegen = new CodeGenerator();
+            new ConstantFolder().fold(programAst);
+            if (mode == Mode.IR) {
+                try (PrintWriter writer = new PrintWriter(outputFile)) {
+                    Module module = new IRBuilder().lower(programAst);
+                    new Optimizer(inlineThreshold).optimize(module);
+                    new IRPrinter(writer).print(module);
+                } catch (FileNotFoundException e) {
+                    System.out.println("File "+outputFile.toString()+" does not exist.");
+                    System.exit(FILE_NOT_FOUND);
+                }
+                System.exit(PASS);
+            }
+            CodeGenerator codegen = new CodeGenerator(new Optimizer(inlineThreshold));
             try {
                 codegen.emitProgram(programAst, outputFile);
+                if (peepholeStats)
+                    codegen.reportPeephole(System.out);
             } catch (FileNotFoundException e) {
                 System.out.println("File "+outputFile.toString()+" does not exist.");
                 System.exit(FILE_NOT_FOUND);
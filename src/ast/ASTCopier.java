@@ -0,0 +1,168 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies a program as the parser built it, so that semantic analysis and constant folding can
+ * annotate and rewrite the copy while the original is kept, e.g. by the header cache.
+ * Types are canonical and immutable, hence shared; the annotations are not copied.
+ */
+public class ASTCopier implements ASTVisitor<ASTNode> {
+
+    public Program copy(Program p) {
+        return (Program) p.accept(this);
+    }
+
+    private Expr copy(Expr e) {
+        return e == null ? null : (Expr) e.accept(this);
+    }
+
+    private Stmt copy(Stmt s) {
+        return s == null ? null : (Stmt) s.accept(this);
+    }
+
+    private List<VarDecl> copyVarDecls(List<VarDecl> vds) {
+        List<VarDecl> copies = new ArrayList<>(vds.size());
+        for (VarDecl vd : vds)
+            copies.add((VarDecl) vd.accept(this));
+        return copies;
+    }
+
+    @Override
+    public ASTNode visitProgram(Program p) {
+        List<StructTypeDecl> stds = new ArrayList<>(p.structTypeDecls.size());
+        for (StructTypeDecl std : p.structTypeDecls)
+            stds.add((StructTypeDecl) std.accept(this));
+        List<FunDecl> fds = new ArrayList<>(p.funDecls.size());
+        for (FunDecl fd : p.funDecls)
+            fds.add((FunDecl) fd.accept(this));
+        return new Program(new ArrayList<>(p.includes), stds, copyVarDecls(p.varDecls), fds);
+    }
+
+    @Override
+    public ASTNode visitStructTypeDecl(StructTypeDecl std) {
+        return new StructTypeDecl(std.st, copyVarDecls(std.varDecls));
+    }
+
+    @Override
+    public ASTNode visitVarDecl(VarDecl vd) {
+        return new VarDecl(vd.type, vd.varName);
+    }
+
+    @Override
+    public ASTNode visitFunDecl(FunDecl fd) {
+        return new FunDecl(fd.type, fd.name, copyVarDecls(fd.params), fd.block == null ? null : (Block) fd.block.accept(this));
+    }
+
+    @Override
+    public ASTNode visitBlock(Block b) {
+        List<Stmt> stmts = new ArrayList<>(b.Stmt.size());
+        for (Stmt s : b.Stmt)
+            stmts.add(copy(s));
+        return new Block(copyVarDecls(b.varDecls), stmts);
+    }
+
+    @Override
+    public ASTNode visitWhile(While w) {
+        return new While(copy(w.e), copy(w.s));
+    }
+
+    @Override
+    public ASTNode visitIf(If i) {
+        return new If(copy(i.e), copy(i.s1), copy(i.s2));
+    }
+
+    @Override
+    public ASTNode visitAssign(Assign a) {
+        return new Assign(copy(a.e1), copy(a.e2));
+    }
+
+    @Override
+    public ASTNode visitReturn(Return r) {
+        return new Return(copy(r.e));
+    }
+
+    @Override
+    public ASTNode visitExprStmt(ExprStmt es) {
+        return new ExprStmt(copy(es.e));
+    }
+
+    @Override
+    public ASTNode visitIntLiteral(IntLiteral il) {
+        return new IntLiteral(il.i);
+    }
+
+    @Override
+    public ASTNode visitStrLiteral(StrLiteral sl) {
+        return new StrLiteral(sl.s);
+    }
+
+    @Override
+    public ASTNode visitChrLiteral(ChrLiteral cl) {
+        return new ChrLiteral(cl.c);
+    }
+
+    @Override
+    public ASTNode visitVarExpr(VarExpr v) {
+        return new VarExpr(v.name);
+    }
+
+    @Override
+    public ASTNode visitFunCallExpr(FunCallExpr fc) {
+        List<Expr> args = new ArrayList<>(fc.Exprs.size());
+        for (Expr e : fc.Exprs)
+            args.add(copy(e));
+        return new FunCallExpr(fc.s, args);
+    }
+
+    @Override
+    public ASTNode visitBinOp(BinOp bo) {
+        return new BinOp(copy(bo.Exprs1), bo.op, copy(bo.Exprs2));
+    }
+
+    @Override
+    public ASTNode visitArrayAccessExpr(ArrayAccessExpr aae) {
+        return new ArrayAccessExpr(copy(aae.e1), copy(aae.e2));
+    }
+
+    @Override
+    public ASTNode visitFieldAccessExpr(FieldAccessExpr fae) {
+        return new FieldAccessExpr(copy(fae.e), fae.s);
+    }
+
+    @Override
+    public ASTNode visitValueAtExpr(ValueAtExpr vae) {
+        return new ValueAtExpr(copy(vae.e));
+    }
+
+    @Override
+    public ASTNode visitSizeOfExpr(SizeOfExpr soe) {
+        return new SizeOfExpr(soe.t);
+    }
+
+    @Override
+    public ASTNode visitTypecastExpr(TypecastExpr te) {
+        return new TypecastExpr(te.t, copy(te.e));
+    }
+
+    @Override
+    public ASTNode visitBaseType(BaseType bt) {
+        return bt;
+    }
+
+    @Override
+    public ASTNode visitPointerType(PointerType pt) {
+        return pt;
+    }
+
+    @Override
+    public ASTNode visitStructType(StructType st) {
+        return st;
+    }
+
+    @Override
+    public ASTNode visitArrayType(ArrayType at) {
+        return at;
+    }
+}
@@ -4,14 +4,34 @@ public class ArrayType implements Type{
 
     public final Type t;
     public final int i;
+    private final int id;
+    // SIZE_UNKNOWN for an array of structs, see Types.Layout
+    private final int size;
 
-    public ArrayType(Type t, int i) {
+    /*
+     * Use Types.array, array types are canonical.
+     */
+    ArrayType(Type t, int i, int id) {
         this.t = t;
         this.i = i;
+        this.id = id;
+        this.size = t instanceof StructType ? Types.SIZE_UNKNOWN : Types.arraySize(t, i);
     }
 
     @Override
     public <T> T accept(ASTVisitor<T> v) {
         return v.visitArrayType(this);
     }
+
+    public int id() {
+        return id;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int align() {
+        return 4;
+    }
 }
@@ -6,4 +6,17 @@ public enum BaseType implements Type {
     public <T> T accept(ASTVisitor<T> v) {
         return v.visitBaseType(this);
     }
+
+    public int id() {
+        return ordinal();
+    }
+
+    // chars take a whole word, like ints
+    public int size() {
+        return this == VOID ? 0 : 4;
+    }
+
+    public int align() {
+        return this == VOID ? 1 : 4;
+    }
 }
@@ -0,0 +1,334 @@
+package ast;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Folds the constant expressions of a program which passed semantic analysis: the arithmetic and
+ * comparisons of literals, sizeof (the structs being laid out first) and the casts of literals. It also simplifies x+0, x-0, x*1 and
+ * x/1 to x, and x*0, x%1, x-x and the comparisons of an expression with itself to a literal when x
+ * has no side effects.
+ *
+ * Nodes are immutable, so an expression or statement is rebuilt when one of its children changed;
+ * the statements of blocks and the arguments of calls are replaced in place. The functions of the
+ * included headers are folded too, as the code generator emits them; each compilation has its own
+ * copy of a header (see HeaderCache).
+ */
+public class ConstantFolder implements ASTVisitor<ASTNode> {
+
+    private Types.Layout layout;
+
+    public void fold(Program p) {
+        layout = Types.layout(p);
+        fold(p, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    // folds the headers first, each of them once
+    private void fold(Program p, Set<Program> done) {
+        if (!done.add(p))
+            return;
+        for (Program h : p.headers)
+            fold(h, done);
+        p.accept(this);
+    }
+
+    private Expr fold(Expr e) {
+        return (Expr) e.accept(this);
+    }
+
+    private Stmt fold(Stmt s) {
+        return s == null ? null : (Stmt) s.accept(this);
+    }
+
+    private static IntLiteral literal(int i) {
+        IntLiteral il = new IntLiteral(i);
+        il.type = BaseType.INT;
+        return il;
+    }
+
+    private static <E extends Expr> E typed(E e, Expr original) {
+        e.type = original.type;
+        return e;
+    }
+
+    /*
+     * Value of an int or char literal, null for any other expression.
+     */
+    private static Integer value(Expr e) {
+        if (e instanceof IntLiteral)
+            return ((IntLiteral) e).i;
+        if (e instanceof ChrLiteral)
+            return (int) ((ChrLiteral) e).c;
+        return null;
+    }
+
+    /*
+     * Whether evaluating the expression only reads memory.
+     */
+    private static boolean isPure(Expr e) {
+        if (e instanceof VarExpr || e instanceof IntLiteral || e instanceof ChrLiteral || e instanceof StrLiteral || e instanceof SizeOfExpr)
+            return true;
+        if (e instanceof BinOp)
+            return isPure(((BinOp) e).Exprs1) && isPure(((BinOp) e).Exprs2);
+        if (e instanceof ArrayAccessExpr)
+            return isPure(((ArrayAccessExpr) e).e1) && isPure(((ArrayAccessExpr) e).e2);
+        if (e instanceof FieldAccessExpr)
+            return isPure(((FieldAccessExpr) e).e);
+        if (e instanceof ValueAtExpr)
+            return isPure(((ValueAtExpr) e).e);
+        if (e instanceof TypecastExpr)
+            return isPure(((TypecastExpr) e).e);
+        return false;
+    }
+
+    /*
+     * Whether the two expressions are written the same, so have the same value when pure.
+     */
+    private static boolean same(Expr a, Expr b) {
+        if (a instanceof VarExpr && b instanceof VarExpr) {
+            VarExpr x = (VarExpr) a, y = (VarExpr) b;
+            return x.vd != null ? x.vd == y.vd : y.vd == null && x.name.equals(y.name);
+        }
+        if (value(a) != null)
+            return a.getClass() == b.getClass() && value(a).equals(value(b));
+        if (a instanceof BinOp && b instanceof BinOp) {
+            BinOp x = (BinOp) a, y = (BinOp) b;
+            return x.op == y.op && same(x.Exprs1, y.Exprs1) && same(x.Exprs2, y.Exprs2);
+        }
+        if (a instanceof ArrayAccessExpr && b instanceof ArrayAccessExpr) {
+            ArrayAccessExpr x = (ArrayAccessExpr) a, y = (ArrayAccessExpr) b;
+            return same(x.e1, y.e1) && same(x.e2, y.e2);
+        }
+        if (a instanceof FieldAccessExpr && b instanceof FieldAccessExpr)
+            return ((FieldAccessExpr) a).s.equals(((FieldAccessExpr) b).s) && same(((FieldAccessExpr) a).e, ((FieldAccessExpr) b).e);
+        if (a instanceof ValueAtExpr && b instanceof ValueAtExpr)
+            return same(((ValueAtExpr) a).e, ((ValueAtExpr) b).e);
+        if (a instanceof TypecastExpr && b instanceof TypecastExpr)
+            return ((TypecastExpr) a).t == ((TypecastExpr) b).t && same(((TypecastExpr) a).e, ((TypecastExpr) b).e);
+        return false;
+    }
+
+    /*
+     * Value of x op y, null when it is left to run time.
+     */
+    private static Integer evaluate(Op op, int x, int y) {
+        switch (op) {
+            case ADD: return x + y;
+            case SUB: return x - y;
+            case MUL: return x * y;
+            case DIV: return y == 0 || x == Integer.MIN_VALUE && y == -1 ? null : x / y;
+            case MOD: return y == 0 || x == Integer.MIN_VALUE && y == -1 ? null : x % y;
+            case GT: return x > y ? 1 : 0;
+            case LT: return x < y ? 1 : 0;
+            case GE: return x >= y ? 1 : 0;
+            case LE: return x <= y ? 1 : 0;
+            case NE: return x != y ? 1 : 0;
+            case EQ: return x == y ? 1 : 0;
+            case OR: return x != 0 || y != 0 ? 1 : 0;
+            case AND: return x != 0 && y != 0 ? 1 : 0;
+        }
+        return null;
+    }
+
+    @Override
+    public ASTNode visitBinOp(BinOp bo) {
+        Expr lhs = fold(bo.Exprs1);
+        Expr rhs = fold(bo.Exprs2);
+        Integer x = value(lhs);
+        Integer y = value(rhs);
+        if (x != null && y != null) {
+            Integer r = evaluate(bo.op, x, y);
+            if (r != null)
+                return literal(r);
+        }
+        switch (bo.op) {
+            case ADD:
+                if (y != null && y == 0)
+                    return lhs;
+                if (x != null && x == 0)
+                    return rhs;
+                break;
+            case SUB:
+                if (y != null && y == 0)
+                    return lhs;
+                if (isPure(lhs) && same(lhs, rhs))
+                    return literal(0);
+                break;
+            case MUL:
+                if (y != null && y == 1)
+                    return lhs;
+                if (x != null && x == 1)
+                    return rhs;
+                if (y != null && y == 0 && isPure(lhs) || x != null && x == 0 && isPure(rhs))
+                    return literal(0);
+                break;
+            case DIV:
+                if (y != null && y == 1)
+                    return lhs;
+                break;
+            case MOD:
+                if (y != null && y == 1 && isPure(lhs))
+                    return literal(0);
+                break;
+            case EQ: case LE: case GE:
+                if (isPure(lhs) && same(lhs, rhs))
+                    return literal(1);
+                break;
+            case NE: case LT: case GT:
+                if (isPure(lhs) && same(lhs, rhs))
+                    return literal(0);
+                break;
+            default:
+                break;
+        }
+        if (lhs == bo.Exprs1 && rhs == bo.Exprs2)
+            return bo;
+        return typed(new BinOp(lhs, bo.op, rhs), bo);
+    }
+
+    @Override
+    public ASTNode visitSizeOfExpr(SizeOfExpr soe) {
+        int size = layout.sizeOf(soe.t);
+        return size == Types.SIZE_UNKNOWN ? soe : literal(size);
+    }
+
+    @Override
+    public ASTNode visitTypecastExpr(TypecastExpr te) {
+        Expr e = fold(te.e);
+        if (te.t == BaseType.INT && value(e) != null)
+            return literal(value(e));
+        return e == te.e ? te : typed(new TypecastExpr(te.t, e), te);
+    }
+
+    @Override
+    public ASTNode visitFunCallExpr(FunCallExpr fc) {
+        fc.Exprs.replaceAll(this::fold);
+        return fc;
+    }
+
+    @Override
+    public ASTNode visitArrayAccessExpr(ArrayAccessExpr aae) {
+        Expr array = fold(aae.e1);
+        Expr index = fold(aae.e2);
+        return array == aae.e1 && index == aae.e2 ? aae : typed(new ArrayAccessExpr(array, index), aae);
+    }
+
+    @Override
+    public ASTNode visitFieldAccessExpr(FieldAccessExpr fae) {
+        Expr e = fold(fae.e);
+        return e == fae.e ? fae : typed(new FieldAccessExpr(e, fae.s), fae);
+    }
+
+    @Override
+    public ASTNode visitValueAtExpr(ValueAtExpr vae) {
+        Expr e = fold(vae.e);
+        return e == vae.e ? vae : typed(new ValueAtExpr(e), vae);
+    }
+
+    @Override
+    public ASTNode visitIntLiteral(IntLiteral il) {
+        return il;
+    }
+
+    @Override
+    public ASTNode visitStrLiteral(StrLiteral sl) {
+        return sl;
+    }
+
+    @Override
+    public ASTNode visitChrLiteral(ChrLiteral cl) {
+        return cl;
+    }
+
+    @Override
+    public ASTNode visitVarExpr(VarExpr v) {
+        return v;
+    }
+
+    @Override
+    public ASTNode visitBlock(Block b) {
+        b.Stmt.replaceAll(this::fold);
+        return b;
+    }
+
+    @Override
+    public ASTNode visitExprStmt(ExprStmt es) {
+        Expr e = fold(es.e);
+        return e == es.e ? es : new ExprStmt(e);
+    }
+
+    @Override
+    public ASTNode visitWhile(While w) {
+        Expr e = fold(w.e);
+        Stmt s = fold(w.s);
+        return e == w.e && s == w.s ? w : new While(e, s);
+    }
+
+    @Override
+    public ASTNode visitIf(If i) {
+        Expr e = fold(i.e);
+        Stmt s1 = fold(i.s1);
+        Stmt s2 = fold(i.s2);
+        return e == i.e && s1 == i.s1 && s2 == i.s2 ? i : new If(e, s1, s2);
+    }
+
+    @Override
+    public ASTNode visitAssign(Assign a) {
+        Expr lhs = fold(a.e1);
+        Expr rhs = fold(a.e2);
+        return lhs == a.e1 && rhs == a.e2 ? a : new Assign(lhs, rhs);
+    }
+
+    @Override
+    public ASTNode visitReturn(Return r) {
+        if (r.e == null)
+            return r;
+        Expr e = fold(r.e);
+        return e == r.e ? r : new Return(e);
+    }
+
+    @Override
+    public ASTNode visitFunDecl(FunDecl fd) {
+        if (fd.block != null)
+            fd.block.accept(this);
+        return fd;
+    }
+
+    @Override
+    public ASTNode visitProgram(Program p) {
+        for (FunDecl fd : p.funDecls)
+            fd.accept(this);
+        return p;
+    }
+
+    @Override
+    public ASTNode visitStructTypeDecl(StructTypeDecl std) {
+        return std;
+    }
+
+    @Override
+    public ASTNode visitVarDecl(VarDecl vd) {
+        return vd;
+    }
+
+    @Override
+    public ASTNode visitBaseType(BaseType bt) {
+        return bt;
+    }
+
+    @Override
+    public ASTNode visitPointerType(PointerType pt) {
+        return pt;
+    }
+
+    @Override
+    public ASTNode visitStructType(StructType st) {
+        return st;
+    }
+
+    @Override
+    public ASTNode visitArrayType(ArrayType at) {
+        return at;
+    }
+}
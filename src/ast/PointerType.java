@@ -3,13 +3,30 @@ package ast;
 public class PointerType implements Type{
 
     public final Type t;
+    private final int id;
 
-    public PointerType(Type t) {
+    /*
+     * Use Types.pointer, pointer types are canonical.
+     */
+    PointerType(Type t, int id) {
         this.t = t;
+        this.id = id;
     }
 
     @Override
     public <T> T accept(ASTVisitor<T> v) {
         return v.visitPointerType(this);
     }
+
+    public int id() {
+        return id;
+    }
+
+    public int size() {
+        return 4;
+    }
+
+    public int align() {
+        return 4;
+    }
 }
@@ -1,14 +1,23 @@
 package ast;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class Program implements ASTNode {
 
+    public final List<String> includes;
     public final List<StructTypeDecl> structTypeDecls;
     public final List<VarDecl> varDecls;
     public final List<FunDecl> funDecls;
 
+    public List<Program> headers = new ArrayList<>(); // included headers, to be filled in by the semantic analyser
+
     public Program(List<StructTypeDecl> structTypeDecls, List<VarDecl> varDecls, List<FunDecl> funDecls) {
+        this(new ArrayList<>(), structTypeDecls, varDecls, funDecls);
+    }
+
+    public Program(List<String> includes, List<StructTypeDecl> structTypeDecls, List<VarDecl> varDecls, List<FunDecl> funDecls) {
+        this.includes = includes;
         this.structTypeDecls = structTypeDecls;
         this.varDecls = varDecls;
         this.funDecls = funDecls;
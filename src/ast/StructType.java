@@ -3,13 +3,31 @@ package ast;
 public class StructType implements Type{
 
     public final String s;
+    private final int id;
 
-    public StructType(String s) {
+    /*
+     * Use Types.struct, struct types are canonical.
+     */
+    StructType(String s, int id) {
         this.s = s;
+        this.id = id;
     }
 
     @Override
     public <T> T accept(ASTVisitor<T> v) {
         return v.visitStructType(this);
     }
+
+    public int id() {
+        return id;
+    }
+
+    // the size depends on the declaration of the struct, see Types.Layout
+    public int size() {
+        return Types.SIZE_UNKNOWN;
+    }
+
+    public int align() {
+        return 4;
+    }
 }
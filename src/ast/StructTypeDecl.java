@@ -6,7 +6,8 @@ public class StructTypeDecl implements ASTNode {
 
     public final StructType st;
     public final List<VarDecl> varDecls;
-    public int size = 0;
+    // set by Types.layout
+    public int size = Types.SIZE_UNKNOWN;
 
     public StructTypeDecl(StructType st, List<VarDecl> varDecls) {
         this.st = st;
@@ -4,4 +4,17 @@ public interface Type extends ASTNode {
 
     public <T> T accept(ASTVisitor<T> v);
 
+    /*
+     * Small integer unique to each type, types being canonical (see Types).
+     */
+    public int id();
+
+    /*
+     * Size in bytes of a variable of this type, or Types.SIZE_UNKNOWN for a struct or an array of
+     * structs, whose size depends on the declaration of the struct (see Types.Layout).
+     */
+    public int size();
+
+    public int align();
+
 }
@@ -0,0 +1,193 @@
+package ast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The factory of compound types. Types are hash-consed: two structurally equal types are the same
+ * object, so they are compared with == and a declaration or cast of a type already seen allocates
+ * nothing. Each type carries a small integer id, and its size and alignment in the MIPS data layout
+ * of the code generator.
+ *
+ * Types carry no state beyond their structure, so they are shared by every program compiled by the
+ * process. The size of a struct depends on its declaration, which is kept on the StructTypeDecl of
+ * each program: StructType, and the arrays of structs, report SIZE_UNKNOWN and the sizes are asked
+ * from the Layout of the program (see layout).
+ */
+public final class Types {
+
+    public static final int SIZE_UNKNOWN = -1;
+
+    private static final AtomicInteger ids = new AtomicInteger(BaseType.values().length);
+
+    private static final ConcurrentMap<Key, Type> types = new ConcurrentHashMap<>();
+
+    private Types() {
+    }
+
+    public static PointerType pointer(Type t) {
+        return (PointerType) types.computeIfAbsent(new Key(t, -1, null), k -> new PointerType(t, ids.getAndIncrement()));
+    }
+
+    public static ArrayType array(Type t, int length) {
+        return (ArrayType) types.computeIfAbsent(new Key(t, length, null), k -> new ArrayType(t, length, ids.getAndIncrement()));
+    }
+
+    public static StructType struct(String name) {
+        return (StructType) types.computeIfAbsent(new Key(null, -1, name), k -> new StructType(name, ids.getAndIncrement()));
+    }
+
+    /*
+     * Lays out the structs declared by p and by the headers it includes, setting the size of their
+     * declarations. Each struct lays out the struct types of its members first, so the sizes do not
+     * depend on the order of the declarations. The structs whose size cannot be known, those with a
+     * member of an undeclared struct type or which contain themselves, are left to the caller to report.
+     */
+    public static Layout layout(Program p) {
+        Map<StructType, StructTypeDecl> decls = new LinkedHashMap<>();
+        collect(p, decls, Collections.newSetFromMap(new IdentityHashMap<>()));
+        Layout layout = new Layout(decls);
+        for (StructType st : decls.keySet())
+            layout.size(st);
+        return layout;
+    }
+
+    private static void collect(Program p, Map<StructType, StructTypeDecl> decls, Set<Program> done) {
+        if (!done.add(p))
+            return;
+        for (Program h : p.headers)
+            collect(h, decls, done);
+        for (StructTypeDecl std : p.structTypeDecls)
+            decls.putIfAbsent(std.st, std);
+    }
+
+    /**
+     * The sizes of the types of one program, the structs taking theirs from their declarations.
+     */
+    public static final class Layout {
+        private final Map<StructType, StructTypeDecl> decls;
+        // the structs being laid out, and those whose size cannot be known
+        private final Set<StructType> active = new HashSet<>();
+        private final Set<StructType> failed = new HashSet<>();
+        private final List<String> errors = new ArrayList<>();
+
+        private Layout(Map<StructType, StructTypeDecl> decls) {
+            this.decls = decls;
+        }
+
+        /*
+         * One message per struct whose size cannot be known, for the semantic analyzer to report.
+         */
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        /*
+         * Size of a variable of type t, laying out the structs it depends on first.
+         */
+        public int size(Type t) {
+            if (t instanceof ArrayType) {
+                ArrayType at = (ArrayType) t;
+                if (!(at.t instanceof StructType))
+                    return at.size();
+                // struct sizes are multiples of a word, hence need no rounding
+                int s = size(at.t);
+                return s == SIZE_UNKNOWN ? SIZE_UNKNOWN : at.i * s;
+            }
+            if (!(t instanceof StructType))
+                return t.size();
+            StructType st = (StructType) t;
+            StructTypeDecl std = decls.get(st);
+            if (std != null && std.size != SIZE_UNKNOWN)
+                return std.size;
+            if (failed.contains(st))
+                return SIZE_UNKNOWN;
+            if (std == null || !active.add(st)) {
+                failed.add(st);
+                errors.add(std == null ? "Struct type is not declared: " + st.s : "Struct contains itself: " + st.s);
+                return SIZE_UNKNOWN;
+            }
+            int size = 0;
+            for (VarDecl vd : std.varDecls) {
+                int s = size(vd.type);
+                if (s == SIZE_UNKNOWN) {
+                    size = SIZE_UNKNOWN;
+                    break;
+                }
+                size += s;
+            }
+            active.remove(st);
+            if (size == SIZE_UNKNOWN)
+                failed.add(st);
+            else
+                std.size = size;
+            return size;
+        }
+
+        /*
+         * Distance between two elements of type t in an array: chars are packed.
+         */
+        public int stride(Type t) {
+            return t == BaseType.CHAR ? 1 : size(t);
+        }
+
+        /*
+         * Value of sizeof(t), which unlike the size of a variable does not round the chars up.
+         */
+        public int sizeOf(Type t) {
+            if (t == BaseType.CHAR)
+                return 1;
+            if (t instanceof ArrayType) {
+                ArrayType at = (ArrayType) t;
+                int stride = stride(at.t);
+                return stride == SIZE_UNKNOWN ? SIZE_UNKNOWN : at.i * stride;
+            }
+            return size(t);
+        }
+    }
+
+    /*
+     * Word aligned size of an array of chars or scalars, as the code generator lays it out:
+     * chars are packed, any other element takes its own size.
+     */
+    static int arraySize(Type t, int length) {
+        int stride = t == BaseType.CHAR ? 1 : t.size();
+        return (length * stride + 3) / 4 * 4;
+    }
+
+    private static final class Key {
+        // the element type is canonical, hence compared by identity
+        final Type element;
+        final int length;
+        final String name;
+
+        Key(Type element, int length, String name) {
+            this.element = element;
+            this.length = length;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return element == k.element && length == k.length && Objects.equals(name, k.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(element) + length) + Objects.hashCode(name);
+        }
+    }
+}
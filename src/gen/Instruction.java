@@ -0,0 +1,262 @@
+package gen;
+
+/**
+ * A MIPS instruction, pseudo-instruction or label of the text segment.
+ *
+ * Registers may be virtual until the register allocation. A memory operand is offset(base),
+ * symbol+offset, or the offset of a stack slot from $sp plus offset.
+ */
+public final class Instruction {
+
+    public enum Kind {
+        LABEL,      // label:
+        ALU,        // op rd, rs, rt
+        ALU_IMM,    // op rd, rs, imm
+        LI,         // li rd, imm
+        LA,         // la rd, label
+        MOVE,       // move rd, rs
+        LOAD,       // op rd, memory
+        STORE,      // op rs, memory
+        MULDIV,     // op rs, rt, writing hi and lo
+        MOVE_HILO,  // op rd
+        BRANCH,     // op rs, rt, label
+        BRANCH_ZERO,// op rs, label
+        JUMP,       // b label
+        CALL,       // jal label
+        RETURN,     // jr $ra
+        SYSCALL
+    }
+
+    public final Kind kind;
+    public final String op;
+    public Register rd;
+    public Register rs;
+    public Register rt;
+    public int imm;
+    public String label;
+    StackSlot slot;
+
+    private Instruction(Kind kind, String op) {
+        this.kind = kind;
+        this.op = op;
+    }
+
+    static Instruction label(String label) {
+        Instruction i = new Instruction(Kind.LABEL, null);
+        i.label = label;
+        return i;
+    }
+
+    static Instruction alu(String op, Register rd, Register rs, Register rt) {
+        Instruction i = new Instruction(Kind.ALU, op);
+        i.rd = rd;
+        i.rs = rs;
+        i.rt = rt;
+        return i;
+    }
+
+    static Instruction aluImm(String op, Register rd, Register rs, int imm) {
+        Instruction i = new Instruction(Kind.ALU_IMM, op);
+        i.rd = rd;
+        i.rs = rs;
+        i.imm = imm;
+        return i;
+    }
+
+    /*
+     * rd = $sp + offset of the slot
+     */
+    static Instruction frameAddress(Register rd, StackSlot slot) {
+        Instruction i = aluImm("addiu", rd, Register.sp, 0);
+        i.slot = slot;
+        return i;
+    }
+
+    static Instruction li(Register rd, int imm) {
+        Instruction i = new Instruction(Kind.LI, "li");
+        i.rd = rd;
+        i.imm = imm;
+        return i;
+    }
+
+    static Instruction la(Register rd, String label) {
+        Instruction i = new Instruction(Kind.LA, "la");
+        i.rd = rd;
+        i.label = label;
+        return i;
+    }
+
+    static Instruction move(Register rd, Register rs) {
+        Instruction i = new Instruction(Kind.MOVE, "move");
+        i.rd = rd;
+        i.rs = rs;
+        return i;
+    }
+
+    static Instruction load(String op, Register rd, Register base, int offset) {
+        Instruction i = new Instruction(Kind.LOAD, op);
+        i.rd = rd;
+        i.rt = base;
+        i.imm = offset;
+        return i;
+    }
+
+    static Instruction store(String op, Register value, Register base, int offset) {
+        Instruction i = new Instruction(Kind.STORE, op);
+        i.rs = value;
+        i.rt = base;
+        i.imm = offset;
+        return i;
+    }
+
+    /*
+     * Turns a load or store from base into one from the given symbol or slot.
+     */
+    Instruction at(String symbol, StackSlot slot) {
+        this.label = symbol;
+        this.slot = slot;
+        if (slot != null)
+            rt = Register.sp;
+        else if (symbol != null)
+            rt = null;
+        return this;
+    }
+
+    static Instruction mulDiv(String op, Register rs, Register rt) {
+        Instruction i = new Instruction(Kind.MULDIV, op);
+        i.rs = rs;
+        i.rt = rt;
+        return i;
+    }
+
+    static Instruction moveHiLo(String op, Register rd) {
+        Instruction i = new Instruction(Kind.MOVE_HILO, op);
+        i.rd = rd;
+        return i;
+    }
+
+    static Instruction branch(String op, Register rs, Register rt, String label) {
+        Instruction i = new Instruction(Kind.BRANCH, op);
+        i.rs = rs;
+        i.rt = rt;
+        i.label = label;
+        return i;
+    }
+
+    static Instruction branchZero(String op, Register rs, String label) {
+        Instruction i = new Instruction(Kind.BRANCH_ZERO, op);
+        i.rs = rs;
+        i.label = label;
+        return i;
+    }
+
+    static Instruction jump(String label) {
+        Instruction i = new Instruction(Kind.JUMP, "b");
+        i.label = label;
+        return i;
+    }
+
+    static Instruction call(String label) {
+        Instruction i = new Instruction(Kind.CALL, "jal");
+        i.label = label;
+        return i;
+    }
+
+    static Instruction ret() {
+        Instruction i = new Instruction(Kind.RETURN, "jr");
+        i.rs = Register.ra;
+        return i;
+    }
+
+    static Instruction syscall() {
+        return new Instruction(Kind.SYSCALL, "syscall");
+    }
+
+    /*
+     * The register written, if any.
+     */
+    public Register def() {
+        switch (kind) {
+            case ALU: case ALU_IMM: case LI: case LA: case MOVE: case LOAD: case MOVE_HILO:
+                return rd;
+            default:
+                return null;
+        }
+    }
+
+    /*
+     * The first and second registers read, either may be null.
+     */
+    public Register use1() {
+        switch (kind) {
+            case ALU: case ALU_IMM: case MOVE: case STORE: case MULDIV: case BRANCH: case BRANCH_ZERO: case RETURN:
+                return rs;
+            default:
+                return null;
+        }
+    }
+
+    public Register use2() {
+        switch (kind) {
+            case ALU: case LOAD: case STORE: case MULDIV: case BRANCH:
+                return rt;
+            default:
+                return null;
+        }
+    }
+
+    public boolean isBranch() {
+        return kind == Kind.BRANCH || kind == Kind.BRANCH_ZERO;
+    }
+
+    /*
+     * Whether control never goes on to the next instruction.
+     */
+    public boolean isUnconditional() {
+        return kind == Kind.JUMP || kind == Kind.RETURN;
+    }
+
+    private String memory() {
+        int offset = slot != null ? slot.offset + imm : imm;
+        // MARS reads a label ending in e followed by +n as a float exponent, hence the spaces
+        if (label != null)
+            return offset == 0 ? label : label + " + " + offset;
+        return offset + "(" + rt + ")";
+    }
+
+    public String toString() {
+        switch (kind) {
+            case LABEL:
+                return label + ":";
+            case ALU:
+                return op + " " + rd + ", " + rs + ", " + rt;
+            case ALU_IMM:
+                return op + " " + rd + ", " + rs + ", " + (slot != null ? slot.offset + imm : imm);
+            case LI:
+                return op + " " + rd + ", " + imm;
+            case LA:
+                return op + " " + rd + ", " + label;
+            case MOVE:
+                return op + " " + rd + ", " + rs;
+            case LOAD:
+                return op + " " + rd + ", " + memory();
+            case STORE:
+                return op + " " + rs + ", " + memory();
+            case MULDIV:
+                return op + " " + rs + ", " + rt;
+            case MOVE_HILO:
+                return op + " " + rd;
+            case BRANCH:
+                return op + " " + rs + ", " + rt + ", " + label;
+            case BRANCH_ZERO:
+                return op + " " + rs + ", " + label;
+            case JUMP:
+            case CALL:
+                return op + " " + label;
+            case RETURN:
+                return op + " " + rs;
+            default:
+                return op;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package gen;
+
+import ir.BasicBlock;
+import ir.Const;
+import ir.Function;
+import ir.IRType;
+import ir.Instr;
+import ir.Opcode;
+import ir.Slot;
+import ir.Temp;
+import ir.Value;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Selects the MIPS instructions of an IR function, over virtual registers: temporary n is held by
+ * virtual register n, the selector numbering its own registers after them.
+ *
+ * Constants become immediates where the instruction has a form taking one. The address of a stack
+ * slot or global which is only used by loads and stores is folded into their memory operand.
+ * The built-in functions are system calls.
+ */
+public class InstructionSelector {
+
+    private static final int PARAM_REGS = Register.paramRegs.length;
+
+    private MachineFunction mf;
+    private Register[] temps;
+    private final Map<Slot, StackSlot> slots = new HashMap<>();
+    // the FRAME or LA instruction of the temporaries used only as addresses of loads and stores
+    private final Map<Temp, Instr> folded = new HashMap<>();
+
+    public MachineFunction select(Function f) {
+        mf = new MachineFunction(f.name);
+        mf.registers = f.tempCount();
+        temps = new Register[f.tempCount()];
+        slots.clear();
+        for (Slot s : f.slots)
+            slots.put(s, mf.newSlot(s.size, s.toString()));
+        for (int k = PARAM_REGS; k < f.paramCount; k++)
+            mf.incoming.add(new StackSlot(4, "param" + k));
+        findFoldedAddresses(f);
+
+        mf.code.add(Instruction.label(f.name));
+        for (BasicBlock b : f.blocks) {
+            mf.code.add(Instruction.label(b.label()));
+            for (Instr i : b.instrs)
+                select(i);
+        }
+        mf.code.add(Instruction.label(mf.exitLabel()));
+        mf.code.add(Instruction.ret());
+        return mf;
+    }
+
+    private void findFoldedAddresses(Function f) {
+        folded.clear();
+        Map<Temp, Boolean> onlyAddress = new HashMap<>();
+        // block of the definition and of the uses, null for the temporaries used in several blocks
+        Map<Temp, BasicBlock> blockOf = new HashMap<>();
+        for (BasicBlock b : f.blocks) {
+            for (Instr i : b.instrs) {
+                if (i.op == Opcode.FRAME || i.op == Opcode.LA) {
+                    folded.put(i.dst, i);
+                    sameBlock(blockOf, i.dst, b);
+                }
+                for (int k = 0; k < i.args.length; k++) {
+                    if (i.args[k] instanceof Temp) {
+                        boolean address = k == 0 && (i.op == Opcode.LOAD || i.op == Opcode.STORE);
+                        onlyAddress.merge((Temp) i.args[k], address, Boolean::logicalAnd);
+                        sameBlock(blockOf, (Temp) i.args[k], b);
+                    }
+                }
+            }
+        }
+        // loading from a global costs two instructions, so the address of one used in other blocks,
+        // as once hoisted out of a loop, is kept in a register
+        folded.keySet().removeIf(t -> !onlyAddress.getOrDefault(t, true) || folded.get(t).dst != t
+                || folded.get(t).op == Opcode.LA && blockOf.get(t) == null);
+    }
+
+    private static void sameBlock(Map<Temp, BasicBlock> blockOf, Temp t, BasicBlock b) {
+        if (!blockOf.containsKey(t))
+            blockOf.put(t, b);
+        else if (blockOf.get(t) != b)
+            blockOf.put(t, null);
+    }
+
+    private Register reg(Temp t) {
+        if (temps[t.id] == null)
+            temps[t.id] = Register.virtual(t.id);
+        return temps[t.id];
+    }
+
+    /*
+     * A register holding the value, $zero for 0.
+     */
+    private Register use(Value v) {
+        if (v instanceof Temp)
+            return reg((Temp) v);
+        int c = ((Const) v).value;
+        if (c == 0)
+            return Register.zero;
+        Register r = mf.newRegister();
+        emit(Instruction.li(r, c));
+        return r;
+    }
+
+    private static boolean isSigned16(Value v) {
+        return v instanceof Const && ((Const) v).value >= -32768 && ((Const) v).value <= 32767;
+    }
+
+    private static boolean isUnsigned16(Value v) {
+        return v instanceof Const && ((Const) v).value >= 0 && ((Const) v).value <= 65535;
+    }
+
+    private static int value(Value v) {
+        return ((Const) v).value;
+    }
+
+    private void emit(Instruction i) {
+        mf.code.add(i);
+    }
+
+    private void select(Instr i) {
+        switch (i.op) {
+            case MOV:
+                if (i.args[0] instanceof Const)
+                    emit(Instruction.li(reg(i.dst), value(i.args[0])));
+                else
+                    emit(Instruction.move(reg(i.dst), reg((Temp) i.args[0])));
+                break;
+            case LA:
+                if (!folded.containsKey(i.dst))
+                    emit(Instruction.la(reg(i.dst), i.symbol));
+                break;
+            case FRAME:
+                if (!folded.containsKey(i.dst))
+                    emit(Instruction.frameAddress(reg(i.dst), slots.get(i.slot)));
+                break;
+            case LOAD:
+                emit(memory(Instruction.load(i.type.isByte() ? "lb" : "lw", reg(i.dst), null, i.offset), i.args[0]));
+                break;
+            case STORE:
+                Register value = use(i.args[1]);
+                emit(memory(Instruction.store(i.type.isByte() ? "sb" : "sw", value, null, i.offset), i.args[0]));
+                break;
+            case PARAM:
+                if (i.offset < PARAM_REGS)
+                    emit(Instruction.move(reg(i.dst), Register.paramRegs[i.offset]));
+                else
+                    emit(Instruction.load("lw", reg(i.dst), null, 0).at(null, mf.incoming.get(i.offset - PARAM_REGS)));
+                break;
+            case CALL:
+                selectCall(i);
+                break;
+            case JUMP:
+                emit(Instruction.jump(i.targets[0].label()));
+                break;
+            case BRANCH:
+                selectBranch(i.cond, i.args[0], i.args[1], i.targets[0].label());
+                emit(Instruction.jump(i.targets[1].label()));
+                break;
+            case RET:
+                if (i.args.length > 0) {
+                    if (i.args[0] instanceof Const)
+                        emit(Instruction.li(Register.v0, value(i.args[0])));
+                    else
+                        emit(Instruction.move(Register.v0, reg((Temp) i.args[0])));
+                }
+                emit(Instruction.jump(mf.exitLabel()));
+                break;
+            case PHI:
+                throw new IllegalStateException("phi left in " + mf.name);
+            default:
+                selectBinary(i.op, reg(i.dst), i.args[0], i.args[1]);
+        }
+    }
+
+    /*
+     * Sets the base of a load or store from the address.
+     */
+    private Instruction memory(Instruction access, Value address) {
+        if (address instanceof Const) {
+            access.rt = use(address);
+            return access;
+        }
+        Instr def = folded.get(address);
+        if (def == null) {
+            access.rt = reg((Temp) address);
+            return access;
+        }
+        if (def.op == Opcode.FRAME)
+            return access.at(null, slots.get(def.slot));
+        return access.at(def.symbol, null);
+    }
+
+    private void selectBinary(Opcode op, Register d, Value a, Value b) {
+        if (a instanceof Const && !(b instanceof Const) && (op.isCommutative() || op.isComparison())) {
+            Value t = a;
+            a = b;
+            b = t;
+            op = op.swap();
+        }
+        switch (op) {
+            case ADD:
+                if (isSigned16(b))
+                    emit(Instruction.aluImm("addiu", d, use(a), value(b)));
+                else
+                    emit(Instruction.alu("addu", d, use(a), use(b)));
+                break;
+            case SUB:
+                if (b instanceof Const && value(b) != Integer.MIN_VALUE && isSigned16(new Const(-value(b))))
+                    emit(Instruction.aluImm("addiu", d, use(a), -value(b)));
+                else
+                    emit(Instruction.alu("subu", d, use(a), use(b)));
+                break;
+            case MUL:
+                emit(Instruction.alu("mul", d, use(a), use(b)));
+                break;
+            case MULH:
+                emit(Instruction.mulDiv("mult", use(a), use(b)));
+                emit(Instruction.moveHiLo("mfhi", d));
+                break;
+            case DIV:
+            case MOD:
+                emit(Instruction.mulDiv("div", use(a), use(b)));
+                emit(Instruction.moveHiLo(op == Opcode.DIV ? "mflo" : "mfhi", d));
+                break;
+            case AND:
+            case OR:
+            case XOR:
+                if (isUnsigned16(b))
+                    emit(Instruction.aluImm(op + "i", d, use(a), value(b)));
+                else
+                    emit(Instruction.alu(op.toString(), d, use(a), use(b)));
+                break;
+            case SLL:
+            case SRA:
+            case SRL:
+                if (b instanceof Const)
+                    emit(Instruction.aluImm(op.toString(), d, use(a), value(b) & 31));
+                else
+                    emit(Instruction.alu(op + "v", d, use(a), use(b)));
+                break;
+            case SLT:
+                if (isSigned16(b))
+                    emit(Instruction.aluImm("slti", d, use(a), value(b)));
+                else
+                    emit(Instruction.alu("slt", d, use(a), use(b)));
+                break;
+            case SGT:
+                emit(Instruction.alu("slt", d, use(b), use(a)));
+                break;
+            case SLE:
+                if (b instanceof Const && value(b) != Integer.MAX_VALUE && isSigned16(new Const(value(b) + 1))) {
+                    emit(Instruction.aluImm("slti", d, use(a), value(b) + 1));
+                    break;
+                }
+                // a <= b is !(b < a)
+                emit(Instruction.alu("slt", d, use(b), use(a)));
+                emit(Instruction.aluImm("xori", d, d, 1));
+                break;
+            case SGE:
+                selectBinary(Opcode.SLT, d, a, b);
+                emit(Instruction.aluImm("xori", d, d, 1));
+                break;
+            case SEQ:
+            case SNE:
+                Register diff = use(a);
+                if (!(b instanceof Const) || value(b) != 0) {
+                    diff = mf.newRegister();
+                    selectBinary(Opcode.XOR, diff, a, b);
+                }
+                if (op == Opcode.SEQ)
+                    emit(Instruction.aluImm("sltiu", d, diff, 1));
+                else
+                    emit(Instruction.alu("sltu", d, Register.zero, diff));
+                break;
+            default:
+                throw new IllegalArgumentException(op.toString());
+        }
+    }
+
+    /*
+     * Branches to the label if a cond b.
+     */
+    private void selectBranch(Opcode cond, Value a, Value b, String label) {
+        if (a instanceof Const && !(b instanceof Const)) {
+            Value t = a;
+            a = b;
+            b = t;
+            cond = cond.swap();
+        }
+        if (b instanceof Const && value(b) == 0) {
+            String op;
+            switch (cond) {
+                case SEQ: op = "beqz"; break;
+                case SNE: op = "bnez"; break;
+                case SLT: op = "bltz"; break;
+                case SLE: op = "blez"; break;
+                case SGT: op = "bgtz"; break;
+                default: op = "bgez"; break;
+            }
+            emit(Instruction.branchZero(op, use(a), label));
+            return;
+        }
+        if (b instanceof Const && cond != Opcode.SEQ && cond != Opcode.SNE) {
+            // blt and the like take two instructions, as does slti followed by a branch on zero:
+            // a < c, a <= c is a < c + 1, a > c is !(a < c + 1) and a >= c is !(a < c)
+            long bound = cond == Opcode.SLT || cond == Opcode.SGE ? value(b) : value(b) + 1L;
+            if (bound >= -32768 && bound <= 32767) {
+                Register r = mf.newRegister();
+                emit(Instruction.aluImm("slti", r, use(a), (int) bound));
+                emit(Instruction.branchZero(cond == Opcode.SLT || cond == Opcode.SLE ? "bnez" : "beqz", r, label));
+                return;
+            }
+        }
+        String op;
+        switch (cond) {
+            case SEQ: op = "beq"; break;
+            case SNE: op = "bne"; break;
+            case SLT: op = "blt"; break;
+            case SLE: op = "ble"; break;
+            case SGT: op = "bgt"; break;
+            default: op = "bge"; break;
+        }
+        emit(Instruction.branch(op, use(a), use(b), label));
+    }
+
+    private void selectCall(Instr i) {
+        switch (i.symbol) {
+            case "print_i":
+                syscall(1, i.args[0], null);
+                return;
+            case "print_s":
+                syscall(4, i.args[0], null);
+                return;
+            case "print_c":
+                syscall(11, i.args[0], null);
+                return;
+            case "read_i":
+                syscall(5, null, i.dst);
+                return;
+            case "read_c":
+                syscall(12, null, i.dst);
+                return;
+            case "mcmalloc":
+                syscall(9, i.args[0], i.dst);
+                return;
+        }
+        mf.calls = true;
+        for (int k = 0; k < i.args.length; k++) {
+            Value v = i.args[k];
+            if (k < PARAM_REGS) {
+                if (v instanceof Const)
+                    emit(Instruction.li(Register.paramRegs[k], value(v)));
+                else
+                    emit(Instruction.move(Register.paramRegs[k], reg((Temp) v)));
+            } else {
+                emit(Instruction.store("sw", use(v), Register.sp, 4 * (k - PARAM_REGS)));
+            }
+        }
+        mf.outgoing = Math.max(mf.outgoing, 4 * (i.args.length - PARAM_REGS));
+        emit(Instruction.call(i.symbol));
+        if (i.dst != null)
+            emit(Instruction.move(reg(i.dst), Register.v0));
+    }
+
+    private void syscall(int service, Value arg, Temp result) {
+        if (arg instanceof Const)
+            emit(Instruction.li(Register.paramRegs[0], value(arg)));
+        else if (arg != null)
+            emit(Instruction.move(Register.paramRegs[0], reg((Temp) arg)));
+        emit(Instruction.li(Register.v0, service));
+        emit(Instruction.syscall());
+        if (result != null)
+            emit(Instruction.move(reg(result), Register.v0));
+    }
+}
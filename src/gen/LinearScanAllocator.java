@@ -0,0 +1,252 @@
+package gen;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Linear scan register allocation over the code of one function.
+ *
+ * The live interval of a virtual register spans from the first to the last instruction where it
+ * is live, liveness being computed over the control-flow graph of the code, so that a register
+ * live around a loop keeps its interval over the whole loop.
+ *
+ * Intervals are scanned by start, each taking a free physical register; when none is left,
+ * the one ending last is spilled to a slot in the frame (Poletto and Sarkar). Intervals live
+ * across a jal may only take callee-saved registers, the others take caller-saved ones first.
+ * Spilled registers are loaded into a scratch register before each instruction reading them and
+ * stored back after each instruction writing them.
+ */
+final class LinearScanAllocator {
+
+    private final MachineFunction mf;
+    private final List<Instruction> code;
+
+    private final int[] start;
+    private final int[] end;
+    private final boolean[] acrossCall;
+    // physical register of each virtual one, null when spilled
+    private final Register[] assigned;
+    private final StackSlot[] spillSlot;
+
+    LinearScanAllocator(MachineFunction mf) {
+        this.mf = mf;
+        this.code = mf.code;
+        start = new int[mf.registers];
+        end = new int[mf.registers];
+        acrossCall = new boolean[mf.registers];
+        assigned = new Register[mf.registers];
+        spillSlot = new StackSlot[mf.registers];
+        Arrays.fill(start, -1);
+    }
+
+    /*
+     * Replaces the virtual registers of the function with physical ones.
+     */
+    void allocate() {
+        computeIntervals();
+        scan();
+        rewrite();
+    }
+
+    private void computeIntervals() {
+        // basic blocks, starting at labels and after branches
+        List<Integer> starts = new ArrayList<>();
+        Map<String, Integer> labels = new HashMap<>();
+        for (int p = 0; p < code.size(); p++) {
+            Instruction i = code.get(p);
+            if (p == 0 || i.kind == Instruction.Kind.LABEL || endsBlock(code.get(p - 1)))
+                starts.add(p);
+            if (i.kind == Instruction.Kind.LABEL)
+                labels.put(i.label, starts.size() - 1);
+        }
+        int blocks = starts.size();
+        int[] first = new int[blocks];
+        int[] last = new int[blocks];
+        for (int b = 0; b < blocks; b++) {
+            first[b] = starts.get(b);
+            last[b] = b + 1 < blocks ? starts.get(b + 1) - 1 : code.size() - 1;
+        }
+
+        BitSet[] use = new BitSet[blocks];
+        BitSet[] def = new BitSet[blocks];
+        List<List<Integer>> succs = new ArrayList<>();
+        for (int b = 0; b < blocks; b++) {
+            use[b] = new BitSet();
+            def[b] = new BitSet();
+            for (int p = first[b]; p <= last[b]; p++) {
+                Instruction i = code.get(p);
+                for (Register r : new Register[]{i.use1(), i.use2()}) {
+                    if (r != null && r.isVirtual() && !def[b].get(r.virtualIndex()))
+                        use[b].set(r.virtualIndex());
+                }
+                Register d = i.def();
+                if (d != null && d.isVirtual())
+                    def[b].set(d.virtualIndex());
+            }
+            List<Integer> s = new ArrayList<>();
+            Instruction i = code.get(last[b]);
+            if (i.kind == Instruction.Kind.JUMP || i.isBranch()) {
+                Integer target = labels.get(i.label);
+                if (target != null)
+                    s.add(target);
+            }
+            if (!i.isUnconditional() && b + 1 < blocks)
+                s.add(b + 1);
+            succs.add(s);
+        }
+
+        BitSet[] liveIn = new BitSet[blocks];
+        BitSet[] liveOut = new BitSet[blocks];
+        for (int b = 0; b < blocks; b++) {
+            liveIn[b] = new BitSet();
+            liveOut[b] = new BitSet();
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = blocks - 1; b >= 0; b--) {
+                for (int s : succs.get(b))
+                    liveOut[b].or(liveIn[s]);
+                BitSet in = (BitSet) liveOut[b].clone();
+                in.andNot(def[b]);
+                in.or(use[b]);
+                if (!in.equals(liveIn[b])) {
+                    liveIn[b] = in;
+                    changed = true;
+                }
+            }
+        }
+
+        for (int b = 0; b < blocks; b++) {
+            for (int v = liveIn[b].nextSetBit(0); v >= 0; v = liveIn[b].nextSetBit(v + 1))
+                extend(v, first[b]);
+            for (int v = liveOut[b].nextSetBit(0); v >= 0; v = liveOut[b].nextSetBit(v + 1))
+                extend(v, last[b]);
+        }
+        List<Integer> calls = new ArrayList<>();
+        for (int p = 0; p < code.size(); p++) {
+            Instruction i = code.get(p);
+            if (i.kind == Instruction.Kind.CALL)
+                calls.add(p);
+            for (Register r : new Register[]{i.use1(), i.use2(), i.def()}) {
+                if (r != null && r.isVirtual())
+                    extend(r.virtualIndex(), p);
+            }
+        }
+        for (int v = 0; v < start.length; v++) {
+            if (start[v] != -1) {
+                // first call after the start
+                int k = Collections.binarySearch(calls, start[v]);
+                if (k < 0)
+                    k = -1 - k;
+                acrossCall[v] = k < calls.size() && calls.get(k) < end[v];
+            }
+        }
+    }
+
+    private static boolean endsBlock(Instruction i) {
+        return i.isBranch() || i.isUnconditional();
+    }
+
+    private void extend(int v, int p) {
+        if (start[v] == -1 || p < start[v])
+            start[v] = p;
+        if (p > end[v])
+            end[v] = p;
+    }
+
+    private void scan() {
+        Integer[] order = new Integer[start.length];
+        int count = 0;
+        for (int v = 0; v < start.length; v++) {
+            if (start[v] != -1)
+                order[count++] = v;
+        }
+        order = Arrays.copyOf(order, count);
+        Arrays.sort(order, (a, b) -> start[a] != start[b] ? Integer.compare(start[a], start[b]) : Integer.compare(a, b));
+
+        Deque<Register> freeCaller = new ArrayDeque<>(Register.callerSaved);
+        Deque<Register> freeCallee = new ArrayDeque<>(Register.calleeSaved);
+        TreeSet<Integer> active = new TreeSet<>((a, b) -> end[a] != end[b] ? Integer.compare(end[a], end[b]) : Integer.compare(a, b));
+
+        for (int v : order) {
+            // an instruction reads its operands before writing its result, so they may share a register
+            while (!active.isEmpty() && end[active.first()] <= start[v]) {
+                Register r = assigned[active.pollFirst()];
+                (Register.calleeSaved.contains(r) ? freeCallee : freeCaller).push(r);
+            }
+            if (!acrossCall[v] && !freeCaller.isEmpty()) {
+                assigned[v] = freeCaller.pop();
+            } else if (!freeCallee.isEmpty()) {
+                assigned[v] = freeCallee.pop();
+            } else {
+                Integer victim = null;
+                for (int w : active.descendingSet()) {
+                    if (!acrossCall[v] || Register.calleeSaved.contains(assigned[w])) {
+                        victim = w;
+                        break;
+                    }
+                }
+                if (victim == null || end[victim] <= end[v]) {
+                    spill(v);
+                    continue;
+                }
+                assigned[v] = assigned[victim];
+                active.remove(victim);
+                spill(victim);
+            }
+            active.add(v);
+            if (Register.calleeSaved.contains(assigned[v]) && !mf.saved.contains(assigned[v]))
+                mf.saved.add(assigned[v]);
+        }
+    }
+
+    private void spill(int v) {
+        assigned[v] = null;
+        spillSlot[v] = mf.newSlot(4, "spill" + v);
+    }
+
+    private void rewrite() {
+        List<Instruction> out = new ArrayList<>(code.size());
+        Map<Register, Register> scratch = new HashMap<>();
+        for (Instruction i : code) {
+            scratch.clear();
+            List<Instruction> after = new ArrayList<>();
+            for (Register r : new Register[]{i.use1(), i.use2()}) {
+                if (r != null && r.isVirtual() && assigned[r.virtualIndex()] == null && !scratch.containsKey(r)) {
+                    Register s = Register.scratch.get(scratch.size());
+                    scratch.put(r, s);
+                    out.add(Instruction.load("lw", s, null, 0).at(null, spillSlot[r.virtualIndex()]));
+                }
+            }
+            Register d = i.def();
+            if (d != null && d.isVirtual() && assigned[d.virtualIndex()] == null) {
+                if (!scratch.containsKey(d))
+                    scratch.put(d, Register.scratch.get(0));
+                after.add(Instruction.store("sw", scratch.get(d), null, 0).at(null, spillSlot[d.virtualIndex()]));
+            }
+            i.rd = physical(i.rd, scratch);
+            i.rs = physical(i.rs, scratch);
+            i.rt = physical(i.rt, scratch);
+            out.add(i);
+            out.addAll(after);
+        }
+        code.clear();
+        code.addAll(out);
+    }
+
+    private Register physical(Register r, Map<Register, Register> scratch) {
+        if (r == null || !r.isVirtual())
+            return r;
+        Register s = scratch.get(r);
+        return s != null ? s : assigned[r.virtualIndex()];
+    }
+}
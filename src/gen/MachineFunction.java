@@ -0,0 +1,95 @@
+package gen;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The MIPS code of a function, from its label to the jr $ra of its exit label.
+ *
+ * Arguments are passed in $a0-$a3, the others on the stack, and the result in $v0. The frame,
+ * addressed from $sp, holds from the top: $ra unless the function is a leaf, the callee-saved
+ * registers it uses, the stack slots of its locals and spills, and at the bottom the arguments
+ * it passes on the stack. The parameters past the fourth are at the bottom of the caller's frame.
+ */
+final class MachineFunction {
+
+    final String name;
+    final List<Instruction> code = new ArrayList<>();
+    final List<StackSlot> slots = new ArrayList<>();
+    // parameters past the fourth
+    final List<StackSlot> incoming = new ArrayList<>();
+    // callee-saved registers written by the function
+    final List<Register> saved = new ArrayList<>();
+
+    // number of virtual registers
+    int registers = 0;
+    // bytes of the arguments passed on the stack
+    int outgoing = 0;
+    boolean calls = false;
+
+    MachineFunction(String name) {
+        this.name = name;
+    }
+
+    String exitLabel() {
+        return name + ".ret";
+    }
+
+    Register newRegister() {
+        return Register.virtual(registers++);
+    }
+
+    StackSlot newSlot(int size, String name) {
+        StackSlot s = new StackSlot(size, name);
+        slots.add(s);
+        return s;
+    }
+
+    /*
+     * Gives the slots their offsets and adds the prologue after the entry label and the epilogue
+     * before the final jr $ra.
+     */
+    void layoutFrame() {
+        int offset = outgoing;
+        for (StackSlot s : slots) {
+            s.offset = offset;
+            offset += s.size;
+        }
+        int savedAt = offset;
+        offset += 4 * saved.size();
+        int raAt = offset;
+        if (calls)
+            offset += 4;
+        int size = offset;
+        for (int k = 0; k < incoming.size(); k++)
+            incoming.get(k).offset = size + 4 * k;
+
+        List<Instruction> prologue = new ArrayList<>();
+        List<Instruction> epilogue = new ArrayList<>();
+        if (size > 0)
+            prologue.add(Instruction.aluImm("addiu", Register.sp, Register.sp, -size));
+        if (calls) {
+            prologue.add(Instruction.store("sw", Register.ra, Register.sp, raAt));
+            epilogue.add(Instruction.load("lw", Register.ra, Register.sp, raAt));
+        }
+        for (int k = 0; k < saved.size(); k++) {
+            prologue.add(Instruction.store("sw", saved.get(k), Register.sp, savedAt + 4 * k));
+            epilogue.add(Instruction.load("lw", saved.get(k), Register.sp, savedAt + 4 * k));
+        }
+        if (size > 0)
+            epilogue.add(Instruction.aluImm("addiu", Register.sp, Register.sp, size));
+        code.addAll(code.size() - 1, epilogue);
+        code.addAll(1, prologue);
+    }
+
+    void print(PrintWriter writer) {
+        writer.println();
+        for (Instruction i : code) {
+            if (i.kind == Instruction.Kind.LABEL)
+                writer.println(i);
+            else
+                writer.println("  " + i);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package gen;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Peephole optimisation of the code of a function, once its registers are allocated and its
+ * frame laid out.
+ *
+ * A window slides over the instructions, the rules of the table being tried in order at each
+ * position. A rule which matches rewrites the instructions of the window, after which the window
+ * goes back far enough to see the matches the rewrite may have enabled. The sweeps are repeated
+ * until nothing changes. The counts of each rule are kept over all the functions, see report.
+ *
+ * The rules asking whether a register is read afterwards use the liveness of the physical
+ * registers, computed once per sweep and kept per instruction, so that it survives the removals.
+ * No rule makes a register live where it was not, bar the copy from the store in store-reload,
+ * which no rule asks about, so the liveness of an earlier rewrite stays a safe over-approximation
+ * for the rest of the sweep; the instructions a rule creates take over the liveness of those they
+ * replace. Likewise the labels branched to and the first instruction after each label, which
+ * jump-threading follows, are collected once per sweep.
+ */
+final class PeepholeOptimizer {
+
+    private static final int WINDOW = 3;
+
+    // registers read after the function returns
+    private static final int EXIT = mask(Register.v0, Register.sp, Register.fp, Register.gp, Register.ra)
+            | mask(Register.calleeSaved.toArray(new Register[0]));
+    private static final int ARGUMENTS = mask(Register.paramRegs);
+    // registers a call may write, $v1 included
+    private static final int CLOBBERED = mask(Register.callerSaved.toArray(new Register[0]))
+            | mask(Register.scratch.toArray(new Register[0])) | ARGUMENTS | mask(Register.v0, Register.ra) | 1 << 3;
+
+    private static final Map<String, String> NEGATED = new HashMap<>();
+
+    static {
+        String[][] pairs = {{"beq", "bne"}, {"blt", "bge"}, {"ble", "bgt"}, {"beqz", "bnez"}, {"bltz", "bgez"}, {"blez", "bgtz"}};
+        for (String[] p : pairs) {
+            NEGATED.put(p[0], p[1]);
+            NEGATED.put(p[1], p[0]);
+        }
+    }
+
+    private interface Rule {
+        /*
+         * Rewrites the code at p, returning how many instructions were removed, -1 if the rule
+         * does not apply there.
+         */
+        int apply(int p);
+    }
+
+    private final Map<String, Rule> rules = new LinkedHashMap<>();
+    private final Map<String, Integer> applied = new LinkedHashMap<>();
+    private final Map<String, Integer> removed = new LinkedHashMap<>();
+
+    private List<Instruction> code;
+    // registers live after each instruction, the labels branched to and the first instruction
+    // after each label, as of the start of the sweep
+    private final Map<Instruction, Integer> liveOut = new IdentityHashMap<>();
+    private final Set<String> targets = new HashSet<>();
+    private final Map<String, Instruction> firstAfter = new HashMap<>();
+
+    PeepholeOptimizer() {
+        rules.put("unreachable", this::unreachable);
+        rules.put("unused-label", this::unusedLabel);
+        rules.put("jump-to-next", this::jumpToNext);
+        rules.put("branch-over-jump", this::branchOverJump);
+        rules.put("jump-threading", this::jumpThreading);
+        rules.put("self-move", this::selfMove);
+        rules.put("store-reload", this::storeReload);
+        rules.put("reload-store", this::reloadStore);
+        rules.put("mul-by-constant", this::mulByConstant);
+        rules.put("copy-into-def", this::copyIntoDef);
+        rules.put("dead-def", this::deadDef);
+        for (String name : rules.keySet()) {
+            applied.put(name, 0);
+            removed.put(name, 0);
+        }
+    }
+
+    void optimize(MachineFunction mf) {
+        code = mf.code;
+        boolean changed = true;
+        while (changed) {
+            // a change may also enable a rule before the window, dead-def in particular
+            changed = false;
+            analyse();
+            for (int p = 0; p < code.size(); p++) {
+                for (Map.Entry<String, Rule> r : rules.entrySet()) {
+                    int n = r.getValue().apply(p);
+                    if (n >= 0) {
+                        applied.merge(r.getKey(), 1, Integer::sum);
+                        removed.merge(r.getKey(), n, Integer::sum);
+                        changed = true;
+                        p = Math.max(-1, p - WINDOW - 1);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    void report(PrintStream out) {
+        int total = 0;
+        for (String name : rules.keySet()) {
+            out.println(name + ": applied " + applied.get(name) + ", removed " + removed.get(name));
+            total += removed.get(name);
+        }
+        out.println("instructions removed: " + total);
+    }
+
+    private static int mask(Register... registers) {
+        int m = 0;
+        for (Register r : registers) {
+            if (r != null && r.number() > 0)
+                m |= 1 << r.number();
+        }
+        return m;
+    }
+
+    private static int uses(Instruction i) {
+        switch (i.kind) {
+            case CALL:
+                return ARGUMENTS;
+            case SYSCALL:
+                return mask(Register.v0, Register.paramRegs[0]);
+            case RETURN:
+                return EXIT;
+            default:
+                return mask(i.use1(), i.use2());
+        }
+    }
+
+    private static int defs(Instruction i) {
+        switch (i.kind) {
+            case CALL:
+                return CLOBBERED;
+            case SYSCALL:
+                return mask(Register.v0);
+            default:
+                return mask(i.def());
+        }
+    }
+
+    private void analyse() {
+        Map<String, Integer> labels = new HashMap<>();
+        targets.clear();
+        firstAfter.clear();
+        for (int p = 0; p < code.size(); p++) {
+            Instruction i = code.get(p);
+            if (i.kind == Instruction.Kind.LABEL) {
+                labels.put(i.label, p);
+                int q = p;
+                while (is(q, Instruction.Kind.LABEL))
+                    q++;
+                if (q < code.size())
+                    firstAfter.put(i.label, code.get(q));
+            } else if (i.label != null && (i.kind == Instruction.Kind.JUMP || i.isBranch())) {
+                targets.add(i.label);
+            }
+        }
+        int n = code.size();
+        int[] liveIn = new int[n];
+        int[] liveOut = new int[n];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = n - 1; p >= 0; p--) {
+                Instruction i = code.get(p);
+                int out = 0;
+                if (!i.isUnconditional())
+                    out |= p + 1 < n ? liveIn[p + 1] : EXIT;
+                if (i.kind == Instruction.Kind.JUMP || i.isBranch()) {
+                    Integer t = labels.get(i.label);
+                    out |= t != null ? liveIn[t] : EXIT;
+                }
+                int in = uses(i) | out & ~defs(i);
+                if (in != liveIn[p] || out != liveOut[p]) {
+                    liveIn[p] = in;
+                    liveOut[p] = out;
+                    changed = true;
+                }
+            }
+        }
+        this.liveOut.clear();
+        for (int p = 0; p < n; p++)
+            this.liveOut.put(code.get(p), liveOut[p]);
+    }
+
+    /*
+     * Whether r may be read after p. An instruction created during the sweep without taking over
+     * the liveness of another one has every register live.
+     */
+    private boolean liveAfter(int p, Register r) {
+        Integer out = liveOut.get(code.get(p));
+        return out == null || (out & mask(r)) != 0;
+    }
+
+    /*
+     * Replaces the instruction at p, the new one being live out where the old one was.
+     */
+    private void replace(int p, Instruction i) {
+        Integer out = liveOut.get(code.get(p));
+        if (out != null)
+            liveOut.put(i, out);
+        code.set(p, i);
+    }
+
+    private boolean isTarget(String label) {
+        return targets.contains(label);
+    }
+
+    private Instruction at(int p) {
+        return p < code.size() ? code.get(p) : null;
+    }
+
+    private boolean is(int p, Instruction.Kind kind) {
+        return p < code.size() && code.get(p).kind == kind;
+    }
+
+    /*
+     * Whether the label is one of those right after p.
+     */
+    private boolean labelFollows(int p, String label) {
+        for (int q = p + 1; is(q, Instruction.Kind.LABEL); q++) {
+            if (code.get(q).label.equals(label))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean sameMemory(Instruction a, Instruction b) {
+        return a.imm == b.imm && a.slot == b.slot && Objects.equals(a.label, b.label)
+                && (a.rt == null ? b.rt == null : b.rt != null && a.rt.number() == b.rt.number());
+    }
+
+    private static boolean same(Register a, Register b) {
+        return a.number() == b.number();
+    }
+
+    /*
+     * Nothing after a jump or a return is executed until the next label.
+     */
+    private int unreachable(int p) {
+        Instruction i = code.get(p);
+        if (!i.isUnconditional() || at(p + 1) == null || is(p + 1, Instruction.Kind.LABEL))
+            return -1;
+        code.remove(p + 1);
+        return 1;
+    }
+
+    /*
+     * Labels nothing branches to, apart from the one of the function.
+     */
+    private int unusedLabel(int p) {
+        Instruction i = code.get(p);
+        if (p == 0 || i.kind != Instruction.Kind.LABEL || isTarget(i.label))
+            return -1;
+        code.remove(p);
+        return 0;
+    }
+
+    /*
+     * b L; L:
+     */
+    private int jumpToNext(int p) {
+        Instruction i = code.get(p);
+        if ((i.kind != Instruction.Kind.JUMP && !i.isBranch()) || !labelFollows(p, i.label))
+            return -1;
+        code.remove(p);
+        return 1;
+    }
+
+    /*
+     * bcond L1; b L2; L1:  ->  b!cond L2; L1:
+     */
+    private int branchOverJump(int p) {
+        Instruction i = code.get(p);
+        if (!i.isBranch() || !is(p + 1, Instruction.Kind.JUMP) || !labelFollows(p + 1, i.label))
+            return -1;
+        String target = code.get(p + 1).label;
+        String op = NEGATED.get(i.op);
+        replace(p, i.kind == Instruction.Kind.BRANCH ? Instruction.branch(op, i.rs, i.rt, target) : Instruction.branchZero(op, i.rs, target));
+        code.remove(p + 1);
+        return 1;
+    }
+
+    /*
+     * Branches to a label followed by b L go to L. A jump after the label which has since been
+     * removed was jump-to-next, so the label still leads to L.
+     */
+    private int jumpThreading(int p) {
+        Instruction i = code.get(p);
+        if (i.kind != Instruction.Kind.JUMP && !i.isBranch())
+            return -1;
+        Set<String> seen = new HashSet<>();
+        String target = i.label;
+        for (Instruction next = firstAfter.get(target); next != null && next.kind == Instruction.Kind.JUMP; next = firstAfter.get(target)) {
+            // a loop of jumps
+            if (!seen.add(target))
+                return -1;
+            target = next.label;
+        }
+        if (target.equals(i.label))
+            return -1;
+        i.label = target;
+        return 0;
+    }
+
+    /*
+     * move r, r
+     */
+    private int selfMove(int p) {
+        Instruction i = code.get(p);
+        if (i.kind != Instruction.Kind.MOVE || !same(i.rd, i.rs))
+            return -1;
+        code.remove(p);
+        return 1;
+    }
+
+    /*
+     * sw r, M; lw s, M  ->  sw r, M; move s, r
+     */
+    private int storeReload(int p) {
+        Instruction store = code.get(p);
+        Instruction load = at(p + 1);
+        if (!"sw".equals(store.op) || load == null || !"lw".equals(load.op) || !sameMemory(store, load))
+            return -1;
+        if (same(load.rd, store.rs)) {
+            code.remove(p + 1);
+            return 1;
+        }
+        replace(p + 1, Instruction.move(load.rd, store.rs));
+        return 0;
+    }
+
+    /*
+     * lw r, M; sw r, M  ->  lw r, M
+     */
+    private int reloadStore(int p) {
+        Instruction load = code.get(p);
+        Instruction store = at(p + 1);
+        if (!"lw".equals(load.op) || store == null || !"sw".equals(store.op) || !sameMemory(store, load)
+                || !same(load.rd, store.rs) || load.rt != null && same(load.rd, load.rt))
+            return -1;
+        code.remove(p + 1);
+        return 1;
+    }
+
+    /*
+     * li r, c; mul d, a, r  ->  sll d, a, log2(c) and the like, when r is not read afterwards
+     */
+    private int mulByConstant(int p) {
+        Instruction li = code.get(p);
+        Instruction mul = at(p + 1);
+        if (li.kind != Instruction.Kind.LI || !"mul".equals(mul == null ? null : mul.op) || liveAfter(p + 1, li.rd))
+            return -1;
+        Register a;
+        if (same(mul.rt, li.rd) && !same(mul.rs, li.rd))
+            a = mul.rs;
+        else if (same(mul.rs, li.rd) && !same(mul.rt, li.rd))
+            a = mul.rt;
+        else
+            return -1;
+        int c = li.imm;
+        Instruction replacement;
+        if (c == 0)
+            replacement = Instruction.li(mul.rd, 0);
+        else if (c == 1)
+            replacement = Instruction.move(mul.rd, a);
+        else if (c == -1)
+            replacement = Instruction.alu("subu", mul.rd, Register.zero, a);
+        else if (c > 0 && (c & c - 1) == 0)
+            replacement = Instruction.aluImm("sll", mul.rd, a, Integer.numberOfTrailingZeros(c));
+        else
+            return -1;
+        replace(p + 1, replacement);
+        code.remove(p);
+        return 1;
+    }
+
+    /*
+     * op d, ...; move r, d  ->  op r, ...  when d is not read afterwards
+     */
+    private int copyIntoDef(int p) {
+        Instruction i = code.get(p);
+        Instruction move = at(p + 1);
+        Register d = i.def();
+        if (d == null || i.kind == Instruction.Kind.LABEL || move == null || move.kind != Instruction.Kind.MOVE
+                || !same(move.rs, d) || same(move.rd, d) || same(d, Register.sp) || liveAfter(p + 1, d))
+            return -1;
+        i.rd = move.rd;
+        liveOut.put(i, liveOut.get(move));
+        code.remove(p + 1);
+        return 1;
+    }
+
+    /*
+     * A register written and never read.
+     */
+    private int deadDef(int p) {
+        Instruction i = code.get(p);
+        Register d = i.def();
+        if (d == null || same(d, Register.sp) || liveAfter(p, d))
+            return -1;
+        code.remove(p);
+        return 1;
+    }
+}
@@ -13,6 +13,7 @@ public class Register {
      * definition of registers
      */
 
+    public static final Register zero = new Register(0, "zero");
     public static final Register v0 = new Register(2, "v0");
     public static final Register[] paramRegs = {
             new Register(4, "a0"),
@@ -31,6 +32,11 @@ public class Register {
             tmpRegs.add(new Register(i, "t" + (i - 24 + 8)));
     }
 
+    // saved by the caller, by the callee and never allocated
+    public static final List<Register> callerSaved = tmpRegs.subList(0, 8);
+    public static final List<Register> calleeSaved = tmpRegs.subList(8, 16);
+    public static final List<Register> scratch = tmpRegs.subList(16, 18);
+
     public static final Register gp = new Register(28, "gp");
     public static final Register sp = new Register(29, "sp");
     public static final Register fp = new Register(30, "fp");
@@ -46,6 +52,25 @@ public class Register {
         this.name = name;
     }
 
+    /*
+     * The n-th virtual register of a function, replaced by a physical one by the LinearScanAllocator.
+     */
+    static Register virtual(int n) {
+        return new Register(-1 - n, "r" + n);
+    }
+
+    int number() {
+        return num;
+    }
+
+    boolean isVirtual() {
+        return num < 0;
+    }
+
+    int virtualIndex() {
+        return -1 - num;
+    }
+
     public String toString() {
         return "$" + name;
     }
@@ -0,0 +1,20 @@
+package gen;
+
+/**
+ * A word aligned area of the stack frame, whose offset from $sp is known once the frame is laid out.
+ */
+final class StackSlot {
+
+    final int size;
+    final String name;
+    int offset = 0;
+
+    StackSlot(int size, String name) {
+        this.size = (size + 3) / 4 * 4;
+        this.name = name;
+    }
+
+    public String toString() {
+        return name;
+    }
+}
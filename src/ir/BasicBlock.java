@@ -0,0 +1,46 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A straight sequence of instructions ending with its only terminator. The edges of the
+ * control-flow graph are kept up to date by Function.computeCFG.
+ */
+public class BasicBlock {
+
+    public final Function function;
+    public final int id;
+    public final List<Instr> instrs = new ArrayList<>();
+
+    public final List<BasicBlock> preds = new ArrayList<>();
+    public final List<BasicBlock> succs = new ArrayList<>();
+
+    BasicBlock(Function function, int id) {
+        this.function = function;
+        this.id = id;
+    }
+
+    public String label() {
+        return function.name + ".L" + id;
+    }
+
+    public void add(Instr i) {
+        instrs.add(i);
+    }
+
+    public Instr terminator() {
+        if (instrs.isEmpty())
+            return null;
+        Instr last = instrs.get(instrs.size() - 1);
+        return last.op.isTerminator() ? last : null;
+    }
+
+    public boolean isTerminated() {
+        return terminator() != null;
+    }
+
+    public String toString() {
+        return label();
+    }
+}
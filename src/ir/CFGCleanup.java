@@ -0,0 +1,150 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Simplifies the control-flow graph of a function, in SSA form or not, until nothing changes:
+ * a branch to the same block on both sides becomes a jump, a block which only jumps to another
+ * one is removed, its predecessors jumping there directly, and a block which is the only
+ * predecessor of the block it jumps to is merged with it.
+ *
+ * An empty block is kept when one of its predecessors is also a predecessor of its target and
+ * the target has phis, as the two edges could carry different values.
+ */
+public class CFGCleanup {
+
+    private final Function f;
+    private final Set<BasicBlock> removed = new HashSet<>();
+
+    public CFGCleanup(Function f) {
+        this.f = f;
+    }
+
+    /*
+     * Returns whether the function changed.
+     */
+    public boolean run() {
+        boolean changed = false;
+        boolean swept = true;
+        while (swept) {
+            swept = false;
+            for (BasicBlock b : f.blocks) {
+                if (removed.contains(b))
+                    continue;
+                foldBranch(b);
+                if (b != f.entry() && removeEmpty(b))
+                    swept = true;
+                else
+                    swept |= merge(b);
+            }
+            f.blocks.removeAll(removed);
+            removed.clear();
+            changed |= swept;
+        }
+        f.computeCFG();
+        return changed;
+    }
+
+    private static boolean isPhi(Instr i) {
+        return i.op == Opcode.PHI;
+    }
+
+    private static boolean hasPhis(BasicBlock b) {
+        return !b.instrs.isEmpty() && isPhi(b.instrs.get(0));
+    }
+
+    private static void foldBranch(BasicBlock b) {
+        Instr t = b.terminator();
+        if (t.op == Opcode.BRANCH && t.targets[0] == t.targets[1])
+            b.instrs.set(b.instrs.size() - 1, Instr.jump(t.targets[0]));
+    }
+
+    /*
+     * Removes the block if it only jumps to another one.
+     */
+    private boolean removeEmpty(BasicBlock b) {
+        if (b.instrs.size() != 1 || b.terminator().op != Opcode.JUMP)
+            return false;
+        BasicBlock target = b.terminator().targets[0];
+        if (target == b)
+            return false;
+        if (hasPhis(target)) {
+            for (BasicBlock p : b.preds) {
+                if (target.preds.contains(p))
+                    return false;
+            }
+            // the value coming from b now comes from each of its predecessors
+            for (Instr phi : target.instrs) {
+                if (!isPhi(phi))
+                    break;
+                List<Value> args = new ArrayList<>();
+                List<BasicBlock> from = new ArrayList<>();
+                for (int k = 0; k < phi.args.length; k++) {
+                    if (phi.from[k] != b) {
+                        args.add(phi.args[k]);
+                        from.add(phi.from[k]);
+                        continue;
+                    }
+                    for (BasicBlock p : b.preds) {
+                        args.add(phi.args[k]);
+                        from.add(p);
+                    }
+                }
+                phi.args = args.toArray(new Value[0]);
+                phi.from = from.toArray(new BasicBlock[0]);
+            }
+        }
+        target.preds.remove(b);
+        for (BasicBlock p : b.preds) {
+            Instr t = p.terminator();
+            for (int k = 0; k < t.targets.length; k++) {
+                if (t.targets[k] == b)
+                    t.targets[k] = target;
+            }
+            p.succs.remove(b);
+            if (!p.succs.contains(target))
+                p.succs.add(target);
+            if (!target.preds.contains(p))
+                target.preds.add(p);
+            foldBranch(p);
+        }
+        removed.add(b);
+        return true;
+    }
+
+    /*
+     * Appends to the block the one it jumps to, when it is its only predecessor.
+     */
+    private boolean merge(BasicBlock b) {
+        if (b.terminator().op != Opcode.JUMP)
+            return false;
+        BasicBlock next = b.terminator().targets[0];
+        if (next == b || next == f.entry() || next.preds.size() != 1)
+            return false;
+        b.instrs.remove(b.instrs.size() - 1);
+        for (Instr i : next.instrs) {
+            if (isPhi(i))
+                f.replaceUses(i.dst, i.args[0]);
+            else
+                b.add(i);
+        }
+        b.succs.clear();
+        b.succs.addAll(next.succs);
+        for (BasicBlock s : next.succs) {
+            s.preds.set(s.preds.indexOf(next), b);
+            for (Instr phi : s.instrs) {
+                if (!isPhi(phi))
+                    break;
+                for (int k = 0; k < phi.from.length; k++) {
+                    if (phi.from[k] == next)
+                        phi.from[k] = b;
+                }
+            }
+        }
+        removed.add(next);
+        return true;
+    }
+}
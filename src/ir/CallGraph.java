@@ -0,0 +1,55 @@
+package ir;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The functions of a module each function calls, the built-in functions aside.
+ */
+public class CallGraph {
+
+    private final Module module;
+    private final Map<Function, Set<Function>> callees = new LinkedHashMap<>();
+
+    public CallGraph(Module m) {
+        module = m;
+        for (Function f : m.functions) {
+            Set<Function> called = new LinkedHashSet<>();
+            for (BasicBlock b : f.blocks) {
+                for (Instr i : b.instrs) {
+                    if (i.op == Opcode.CALL && m.function(i.symbol) != null)
+                        called.add(m.function(i.symbol));
+                }
+            }
+            callees.put(f, called);
+        }
+    }
+
+    public Set<Function> callees(Function f) {
+        return callees.get(f);
+    }
+
+    /*
+     * The functions main may call, directly or not, main included.
+     */
+    public Set<Function> reachableFromMain() {
+        Set<Function> reached = new LinkedHashSet<>();
+        Function main = module.function("main");
+        if (main == null)
+            return reached;
+        Deque<Function> work = new ArrayDeque<>();
+        reached.add(main);
+        work.add(main);
+        while (!work.isEmpty()) {
+            for (Function g : callees.get(work.poll())) {
+                if (reached.add(g))
+                    work.add(g);
+            }
+        }
+        return reached;
+    }
+}
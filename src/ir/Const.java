@@ -0,0 +1,27 @@
+package ir;
+
+public final class Const extends Value {
+
+    public final int value;
+
+    public Const(IRType type, int value) {
+        super(type);
+        this.value = value;
+    }
+
+    public Const(int value) {
+        this(IRType.INT, value);
+    }
+
+    public boolean equals(Object o) {
+        return o instanceof Const && ((Const) o).value == value;
+    }
+
+    public int hashCode() {
+        return value;
+    }
+
+    public String toString() {
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,186 @@
+package ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck) over a function in SSA form.
+ *
+ * A temporary is either not known yet, a constant, or not constant. Only the edges found executable
+ * are followed, starting from the entry: a branch whose operands are constants follows one edge,
+ * and a phi only meets the arguments of its executable edges, so that a value is found constant
+ * when the paths on which it is not are never taken.
+ *
+ * The temporaries found constant are then replaced by their value, which the instruction selector
+ * turns into immediates, the branches decided become jumps and the blocks never reached are dropped.
+ */
+public class ConstantPropagation {
+
+    // value of the temporaries which are not constant
+    private static final Const OVERDEFINED = new Const(0);
+
+    private final Function f;
+    // a temporary not in the map is not known yet
+    private final Map<Temp, Const> values = new HashMap<>();
+    private final Map<Temp, List<Instr>> users = new HashMap<>();
+    private final Map<Instr, BasicBlock> blockOf = new HashMap<>();
+    private final Map<BasicBlock, Set<BasicBlock>> executable = new HashMap<>();
+    private final Set<BasicBlock> reached = new HashSet<>();
+    private final Deque<BasicBlock> blockWork = new ArrayDeque<>();
+    private final Deque<Instr> instrWork = new ArrayDeque<>();
+
+    public ConstantPropagation(Function f) {
+        this.f = f;
+    }
+
+    /*
+     * Returns whether the function changed.
+     */
+    public boolean run() {
+        for (BasicBlock b : f.blocks) {
+            executable.put(b, new HashSet<>());
+            for (Instr i : b.instrs) {
+                blockOf.put(i, b);
+                for (Value v : i.args) {
+                    if (v instanceof Temp)
+                        users.computeIfAbsent((Temp) v, t -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+        reached.add(f.entry());
+        blockWork.add(f.entry());
+        while (!blockWork.isEmpty() || !instrWork.isEmpty()) {
+            if (!blockWork.isEmpty()) {
+                for (Instr i : blockWork.poll().instrs)
+                    visit(i);
+            } else {
+                Instr i = instrWork.poll();
+                if (reached.contains(blockOf.get(i)))
+                    visit(i);
+            }
+        }
+        return rewrite();
+    }
+
+    private Const value(Value v) {
+        return v instanceof Const ? (Const) v : values.get(v);
+    }
+
+    private void set(Temp t, Const c) {
+        Const old = values.get(t);
+        // values only go down the lattice
+        if (c == null || old == OVERDEFINED || old != null && c != OVERDEFINED && c.equals(old))
+            return;
+        values.put(t, old == null ? c : OVERDEFINED);
+        instrWork.addAll(users.getOrDefault(t, new ArrayList<>()));
+    }
+
+    private void follow(BasicBlock from, BasicBlock to) {
+        if (!executable.get(from).add(to))
+            return;
+        if (reached.add(to)) {
+            blockWork.add(to);
+        } else {
+            // the phis meet one more argument
+            for (Instr i : to.instrs) {
+                if (i.op != Opcode.PHI)
+                    break;
+                instrWork.add(i);
+            }
+        }
+    }
+
+    private void visit(Instr i) {
+        BasicBlock b = blockOf.get(i);
+        switch (i.op) {
+            case PHI:
+                Const meet = null;
+                for (int k = 0; k < i.args.length; k++) {
+                    if (!executable.get(i.from[k]).contains(b))
+                        continue;
+                    Const c = value(i.args[k]);
+                    if (c == OVERDEFINED || meet != null && c != null && !c.equals(meet))
+                        meet = OVERDEFINED;
+                    else if (meet == null)
+                        meet = c;
+                    if (meet == OVERDEFINED)
+                        break;
+                }
+                set(i.dst, meet);
+                break;
+            case MOV:
+                set(i.dst, value(i.args[0]));
+                break;
+            case JUMP:
+                follow(b, i.targets[0]);
+                break;
+            case BRANCH: {
+                Const x = value(i.args[0]);
+                Const y = value(i.args[1]);
+                if (x == OVERDEFINED || y == OVERDEFINED) {
+                    follow(b, i.targets[0]);
+                    follow(b, i.targets[1]);
+                } else if (x != null && y != null) {
+                    follow(b, i.targets[i.cond.fold(x.value, y.value) != 0 ? 0 : 1]);
+                }
+                break;
+            }
+            case RET:
+            case STORE:
+                break;
+            default:
+                if (i.dst == null)
+                    break;
+                if (!i.op.isBinary()) {
+                    set(i.dst, OVERDEFINED);
+                    break;
+                }
+                Const x = value(i.args[0]);
+                Const y = value(i.args[1]);
+                if (x == OVERDEFINED || y == OVERDEFINED) {
+                    set(i.dst, OVERDEFINED);
+                } else if (x != null && y != null) {
+                    Integer r = i.op.fold(x.value, y.value);
+                    set(i.dst, r == null ? OVERDEFINED : new Const(i.dst.type, r));
+                }
+        }
+    }
+
+    private boolean rewrite() {
+        boolean changed = false;
+        for (BasicBlock b : f.blocks) {
+            if (!reached.contains(b))
+                continue;
+            for (Iterator<Instr> it = b.instrs.iterator(); it.hasNext(); ) {
+                Instr i = it.next();
+                for (int k = 0; k < i.args.length; k++) {
+                    Const c = i.args[k] instanceof Temp ? values.get(i.args[k]) : null;
+                    if (c != null && c != OVERDEFINED) {
+                        i.args[k] = new Const(i.args[k].type, c.value);
+                        changed = true;
+                    }
+                }
+                Const c = i.dst == null ? null : values.get(i.dst);
+                if (c != null && c != OVERDEFINED && !i.hasSideEffects()) {
+                    it.remove();
+                    changed = true;
+                } else if (i.op == Opcode.BRANCH && i.args[0] instanceof Const && i.args[1] instanceof Const) {
+                    i.becomeJump(i.targets[i.cond.fold(((Const) i.args[0]).value, ((Const) i.args[1]).value) != 0 ? 0 : 1]);
+                    changed = true;
+                }
+            }
+        }
+        int blocks = f.blocks.size();
+        f.computeCFG();
+        changed |= f.blocks.size() != blocks;
+        SSABuilder.simplifyPhis(f);
+        return changed;
+    }
+}
@@ -0,0 +1,105 @@
+package ir;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Liveness based dead code elimination over a function in SSA form. The instructions with side
+ * effects are live, and so is the definition of each temporary a live instruction reads; the
+ * others are removed. Marking from the side effects reaches at once the fixpoint the iterative
+ * liveness analysis would, phis only feeding each other included.
+ *
+ * The stores to a stack slot which is never read, its address only being used to store into it,
+ * are dead too, and the slot is dropped. Addresses into the slot are followed through additions,
+ * subtractions and phis, as the pointers walking an array.
+ */
+public class DeadCodeElimination {
+
+    private final Function f;
+
+    public DeadCodeElimination(Function f) {
+        this.f = f;
+    }
+
+    /*
+     * Returns whether the function changed.
+     */
+    public boolean run() {
+        boolean changed = removeDeadStores();
+        Map<Temp, Instr> defs = new HashMap<>();
+        Set<Instr> live = new HashSet<>();
+        Deque<Instr> work = new ArrayDeque<>();
+        for (BasicBlock b : f.blocks) {
+            for (Instr i : b.instrs) {
+                if (i.dst != null)
+                    defs.put(i.dst, i);
+                if (i.hasSideEffects() && live.add(i))
+                    work.add(i);
+            }
+        }
+        while (!work.isEmpty()) {
+            for (Value v : work.poll().args) {
+                Instr def = defs.get(v);
+                if (def != null && live.add(def))
+                    work.add(def);
+            }
+        }
+        for (BasicBlock b : f.blocks)
+            changed |= b.instrs.retainAll(live);
+        return changed;
+    }
+
+    private boolean removeDeadStores() {
+        // slot of the addresses into a slot
+        Map<Temp, Slot> into = new HashMap<>();
+        boolean grown = true;
+        while (grown) {
+            grown = false;
+            for (BasicBlock b : f.blocks) {
+                for (Instr i : b.instrs) {
+                    Slot s = null;
+                    if (i.op == Opcode.FRAME)
+                        s = i.slot;
+                    else if (i.op == Opcode.ADD || i.op == Opcode.SUB)
+                        s = into.containsKey(i.args[0]) ? into.get(i.args[0]) : into.get(i.args[1]);
+                    else if (i.op == Opcode.PHI)
+                        s = addressInto(into, i.args);
+                    if (s != null && !into.containsKey(i.dst)) {
+                        into.put(i.dst, s);
+                        grown = true;
+                    }
+                }
+            }
+        }
+        Set<Slot> used = new HashSet<>();
+        for (BasicBlock b : f.blocks) {
+            for (Instr i : b.instrs) {
+                for (int k = 0; k < i.args.length; k++) {
+                    Slot s = into.get(i.args[k]);
+                    boolean derived = i.op == Opcode.ADD || i.op == Opcode.SUB || i.op == Opcode.PHI;
+                    boolean written = k == 0 && i.op == Opcode.STORE || into.get(i.dst) == s && derived;
+                    if (s != null && !written)
+                        used.add(s);
+                }
+            }
+        }
+        boolean changed = false;
+        for (BasicBlock b : f.blocks) {
+            changed |= b.instrs.removeIf(i -> i.op == Opcode.STORE && into.containsKey(i.args[0]) && !used.contains(into.get(i.args[0])));
+        }
+        f.slots.removeIf(s -> into.containsValue(s) && !used.contains(s));
+        return changed;
+    }
+
+    private static Slot addressInto(Map<Temp, Slot> into, Value[] args) {
+        for (Value v : args) {
+            if (into.containsKey(v))
+                return into.get(v);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+package ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dominators of the blocks of a function, computed by the iterative algorithm of Cooper, Harvey
+ * and Kennedy over the reverse postorder, and their dominance frontiers. The CFG edges of the
+ * function must be up to date.
+ */
+public class DominatorTree {
+
+    private final Map<BasicBlock, BasicBlock> idom = new HashMap<>();
+    private final Map<BasicBlock, List<BasicBlock>> children = new HashMap<>();
+    private final Map<BasicBlock, Set<BasicBlock>> frontier = new HashMap<>();
+    // position of the blocks in reverse postorder
+    private final Map<BasicBlock, Integer> order = new HashMap<>();
+    private final List<BasicBlock> reversePostorder = new ArrayList<>();
+
+    public DominatorTree(Function f) {
+        postorder(f.entry());
+        Collections.reverse(reversePostorder);
+        for (int k = 0; k < reversePostorder.size(); k++)
+            order.put(reversePostorder.get(k), k);
+
+        BasicBlock entry = f.entry();
+        idom.put(entry, entry);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock b : reversePostorder) {
+                if (b == entry)
+                    continue;
+                BasicBlock d = null;
+                for (BasicBlock p : b.preds) {
+                    if (idom.containsKey(p))
+                        d = d == null ? p : intersect(p, d);
+                }
+                if (d != idom.get(b)) {
+                    idom.put(b, d);
+                    changed = true;
+                }
+            }
+        }
+        idom.put(entry, null);
+
+        for (BasicBlock b : reversePostorder) {
+            children.put(b, new ArrayList<>());
+            frontier.put(b, new LinkedHashSet<>());
+        }
+        for (BasicBlock b : reversePostorder) {
+            if (idom.get(b) != null)
+                children.get(idom.get(b)).add(b);
+        }
+        for (BasicBlock b : reversePostorder) {
+            if (b.preds.size() < 2)
+                continue;
+            for (BasicBlock p : b.preds) {
+                for (BasicBlock r = p; r != null && r != idom.get(b); r = idom.get(r))
+                    frontier.get(r).add(b);
+            }
+        }
+    }
+
+    /*
+     * Depth-first search with an explicit stack, the number of the next successor to visit being
+     * kept beside each block, so that long chains of blocks cannot overflow the Java stack.
+     */
+    private void postorder(BasicBlock entry) {
+        Set<BasicBlock> visited = new HashSet<>();
+        Deque<BasicBlock> blocks = new ArrayDeque<>();
+        Deque<Integer> next = new ArrayDeque<>();
+        visited.add(entry);
+        blocks.push(entry);
+        next.push(0);
+        while (!blocks.isEmpty()) {
+            BasicBlock b = blocks.peek();
+            int k = next.pop();
+            if (k == b.succs.size()) {
+                blocks.pop();
+                reversePostorder.add(b);
+                continue;
+            }
+            next.push(k + 1);
+            BasicBlock s = b.succs.get(k);
+            if (visited.add(s)) {
+                blocks.push(s);
+                next.push(0);
+            }
+        }
+    }
+
+    private BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        while (a != b) {
+            while (order.get(a) > order.get(b))
+                a = idom.get(a);
+            while (order.get(b) > order.get(a))
+                b = idom.get(b);
+        }
+        return a;
+    }
+
+    /*
+     * Immediate dominator of the block, null for the entry.
+     */
+    public BasicBlock idom(BasicBlock b) {
+        return idom.get(b);
+    }
+
+    public List<BasicBlock> children(BasicBlock b) {
+        return children.get(b);
+    }
+
+    public Set<BasicBlock> frontier(BasicBlock b) {
+        return frontier.get(b);
+    }
+
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        for (; b != null; b = idom.get(b)) {
+            if (a == b)
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * The blocks in reverse postorder, each after its dominators.
+     */
+    public List<BasicBlock> reversePostorder() {
+        return reversePostorder;
+    }
+}
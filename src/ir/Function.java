@@ -0,0 +1,121 @@
+package ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The IR of a function: its blocks in layout order, the entry first, and its stack slots.
+ */
+public class Function {
+
+    public final String name;
+    // null for void functions
+    public final IRType returnType;
+    public final int paramCount;
+
+    public final List<BasicBlock> blocks = new ArrayList<>();
+    public final List<Slot> slots = new ArrayList<>();
+
+    private int temps = 0;
+    private int blockIds = 0;
+
+    public Function(String name, IRType returnType, int paramCount) {
+        this.name = name;
+        this.returnType = returnType;
+        this.paramCount = paramCount;
+    }
+
+    public Temp newTemp(IRType type, String name) {
+        return new Temp(type, temps++, name);
+    }
+
+    public Temp newTemp(IRType type) {
+        return newTemp(type, null);
+    }
+
+    /*
+     * Number of temporaries created so far, an upper bound of their ids.
+     */
+    public int tempCount() {
+        return temps;
+    }
+
+    /*
+     * Creates a block, which is not laid out until added to blocks.
+     */
+    public BasicBlock newBlock() {
+        return new BasicBlock(this, blockIds++);
+    }
+
+    public Slot newSlot(int size, String name) {
+        Slot s = new Slot(slots.size(), size, name);
+        slots.add(s);
+        return s;
+    }
+
+    public BasicBlock entry() {
+        return blocks.get(0);
+    }
+
+    /*
+     * Replaces the uses of the temporary in the whole function.
+     */
+    public void replaceUses(Temp from, Value to) {
+        for (BasicBlock b : blocks) {
+            for (Instr i : b.instrs)
+                i.replaceUses(from, to);
+        }
+    }
+
+    /*
+     * Recomputes the predecessors and successors of the blocks from their terminators, after
+     * dropping the blocks which cannot be reached from the entry, and the phi arguments of the
+     * edges which are gone.
+     */
+    public void computeCFG() {
+        Set<BasicBlock> reached = new HashSet<>();
+        Deque<BasicBlock> work = new ArrayDeque<>();
+        reached.add(entry());
+        work.push(entry());
+        while (!work.isEmpty()) {
+            for (BasicBlock s : work.pop().terminator().targets) {
+                if (reached.add(s))
+                    work.push(s);
+            }
+        }
+        blocks.retainAll(reached);
+        for (BasicBlock b : blocks) {
+            b.preds.clear();
+            b.succs.clear();
+        }
+        for (BasicBlock b : blocks) {
+            for (BasicBlock s : b.terminator().targets) {
+                if (!b.succs.contains(s)) {
+                    b.succs.add(s);
+                    s.preds.add(b);
+                }
+            }
+        }
+        // the phis lose the arguments of the edges removed
+        for (BasicBlock b : blocks) {
+            for (Instr i : b.instrs) {
+                if (i.op != Opcode.PHI)
+                    break;
+                List<Value> args = new ArrayList<>();
+                List<BasicBlock> from = new ArrayList<>();
+                for (int k = 0; k < i.args.length; k++) {
+                    if (b.preds.contains(i.from[k])) {
+                        args.add(i.args[k]);
+                        from.add(i.from[k]);
+                    }
+                }
+                i.args = args.toArray(new Value[0]);
+                i.from = from.toArray(new BasicBlock[0]);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ir;
+
+/**
+ * A label in the data segment: a zero initialised variable of the given size, or a string literal.
+ */
+public final class Global {
+
+    public final String name;
+    public final int size;
+    public final String string;
+
+    public Global(String name, int size) {
+        this.name = name;
+        this.size = size;
+        this.string = null;
+    }
+
+    public Global(String name, String string) {
+        this.name = name;
+        this.size = string.length() + 1;
+        this.string = string;
+    }
+
+    /*
+     * The string with the escapes of an .asciiz directive.
+     */
+    public String escaped() {
+        StringBuilder sb = new StringBuilder();
+        for (char c : string.toCharArray()) {
+            switch (c) {
+                case '\t': sb.append("\\t"); break;
+                case '\b': sb.append("\\b"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\f': sb.append("\\f"); break;
+                case '\'': sb.append("\\'"); break;
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\0': sb.append("\\0"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
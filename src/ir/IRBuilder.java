@@ -0,0 +1,579 @@
+package ir;
+
+import ast.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lowers an analysed program into the IR.
+ *
+ * Every variable lives in memory: globals in the data segment, locals and parameters in stack
+ * slots, so that a variable is read by a LOAD from its address and written by a STORE. Expressions
+ * are evaluated into fresh temporaries, from left to right, the right hand side of an assignment
+ * before its left hand side.
+ *
+ * Types are recomputed from the declarations rather than read from Expr.type, which the type
+ * checker leaves unset after its first failure.
+ */
+public class IRBuilder implements ASTVisitor<Value> {
+
+    public static final String[] BUILTINS = {"print_s", "print_i", "print_c", "read_c", "read_i", "mcmalloc"};
+
+    private Module module;
+    private Types.Layout layout;
+    private Function fn;
+    private BasicBlock current;
+    // where a function returning a struct copies its result, see visitFunDecl
+    private Temp resultBuffer;
+
+    private final Map<String, StructTypeDecl> structs = new HashMap<>();
+    private final Map<String, Map<String, Integer>> fieldOffsets = new HashMap<>();
+    private final Map<String, String> strings = new HashMap<>();
+    private final Map<VarDecl, Slot> locals = new IdentityHashMap<>();
+
+    /*
+     * Location of an lvalue: an address plus a constant offset.
+     */
+    private static class Address {
+        final Value base;
+        final int offset;
+
+        Address(Value base, int offset) {
+            this.base = base;
+            this.offset = offset;
+        }
+    }
+
+    public static boolean isBuiltin(String name) {
+        for (String b : BUILTINS) {
+            if (b.equals(name))
+                return true;
+        }
+        return false;
+    }
+
+    public Module lower(Program p) {
+        module = new Module();
+        layout = Types.layout(p);
+        // the included headers come first, each of them once
+        List<Program> programs = new ArrayList<>();
+        collectHeaders(p, programs);
+        programs.add(p);
+        for (Program h : programs) {
+            for (StructTypeDecl std : h.structTypeDecls) {
+                std.accept(this);
+            }
+        }
+        for (Program h : programs) {
+            for (VarDecl vd : h.varDecls) {
+                module.globals.add(new Global(vd.varName, storage(vd.type)));
+            }
+        }
+        for (Program h : programs) {
+            for (FunDecl fd : h.funDecls) {
+                fd.accept(this);
+            }
+        }
+        return module;
+    }
+
+    private void collectHeaders(Program p, List<Program> programs) {
+        for (Program h : p.headers) {
+            boolean found = false;
+            for (Program q : programs)
+                found |= q == h;
+            if (!found) {
+                collectHeaders(h, programs);
+                programs.add(h);
+            }
+        }
+    }
+
+    @Override
+    public Value visitProgram(Program p) {
+        lower(p);
+        return null;
+    }
+
+    /*
+     * Fields are laid out in order, each taking the size of a variable of its type, as in
+     * Types.layout.
+     */
+    @Override
+    public Value visitStructTypeDecl(StructTypeDecl std) {
+        Map<String, Integer> offsets = new HashMap<>();
+        structs.put(std.st.s, std);
+        int offset = 0;
+        for (VarDecl vd : std.varDecls) {
+            offsets.put(vd.varName, offset);
+            offset += storage(vd.type);
+        }
+        fieldOffsets.put(std.st.s, offsets);
+        return null;
+    }
+
+    /*
+     * A function returning a struct takes the address of a buffer in the frame of its caller as
+     * an extra last parameter. It copies the returned struct there and returns that address,
+     * which stays valid once its own frame is popped.
+     */
+    @Override
+    public Value visitFunDecl(FunDecl fd) {
+        boolean structResult = fd.type instanceof StructType;
+        fn = new Function(fd.name, irType(fd.type), fd.params.size() + (structResult ? 1 : 0));
+        locals.clear();
+        current = fn.newBlock();
+        fn.blocks.add(current);
+        for (int k = 0; k < fd.params.size(); k++) {
+            VarDecl vd = fd.params.get(k);
+            vd.accept(this);
+            Temp t = fn.newTemp(irType(vd.type), vd.varName);
+            emit(Instr.param(t, k));
+            // a struct is passed by its address and copied into the parameter
+            if (vd.type instanceof StructType)
+                copy(vd.type, t, local(vd), 0);
+            else
+                store(vd.type, local(vd), 0, t);
+        }
+        resultBuffer = null;
+        if (structResult) {
+            resultBuffer = fn.newTemp(IRType.PTR, "result");
+            emit(Instr.param(resultBuffer, fd.params.size()));
+        }
+        fd.block.accept(this);
+        if (!current.isTerminated())
+            emit(Instr.ret(null));
+        fn.computeCFG();
+        module.functions.add(fn);
+        return null;
+    }
+
+    @Override
+    public Value visitVarDecl(VarDecl vd) {
+        // parameters are also declared by the body, see NameAnalysisVisitor
+        if (!locals.containsKey(vd))
+            locals.put(vd, fn.newSlot(storage(vd.type), vd.varName));
+        return null;
+    }
+
+    @Override
+    public Value visitBlock(Block b) {
+        for (VarDecl vd : b.varDecls) {
+            vd.accept(this);
+        }
+        for (Stmt s : b.Stmt) {
+            s.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Value visitWhile(While w) {
+        // rotated into a guarded do-while, so that an iteration only takes the branch of the test
+        BasicBlock body = fn.newBlock();
+        BasicBlock exit = fn.newBlock();
+        condition(w.e, body, exit);
+        start(body);
+        w.s.accept(this);
+        if (!current.isTerminated())
+            condition(w.e, body, exit);
+        start(exit);
+        return null;
+    }
+
+    @Override
+    public Value visitIf(If i) {
+        BasicBlock then = fn.newBlock();
+        BasicBlock otherwise = i.s2 == null ? null : fn.newBlock();
+        BasicBlock join = fn.newBlock();
+        condition(i.e, then, otherwise == null ? join : otherwise);
+        start(then);
+        i.s1.accept(this);
+        emit(Instr.jump(join));
+        if (otherwise != null) {
+            start(otherwise);
+            i.s2.accept(this);
+            emit(Instr.jump(join));
+        }
+        start(join);
+        return null;
+    }
+
+    @Override
+    public Value visitAssign(Assign a) {
+        Value v = a.e2.accept(this);
+        Type t = typeOf(a.e1);
+        Address l = location(a.e1);
+        if (t instanceof StructType || t instanceof ArrayType) {
+            copy(t, v, l.base, l.offset);
+        } else {
+            store(t, l.base, l.offset, v);
+        }
+        return null;
+    }
+
+    @Override
+    public Value visitReturn(Return r) {
+        Value v = r.e == null ? null : r.e.accept(this);
+        if (v != null && resultBuffer != null) {
+            copy(typeOf(r.e), v, resultBuffer, 0);
+            v = resultBuffer;
+        }
+        emit(Instr.ret(v));
+        return null;
+    }
+
+    @Override
+    public Value visitExprStmt(ExprStmt es) {
+        es.e.accept(this);
+        return null;
+    }
+
+    @Override
+    public Value visitIntLiteral(IntLiteral il) {
+        return new Const(IRType.INT, il.i);
+    }
+
+    @Override
+    public Value visitChrLiteral(ChrLiteral cl) {
+        return new Const(IRType.CHAR, cl.c);
+    }
+
+    @Override
+    public Value visitStrLiteral(StrLiteral sl) {
+        String label = strings.get(sl.s);
+        if (label == null) {
+            label = "str." + strings.size();
+            strings.put(sl.s, label);
+            module.globals.add(new Global(label, sl.s));
+        }
+        Temp t = fn.newTemp(IRType.PTR);
+        emit(Instr.la(t, label));
+        return t;
+    }
+
+    @Override
+    public Value visitVarExpr(VarExpr v) {
+        if (v.vd == null)
+            return new Const(0);
+        Address a = location(v);
+        return load(v.vd.type, a.base, a.offset);
+    }
+
+    @Override
+    public Value visitArrayAccessExpr(ArrayAccessExpr aae) {
+        Address a = location(aae);
+        return load(typeOf(aae), a.base, a.offset);
+    }
+
+    @Override
+    public Value visitFieldAccessExpr(FieldAccessExpr fae) {
+        Address a = location(fae);
+        return load(typeOf(fae), a.base, a.offset);
+    }
+
+    @Override
+    public Value visitValueAtExpr(ValueAtExpr vae) {
+        Value p = vae.e.accept(this);
+        return load(typeOf(vae), p, 0);
+    }
+
+    @Override
+    public Value visitSizeOfExpr(SizeOfExpr soe) {
+        return new Const(sizeOf(soe.t));
+    }
+
+    @Override
+    public Value visitTypecastExpr(TypecastExpr te) {
+        return te.e.accept(this);
+    }
+
+    @Override
+    public Value visitBinOp(BinOp bo) {
+        if (bo.op == Op.AND || bo.op == Op.OR) {
+            // the value goes through a slot, which becomes a phi once in SSA form
+            Slot s = fn.newSlot(4, null);
+            BasicBlock yes = fn.newBlock();
+            BasicBlock no = fn.newBlock();
+            BasicBlock join = fn.newBlock();
+            condition(bo, yes, no);
+            start(yes);
+            store(BaseType.INT, frame(s), 0, new Const(1));
+            emit(Instr.jump(join));
+            start(no);
+            store(BaseType.INT, frame(s), 0, new Const(0));
+            start(join);
+            return load(BaseType.INT, frame(s), 0);
+        }
+        Value lhs = bo.Exprs1.accept(this);
+        Value rhs = bo.Exprs2.accept(this);
+        Temp r = fn.newTemp(IRType.INT);
+        emit(Instr.binary(opcode(bo.op), r, lhs, rhs));
+        return r;
+    }
+
+    /*
+     * Branches to ifTrue when the condition holds, else to ifFalse. The right operand of && and ||
+     * is only evaluated when the left one does not decide the condition, and comparisons branch
+     * on their operands without their 0 or 1 value being computed.
+     */
+    private void condition(Expr e, BasicBlock ifTrue, BasicBlock ifFalse) {
+        Op op = e instanceof BinOp ? ((BinOp) e).op : null;
+        if (op == Op.AND || op == Op.OR) {
+            BinOp bo = (BinOp) e;
+            BasicBlock right = fn.newBlock();
+            if (op == Op.AND)
+                condition(bo.Exprs1, right, ifFalse);
+            else
+                condition(bo.Exprs1, ifTrue, right);
+            start(right);
+            condition(bo.Exprs2, ifTrue, ifFalse);
+        } else if (op != null && opcode(op).isComparison()) {
+            BinOp bo = (BinOp) e;
+            Value lhs = bo.Exprs1.accept(this);
+            Value rhs = bo.Exprs2.accept(this);
+            emit(Instr.branch(opcode(op), lhs, rhs, ifTrue, ifFalse));
+        } else if (e instanceof IntLiteral) {
+            emit(Instr.jump(((IntLiteral) e).i != 0 ? ifTrue : ifFalse));
+        } else {
+            emit(Instr.branch(Opcode.SNE, e.accept(this), new Const(0), ifTrue, ifFalse));
+        }
+    }
+
+    static Opcode opcode(Op op) {
+        switch (op) {
+            case ADD: return Opcode.ADD;
+            case SUB: return Opcode.SUB;
+            case MUL: return Opcode.MUL;
+            case DIV: return Opcode.DIV;
+            case MOD: return Opcode.MOD;
+            case GT: return Opcode.SGT;
+            case LT: return Opcode.SLT;
+            case GE: return Opcode.SGE;
+            case LE: return Opcode.SLE;
+            case NE: return Opcode.SNE;
+            case EQ: return Opcode.SEQ;
+            default: throw new IllegalArgumentException(op.toString());
+        }
+    }
+
+    @Override
+    public Value visitFunCallExpr(FunCallExpr fc) {
+        Type result = returnType(fc);
+        Value[] args = new Value[fc.Exprs.size() + (result instanceof StructType ? 1 : 0)];
+        for (int k = 0; k < fc.Exprs.size(); k++)
+            args[k] = fc.Exprs.get(k).accept(this);
+        // see visitFunDecl
+        if (result instanceof StructType)
+            args[args.length - 1] = frame(fn.newSlot(storage(result), fc.s + ".result"));
+        IRType type = irType(result);
+        Temp r = type == null ? null : fn.newTemp(type);
+        emit(Instr.call(r, fc.s, args));
+        return r;
+    }
+
+    private Type returnType(FunCallExpr fc) {
+        if (fc.fd != null)
+            return fc.fd.type;
+        switch (fc.s) {
+            case "read_i": return BaseType.INT;
+            case "read_c": return BaseType.CHAR;
+            case "mcmalloc": return Types.pointer(BaseType.VOID);
+            default: return BaseType.VOID;
+        }
+    }
+
+    /*
+     * Address of an lvalue, or of the value of an expression of struct type.
+     */
+    private Address location(Expr e) {
+        if (e instanceof VarExpr) {
+            VarDecl vd = ((VarExpr) e).vd;
+            Slot s = vd == null ? null : locals.get(vd);
+            Temp t = fn.newTemp(IRType.PTR);
+            if (s != null)
+                emit(Instr.frame(t, s));
+            else
+                emit(Instr.la(t, vd == null ? ((VarExpr) e).name : vd.varName));
+            return new Address(t, 0);
+        } else if (e instanceof ArrayAccessExpr) {
+            ArrayAccessExpr aae = (ArrayAccessExpr) e;
+            Value base = aae.e1.accept(this);
+            Value index = aae.e2.accept(this);
+            int stride = stride(typeOf(aae));
+            if (index instanceof Const)
+                return new Address(base, ((Const) index).value * stride);
+            if (stride != 1) {
+                Temp scaled = fn.newTemp(IRType.INT);
+                emit(Instr.binary(Opcode.MUL, scaled, index, new Const(stride)));
+                index = scaled;
+            }
+            Temp t = fn.newTemp(IRType.PTR);
+            emit(Instr.binary(Opcode.ADD, t, base, index));
+            return new Address(t, 0);
+        } else if (e instanceof FieldAccessExpr) {
+            FieldAccessExpr fae = (FieldAccessExpr) e;
+            Address a = location(fae.e);
+            Type t = typeOf(fae.e);
+            Integer offset = t instanceof StructType ? fieldOffsets.get(((StructType) t).s).get(fae.s) : null;
+            return new Address(a.base, a.offset + (offset == null ? 0 : offset));
+        } else if (e instanceof ValueAtExpr) {
+            return new Address(((ValueAtExpr) e).e.accept(this), 0);
+        }
+        return new Address(e.accept(this), 0);
+    }
+
+    /*
+     * Value of type t at base + offset; arrays and structs are used through their address.
+     */
+    private Value load(Type t, Value base, int offset) {
+        if (t instanceof ArrayType || t instanceof StructType) {
+            if (offset == 0)
+                return base;
+            Temp a = fn.newTemp(IRType.PTR);
+            emit(Instr.binary(Opcode.ADD, a, base, new Const(offset)));
+            return a;
+        }
+        Temp r = fn.newTemp(irType(t));
+        emit(Instr.load(r, irType(t), base, offset));
+        return r;
+    }
+
+    private void store(Type t, Value base, int offset, Value v) {
+        emit(Instr.store(irType(t), base, offset, v));
+    }
+
+    /*
+     * Copies the value of type t at the address from to base + offset, word by word.
+     */
+    private void copy(Type t, Value from, Value base, int offset) {
+        for (int k = 0; k < storage(t); k += 4) {
+            Temp w = fn.newTemp(IRType.INT);
+            emit(Instr.load(w, IRType.INT, from, k));
+            emit(Instr.store(IRType.INT, base, offset + k, w));
+        }
+    }
+
+    private Value local(VarDecl vd) {
+        return frame(locals.get(vd));
+    }
+
+    private Value frame(Slot s) {
+        Temp t = fn.newTemp(IRType.PTR);
+        emit(Instr.frame(t, s));
+        return t;
+    }
+
+    private void emit(Instr i) {
+        if (current.isTerminated()) {
+            // code after a return, dropped with the unreachable blocks
+            start(fn.newBlock());
+        }
+        current.add(i);
+    }
+
+    private void start(BasicBlock b) {
+        if (!current.isTerminated())
+            current.add(Instr.jump(b));
+        current = b;
+        fn.blocks.add(b);
+    }
+
+    /*
+     * Static type of an expression.
+     */
+    private Type typeOf(Expr e) {
+        if (e instanceof VarExpr) {
+            VarExpr v = (VarExpr) e;
+            return v.vd != null ? v.vd.type : v.std != null ? v.std.st : BaseType.INT;
+        } else if (e instanceof IntLiteral || e instanceof BinOp || e instanceof SizeOfExpr) {
+            return BaseType.INT;
+        } else if (e instanceof ChrLiteral) {
+            return BaseType.CHAR;
+        } else if (e instanceof StrLiteral) {
+            return Types.array(BaseType.CHAR, ((StrLiteral) e).s.length() + 1);
+        } else if (e instanceof FunCallExpr) {
+            return returnType((FunCallExpr) e);
+        } else if (e instanceof TypecastExpr) {
+            return ((TypecastExpr) e).t;
+        } else if (e instanceof ValueAtExpr) {
+            return element(typeOf(((ValueAtExpr) e).e));
+        } else if (e instanceof ArrayAccessExpr) {
+            return element(typeOf(((ArrayAccessExpr) e).e1));
+        } else if (e instanceof FieldAccessExpr) {
+            FieldAccessExpr fae = (FieldAccessExpr) e;
+            Type t = typeOf(fae.e);
+            if (t instanceof StructType && structs.containsKey(((StructType) t).s)) {
+                for (VarDecl vd : structs.get(((StructType) t).s).varDecls) {
+                    if (vd.varName.equals(fae.s))
+                        return vd.type;
+                }
+            }
+        }
+        return BaseType.INT;
+    }
+
+    private static Type element(Type t) {
+        if (t instanceof PointerType)
+            return ((PointerType) t).t;
+        if (t instanceof ArrayType)
+            return ((ArrayType) t).t;
+        return BaseType.INT;
+    }
+
+    static IRType irType(Type t) {
+        if (t == BaseType.VOID)
+            return null;
+        if (t == BaseType.CHAR)
+            return IRType.CHAR;
+        if (t == BaseType.INT)
+            return IRType.INT;
+        return IRType.PTR;
+    }
+
+    /*
+     * Size of a variable of type t: chars take a word, the chars of an array are packed.
+     */
+    private int storage(Type t) {
+        return known(layout.size(t));
+    }
+
+    private int stride(Type t) {
+        return known(layout.stride(t));
+    }
+
+    private int sizeOf(Type t) {
+        return known(layout.sizeOf(t));
+    }
+
+    // semantic analysis rejects the structs which cannot be laid out
+    private static int known(int size) {
+        if (size == Types.SIZE_UNKNOWN)
+            throw new IllegalStateException("size of a struct which was not laid out");
+        return size;
+    }
+
+    @Override
+    public Value visitBaseType(BaseType bt) {
+        return null;
+    }
+
+    @Override
+    public Value visitPointerType(PointerType pt) {
+        return null;
+    }
+
+    @Override
+    public Value visitStructType(StructType st) {
+        return null;
+    }
+
+    @Override
+    public Value visitArrayType(ArrayType at) {
+        return null;
+    }
+}
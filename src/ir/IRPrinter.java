@@ -0,0 +1,43 @@
+package ir;
+
+import java.io.PrintWriter;
+
+/**
+ * Textual dump of the IR, one instruction per line.
+ */
+public class IRPrinter {
+
+    private final PrintWriter writer;
+
+    public IRPrinter(PrintWriter writer) {
+        this.writer = writer;
+    }
+
+    public void print(Module m) {
+        for (Global g : m.globals) {
+            if (g.string == null)
+                writer.println("global " + g.name + " " + g.size);
+            else
+                writer.println("global " + g.name + " \"" + g.escaped() + "\"");
+        }
+        for (Function f : m.functions) {
+            writer.println();
+            print(f);
+        }
+        writer.flush();
+    }
+
+    public void print(Function f) {
+        writer.println("function " + (f.returnType == null ? "void" : f.returnType) + " " + f.name + "(" + f.paramCount + ")");
+        for (Slot s : f.slots)
+            writer.println("  slot " + s + " " + s.size);
+        for (BasicBlock b : f.blocks) {
+            writer.print(b.label() + ":");
+            if (!b.preds.isEmpty())
+                writer.print("  # preds " + b.preds.toString().replaceAll("[\\[\\],]", ""));
+            writer.println();
+            for (Instr i : b.instrs)
+                writer.println("  " + i);
+        }
+    }
+}
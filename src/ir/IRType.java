@@ -0,0 +1,17 @@
+package ir;
+
+/**
+ * Types of IR values. All of them fit in a register, a CHAR being sign extended to a word;
+ * loads and stores of a CHAR access a single byte.
+ */
+public enum IRType {
+    INT, CHAR, PTR;
+
+    public boolean isByte() {
+        return this == CHAR;
+    }
+
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
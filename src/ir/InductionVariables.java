@@ -0,0 +1,344 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strength reduction of the induction variables of the loops, and linear function test
+ * replacement.
+ *
+ * A basic induction variable is a phi of the header taking its initial value from the preheader
+ * and, from the single back edge, itself plus a constant. A derived one is a basic one times a
+ * constant plus a value invariant in the loop, through additions, subtractions, multiplications
+ * and left shifts. An address derived from a basic variable gets a phi of its own, started in the
+ * preheader and stepped at the back edge, so that walking an array costs an addition instead of
+ * the scaling of the index.
+ *
+ * A basic variable then only counting the iterations, to test it against a value invariant in
+ * the loop when leaving it, has its test done on one of these addresses and goes away. The test
+ * is only replaced when the address is dereferenced on every iteration, so that it stays in the
+ * memory of the program and cannot wrap around.
+ */
+public class InductionVariables {
+
+    // basic * scale + addend
+    private static class Linear {
+        final Instr basic;
+        final int scale;
+        final Value addend;
+
+        Linear(Instr basic, int scale, Value addend) {
+            this.basic = basic;
+            this.scale = scale;
+            this.addend = addend;
+        }
+    }
+
+    // an address replaced by a phi of its own
+    private static class Pointer {
+        final Loop loop;
+        final Linear value;
+        final Temp phi;
+        final Temp next;
+
+        Pointer(Loop loop, Linear value, Temp phi, Temp next) {
+            this.loop = loop;
+            this.value = value;
+            this.phi = phi;
+            this.next = next;
+        }
+    }
+
+    private final Function f;
+    private final Map<Temp, Instr> defs = new HashMap<>();
+    private final Map<Instr, BasicBlock> blockOf = new HashMap<>();
+    private final List<Pointer> pointers = new ArrayList<>();
+    // phi of each address replaced, an inner loop starting from an address of the outer one
+    private final Map<Value, Temp> replaced = new HashMap<>();
+    private DominatorTree dom;
+    // block receiving the instructions computing the initial values
+    private BasicBlock pre;
+
+    public InductionVariables(Function f) {
+        this.f = f;
+    }
+
+    /*
+     * Returns whether the function changed.
+     */
+    public boolean run() {
+        boolean changed = new LoopForest(f).insertPreheaders();
+        LoopForest loops = new LoopForest(f);
+        dom = loops.dominators();
+        for (BasicBlock b : f.blocks) {
+            for (Instr i : b.instrs)
+                define(i, b);
+        }
+        for (Loop l : loops.loops()) {
+            pre = l.preheader();
+            if (pre != null)
+                changed |= reduce(l);
+        }
+        if (pointers.isEmpty())
+            return changed;
+        // the computations of the addresses replaced, which still use the basic variables, go away
+        new DeadCodeElimination(f).run();
+        Map<Value, List<Instr>> users = new HashMap<>();
+        for (BasicBlock b : f.blocks) {
+            for (Instr i : b.instrs) {
+                for (Value v : i.args)
+                    users.computeIfAbsent(v, x -> new ArrayList<>()).add(i);
+            }
+        }
+        for (Pointer p : pointers)
+            replaceTest(p, users);
+        return true;
+    }
+
+    private void define(Instr i, BasicBlock b) {
+        blockOf.put(i, b);
+        if (i.dst != null)
+            defs.put(i.dst, i);
+    }
+
+    private boolean reduce(Loop l) {
+        Map<Temp, Linear> linear = new HashMap<>();
+        for (Instr phi : l.header.instrs) {
+            if (phi.op != Opcode.PHI)
+                break;
+            if (step(phi, l) != null)
+                linear.put(phi.dst, new Linear(phi, 1, new Const(0)));
+        }
+        if (linear.isEmpty())
+            return false;
+        List<Instr> addresses = new ArrayList<>();
+        for (BasicBlock b : l.blocks) {
+            for (Instr i : b.instrs) {
+                if (i.op == Opcode.PHI || i.dst == null)
+                    continue;
+                Linear x = derive(i, linear, l);
+                if (x == null)
+                    continue;
+                linear.put(i.dst, x);
+                // the first address of a chain, the following ones being offsets from it
+                boolean first = i.dst.type == IRType.PTR;
+                for (Value v : i.args)
+                    first &= !(linear.containsKey(v) && v.type == IRType.PTR);
+                if (first && !usedOutside(i.dst, l))
+                    addresses.add(i);
+            }
+        }
+        for (Instr i : addresses) {
+            Linear x = linear.get(i.dst);
+            Instr basic = x.basic;
+            int in = l.contains(basic.from[0]) ? 0 : 1;
+            BasicBlock latch = basic.from[in];
+            Value start = add(multiply(basic.args[1 - in], x.scale), x.addend);
+
+            Instr phi = Instr.phi(f.newTemp(i.dst.type), 2);
+            Temp next = f.newTemp(i.dst.type);
+            Instr stepped = Instr.binary(Opcode.ADD, next, phi.dst, new Const(x.scale * step(basic, l)));
+            phi.args[1 - in] = start;
+            phi.from[1 - in] = pre;
+            phi.args[in] = next;
+            phi.from[in] = latch;
+            l.header.instrs.add(phis(l.header), phi);
+            define(phi, l.header);
+            // stepped along with the basic variable, whose increment stays next to the copy into it
+            Instr inc = defs.get(basic.args[in]);
+            BasicBlock b = blockOf.get(inc);
+            b.instrs.add(b.instrs.indexOf(inc), stepped);
+            define(stepped, b);
+            f.replaceUses(i.dst, phi.dst);
+            replaced.put(i.dst, phi.dst);
+            pointers.add(new Pointer(l, x, phi.dst, next));
+        }
+        return !addresses.isEmpty();
+    }
+
+    private static int phis(BasicBlock b) {
+        int n = 0;
+        while (b.instrs.get(n).op == Opcode.PHI)
+            n++;
+        return n;
+    }
+
+    /*
+     * The constant a basic induction variable is stepped by, null for the other phis.
+     */
+    private Integer step(Instr phi, Loop l) {
+        if (phi.args.length != 2 || l.contains(phi.from[0]) == l.contains(phi.from[1]))
+            return null;
+        int in = l.contains(phi.from[0]) ? 0 : 1;
+        Instr inc = defs.get(phi.args[in]);
+        if (inc == null || !l.contains(blockOf.get(inc)))
+            return null;
+        Value[] a = inc.args;
+        if (inc.op == Opcode.ADD && a[0] == phi.dst && a[1] instanceof Const)
+            return ((Const) a[1]).value;
+        if (inc.op == Opcode.ADD && a[1] == phi.dst && a[0] instanceof Const)
+            return ((Const) a[0]).value;
+        if (inc.op == Opcode.SUB && a[0] == phi.dst && a[1] instanceof Const)
+            return -((Const) a[1]).value;
+        return null;
+    }
+
+    /*
+     * The value of the instruction as a derived induction variable, or null.
+     */
+    private Linear derive(Instr i, Map<Temp, Linear> linear, Loop l) {
+        if (!i.op.isBinary())
+            return null;
+        Value a = i.args[0];
+        Value b = i.args[1];
+        Linear x = linear.get(a);
+        Linear y = linear.get(b);
+        switch (i.op) {
+            case ADD:
+                if (x != null && isInvariant(b, l))
+                    return new Linear(x.basic, x.scale, add(x.addend, b));
+                if (y != null && isInvariant(a, l))
+                    return new Linear(y.basic, y.scale, add(a, y.addend));
+                return null;
+            case SUB:
+                if (x != null && isInvariant(b, l))
+                    return new Linear(x.basic, x.scale, subtract(x.addend, b));
+                if (y != null && isInvariant(a, l))
+                    return new Linear(y.basic, -y.scale, subtract(a, y.addend));
+                return null;
+            case MUL:
+                if (x != null && b instanceof Const)
+                    return new Linear(x.basic, x.scale * ((Const) b).value, multiply(x.addend, ((Const) b).value));
+                if (y != null && a instanceof Const)
+                    return new Linear(y.basic, y.scale * ((Const) a).value, multiply(y.addend, ((Const) a).value));
+                return null;
+            case SLL:
+                if (x != null && b instanceof Const)
+                    return new Linear(x.basic, x.scale << ((Const) b).value, multiply(x.addend, 1 << ((Const) b).value));
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private boolean isInvariant(Value v, Loop l) {
+        return v instanceof Const || defs.containsKey(v) && !l.contains(blockOf.get(defs.get(v)));
+    }
+
+    private boolean usedOutside(Temp t, Loop l) {
+        for (BasicBlock b : f.blocks) {
+            if (l.contains(b))
+                continue;
+            for (Instr i : b.instrs) {
+                for (Value v : i.args) {
+                    if (v == t)
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Replaces the test of the basic variable of the address leaving the loop by one of the address,
+     * when the basic variable is used for nothing else.
+     */
+    private void replaceTest(Pointer p, Map<Value, List<Instr>> users) {
+        Loop l = p.loop;
+        Instr basic = p.value.basic;
+        if (p.value.scale <= 0 || blockOf.get(basic) != l.header || !l.header.instrs.contains(basic))
+            return;
+        int in = l.contains(basic.from[0]) ? 0 : 1;
+        BasicBlock latch = basic.from[in];
+        Temp next = (Temp) basic.args[in];
+
+        Instr exit = null;
+        for (BasicBlock b : l.blocks) {
+            for (BasicBlock s : b.succs) {
+                if (l.contains(s))
+                    continue;
+                if (exit != null)
+                    return;
+                exit = b.terminator();
+            }
+        }
+        if (exit == null || exit.op != Opcode.BRANCH)
+            return;
+        int k = exit.args[0] == basic.dst || exit.args[0] == next ? 0 : 1;
+        Value counter = exit.args[k];
+        Value bound = exit.args[1 - k];
+        if (counter != basic.dst && (counter != next || blockOf.get(exit) != latch) || !isInvariant(bound, l))
+            return;
+        if (!onlyUsedBy(users, basic.dst, defs.get(next), exit) || !onlyUsedBy(users, next, basic, exit))
+            return;
+        if (!dereferencedEveryIteration(p.phi, l, latch))
+            return;
+
+        pre = l.preheader();
+        Value addend = p.value.addend;
+        while (replaced.containsKey(addend))
+            addend = replaced.get(addend);
+        Value limit = add(multiply(bound, p.value.scale), addend);
+        exit.args[k] = counter == basic.dst ? p.phi : p.next;
+        exit.args[1 - k] = limit;
+    }
+
+    private static boolean onlyUsedBy(Map<Value, List<Instr>> users, Value v, Instr a, Instr b) {
+        for (Instr i : users.getOrDefault(v, new ArrayList<>())) {
+            if (i != a && i != b)
+                return false;
+        }
+        return true;
+    }
+
+    private boolean dereferencedEveryIteration(Temp address, Loop l, BasicBlock latch) {
+        for (BasicBlock b : l.blocks) {
+            if (!dom.dominates(b, latch))
+                continue;
+            for (Instr i : b.instrs) {
+                if ((i.op == Opcode.LOAD || i.op == Opcode.STORE) && i.args[0] == address)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private Value add(Value a, Value b) {
+        if (a instanceof Const && b instanceof Const)
+            return new Const(((Const) a).value + ((Const) b).value);
+        if (a instanceof Const && ((Const) a).value == 0)
+            return b;
+        if (b instanceof Const && ((Const) b).value == 0)
+            return a;
+        return emit(Opcode.ADD, a, b);
+    }
+
+    private Value subtract(Value a, Value b) {
+        if (a instanceof Const && b instanceof Const)
+            return new Const(((Const) a).value - ((Const) b).value);
+        if (b instanceof Const && ((Const) b).value == 0)
+            return a;
+        return emit(Opcode.SUB, a, b);
+    }
+
+    private Value multiply(Value a, int c) {
+        if (a instanceof Const)
+            return new Const(((Const) a).value * c);
+        if (c == 1)
+            return a;
+        return emit(Opcode.MUL, a, new Const(c));
+    }
+
+    /*
+     * Computes a op b at the end of the preheader.
+     */
+    private Temp emit(Opcode op, Value a, Value b) {
+        boolean address = a.type == IRType.PTR || b.type == IRType.PTR;
+        Instr i = Instr.binary(op, f.newTemp(address ? IRType.PTR : IRType.INT), a, b);
+        pre.instrs.add(pre.instrs.size() - 1, i);
+        define(i, pre);
+        return i.dst;
+    }
+}
@@ -0,0 +1,224 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inlines the calls to small functions, bottom-up over the call graph: the calls a function makes
+ * are inlined before it is itself considered, with its size after them.
+ *
+ * The size of a function is the number of its IR instructions. A call is inlined when the callee
+ * is at most the threshold, twice that from within a loop, where the call protocol costs the most,
+ * and whatever its size when the call is the only one to the callee, which then goes away. The
+ * callers stop growing past a limit, and the recursive functions are never inlined.
+ *
+ * It runs before SSA construction, the variables of the callee still being its stack slots: they
+ * become slots of the caller's frame, and its blocks are copied with fresh temporaries. The
+ * parameters become copies of the arguments and the returns jumps to the rest of the caller, the
+ * value returned being stored into a slot of its own when there are several returns.
+ */
+public class Inliner {
+
+    public static final int DEFAULT_THRESHOLD = 80;
+    // size past which a caller gets no more calls inlined
+    private static final int MAX_CALLER_SIZE = 1500;
+
+    private final Module m;
+    private final int threshold;
+    private final Set<Function> recursive = new HashSet<>();
+    // number of calls to each function
+    private final Map<Function, Integer> calls = new HashMap<>();
+
+    public Inliner(Module m, int threshold) {
+        this.m = m;
+        this.threshold = threshold;
+    }
+
+    /*
+     * Returns whether a call was inlined.
+     */
+    public boolean run() {
+        if (threshold <= 0)
+            return false;
+        CallGraph graph = new CallGraph(m);
+        for (Function f : m.functions) {
+            if (reaches(graph, f, f))
+                recursive.add(f);
+            for (BasicBlock b : f.blocks) {
+                for (Instr i : b.instrs) {
+                    if (i.op == Opcode.CALL && m.function(i.symbol) != null)
+                        calls.merge(m.function(i.symbol), 1, Integer::sum);
+                }
+            }
+        }
+        Set<Function> order = new LinkedHashSet<>();
+        Set<Function> seen = new HashSet<>();
+        for (Function f : m.functions)
+            postorder(graph, f, order, seen);
+        boolean changed = false;
+        for (Function f : order)
+            changed |= inlineCalls(f);
+        return changed;
+    }
+
+    private static boolean reaches(CallGraph graph, Function from, Function to) {
+        Set<Function> seen = new HashSet<>();
+        List<Function> work = new ArrayList<>(graph.callees(from));
+        while (!work.isEmpty()) {
+            Function g = work.remove(work.size() - 1);
+            if (g == to)
+                return true;
+            if (seen.add(g))
+                work.addAll(graph.callees(g));
+        }
+        return false;
+    }
+
+    /*
+     * Adds the functions f calls, then f, to order; a function met again within a cycle is left
+     * where it was first reached.
+     */
+    private static void postorder(CallGraph graph, Function f, Set<Function> order, Set<Function> seen) {
+        if (!seen.add(f))
+            return;
+        for (Function g : graph.callees(f))
+            postorder(graph, g, order, seen);
+        order.add(f);
+    }
+
+    private boolean inlineCalls(Function f) {
+        int size = size(f);
+        Set<BasicBlock> inLoop = new HashSet<>();
+        for (Loop l : new LoopForest(f).loops())
+            inLoop.addAll(l.blocks);
+        boolean changed = false;
+        for (int n = 0; n < f.blocks.size(); n++) {
+            BasicBlock b = f.blocks.get(n);
+            for (int k = 0; k < b.instrs.size(); k++) {
+                Instr call = b.instrs.get(k);
+                Function g = call.op == Opcode.CALL ? m.function(call.symbol) : null;
+                if (g == null || g == f || recursive.contains(g))
+                    continue;
+                int cost = size(g);
+                boolean worth = cost <= threshold || inLoop.contains(b) && cost <= 2 * threshold
+                        || calls.get(g) == 1;
+                if (!worth || size + cost > MAX_CALLER_SIZE)
+                    continue;
+                for (BasicBlock added : inline(f, b, k, g)) {
+                    if (inLoop.contains(b))
+                        inLoop.add(added);
+                }
+                size += cost;
+                calls.merge(g, -1, Integer::sum);
+                for (BasicBlock gb : g.blocks) {
+                    for (Instr i : gb.instrs) {
+                        if (i.op == Opcode.CALL && m.function(i.symbol) != null)
+                            calls.merge(m.function(i.symbol), 1, Integer::sum);
+                    }
+                }
+                changed = true;
+                // the rest of the block follows the inlined blocks
+                break;
+            }
+        }
+        if (changed)
+            f.computeCFG();
+        return changed;
+    }
+
+    private static int size(Function f) {
+        int size = 0;
+        for (BasicBlock b : f.blocks)
+            size += b.instrs.size();
+        return size;
+    }
+
+    /*
+     * Replaces the k-th instruction of b, a call to g, by the blocks of g, laid out after b. Returns
+     * the blocks added.
+     */
+    private List<BasicBlock> inline(Function f, BasicBlock b, int k, Function g) {
+        Instr call = b.instrs.get(k);
+        BasicBlock rest = f.newBlock();
+        rest.instrs.addAll(b.instrs.subList(k + 1, b.instrs.size()));
+        b.instrs.subList(k, b.instrs.size()).clear();
+
+        Map<BasicBlock, BasicBlock> blocks = new HashMap<>();
+        Map<Temp, Temp> temps = new HashMap<>();
+        Map<Slot, Slot> slots = new HashMap<>();
+        List<BasicBlock> added = new ArrayList<>();
+        for (BasicBlock gb : g.blocks) {
+            blocks.put(gb, f.newBlock());
+            added.add(blocks.get(gb));
+        }
+        added.add(rest);
+        for (Slot s : g.slots)
+            slots.put(s, f.newSlot(s.size, s.name == null ? g.name : g.name + "." + s.name));
+
+        Slot result = null;
+        int returns = 0;
+        for (BasicBlock gb : g.blocks) {
+            Instr t = gb.terminator();
+            if (t != null && t.op == Opcode.RET && t.args.length > 0)
+                returns++;
+        }
+        if (call.dst != null && returns > 1)
+            result = f.newSlot(4, g.name);
+
+        for (BasicBlock gb : g.blocks) {
+            BasicBlock copy = blocks.get(gb);
+            for (Instr i : gb.instrs) {
+                Value[] args = new Value[i.args.length];
+                for (int a = 0; a < args.length; a++)
+                    args[a] = rename(f, i.args[a], temps);
+                Temp dst = (Temp) rename(f, i.dst, temps);
+                switch (i.op) {
+                    case PARAM:
+                        copy.add(Instr.mov(dst, call.args[i.offset]));
+                        break;
+                    case RET:
+                        if (call.dst != null && args.length > 0) {
+                            if (result == null) {
+                                copy.add(Instr.mov(call.dst, args[0]));
+                            } else {
+                                Temp address = f.newTemp(IRType.PTR);
+                                copy.add(Instr.frame(address, result));
+                                copy.add(Instr.store(call.dst.type, address, 0, args[0]));
+                            }
+                        }
+                        copy.add(Instr.jump(rest));
+                        break;
+                    default:
+                        Instr c = i.copy();
+                        c.dst = dst;
+                        c.args = args;
+                        if (c.slot != null)
+                            c.slot = slots.get(c.slot);
+                        for (int t = 0; t < c.targets.length; t++)
+                            c.targets[t] = blocks.get(c.targets[t]);
+                        copy.add(c);
+                }
+            }
+        }
+        if (result != null) {
+            Temp address = f.newTemp(IRType.PTR);
+            rest.instrs.add(0, Instr.frame(address, result));
+            rest.instrs.add(1, Instr.load(call.dst, call.dst.type, address, 0));
+        }
+        b.add(Instr.jump(blocks.get(g.entry())));
+        f.blocks.addAll(f.blocks.indexOf(b) + 1, added);
+        return added;
+    }
+
+    private static Value rename(Function f, Value v, Map<Temp, Temp> temps) {
+        if (!(v instanceof Temp))
+            return v;
+        Temp t = (Temp) v;
+        return temps.computeIfAbsent(t, x -> f.newTemp(x.type, x.name));
+    }
+}
@@ -0,0 +1,210 @@
+package ir;
+
+import java.util.Arrays;
+
+/**
+ * A three-address instruction. Which of the fields are used depends on the opcode, see Opcode.
+ */
+public class Instr {
+
+    public Opcode op;
+    public Temp dst;
+    public Value[] args;
+
+    // type of the memory access of LOAD and STORE
+    public IRType type;
+    // displacement of LOAD and STORE, index of PARAM
+    public int offset;
+    // global of LA, function of CALL
+    public String symbol;
+    // slot of FRAME
+    public Slot slot;
+    // condition of BRANCH, which goes to targets[0] when args[0] cond args[1] holds, else to targets[1]
+    public Opcode cond;
+    public BasicBlock[] targets;
+    // predecessor of each argument of PHI
+    public BasicBlock[] from;
+
+    private static final Value[] NONE = {};
+    private static final BasicBlock[] NO_BLOCKS = {};
+
+    private Instr(Opcode op, Temp dst, Value... args) {
+        this.op = op;
+        this.dst = dst;
+        this.args = args;
+        this.targets = NO_BLOCKS;
+    }
+
+    public static Instr mov(Temp dst, Value a) {
+        return new Instr(Opcode.MOV, dst, a);
+    }
+
+    public static Instr binary(Opcode op, Temp dst, Value a, Value b) {
+        return new Instr(op, dst, a, b);
+    }
+
+    public static Instr la(Temp dst, String symbol) {
+        Instr i = new Instr(Opcode.LA, dst, NONE);
+        i.symbol = symbol;
+        return i;
+    }
+
+    public static Instr frame(Temp dst, Slot slot) {
+        Instr i = new Instr(Opcode.FRAME, dst, NONE);
+        i.slot = slot;
+        return i;
+    }
+
+    public static Instr load(Temp dst, IRType type, Value address, int offset) {
+        Instr i = new Instr(Opcode.LOAD, dst, address);
+        i.type = type;
+        i.offset = offset;
+        return i;
+    }
+
+    public static Instr store(IRType type, Value address, int offset, Value value) {
+        Instr i = new Instr(Opcode.STORE, null, address, value);
+        i.type = type;
+        i.offset = offset;
+        return i;
+    }
+
+    public static Instr param(Temp dst, int index) {
+        Instr i = new Instr(Opcode.PARAM, dst, NONE);
+        i.offset = index;
+        return i;
+    }
+
+    public static Instr call(Temp dst, String symbol, Value... args) {
+        Instr i = new Instr(Opcode.CALL, dst, args);
+        i.symbol = symbol;
+        return i;
+    }
+
+    public static Instr phi(Temp dst, int count) {
+        Instr i = new Instr(Opcode.PHI, dst, new Value[count]);
+        i.from = new BasicBlock[count];
+        return i;
+    }
+
+    public static Instr jump(BasicBlock target) {
+        Instr i = new Instr(Opcode.JUMP, null, NONE);
+        i.targets = new BasicBlock[]{target};
+        return i;
+    }
+
+    public static Instr branch(Opcode cond, Value a, Value b, BasicBlock ifTrue, BasicBlock ifFalse) {
+        Instr i = new Instr(Opcode.BRANCH, null, a, b);
+        i.cond = cond;
+        i.targets = new BasicBlock[]{ifTrue, ifFalse};
+        return i;
+    }
+
+    public static Instr ret(Value value) {
+        return new Instr(Opcode.RET, null, value == null ? NONE : new Value[]{value});
+    }
+
+    /*
+     * A copy of the instruction, which shares its operands but not their arrays.
+     */
+    public Instr copy() {
+        Instr i = new Instr(op, dst, args.clone());
+        i.type = type;
+        i.offset = offset;
+        i.symbol = symbol;
+        i.slot = slot;
+        i.cond = cond;
+        i.targets = targets.clone();
+        i.from = from == null ? null : from.clone();
+        return i;
+    }
+
+    /*
+     * Whether removing the instruction would change the behaviour of the program, its result aside.
+     */
+    public boolean hasSideEffects() {
+        switch (op) {
+            case STORE: case CALL: case JUMP: case BRANCH: case RET:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /*
+     * Replaces the uses of from by to.
+     */
+    public boolean replaceUses(Value from, Value to) {
+        boolean changed = false;
+        for (int k = 0; k < args.length; k++) {
+            if (args[k] == from) {
+                args[k] = to;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /*
+     * Retargets the edges to from, towards to.
+     */
+    public void replaceTarget(BasicBlock from, BasicBlock to) {
+        for (int k = 0; k < targets.length; k++) {
+            if (targets[k] == from)
+                targets[k] = to;
+        }
+    }
+
+    /*
+     * Turns this instruction into dst = value.
+     */
+    public void becomeMov(Value value) {
+        op = Opcode.MOV;
+        args = new Value[]{value};
+        from = null;
+        symbol = null;
+        slot = null;
+    }
+
+    public void becomeJump(BasicBlock target) {
+        op = Opcode.JUMP;
+        args = NONE;
+        cond = null;
+        targets = new BasicBlock[]{target};
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (dst != null)
+            sb.append(dst).append(':').append(dst.type).append(" = ");
+        sb.append(op);
+        switch (op) {
+            case LA:
+                return sb.append(' ').append(symbol).toString();
+            case FRAME:
+                return sb.append(' ').append(slot).toString();
+            case LOAD:
+                return sb.append('.').append(type).append(" [").append(args[0]).append(" + ").append(offset).append(']').toString();
+            case STORE:
+                return sb.append('.').append(type).append(" [").append(args[0]).append(" + ").append(offset).append("], ").append(args[1]).toString();
+            case PARAM:
+                return sb.append(' ').append(offset).toString();
+            case CALL:
+                sb.append(' ').append(symbol);
+                return sb.append(Arrays.toString(args).replace('[', '(').replace(']', ')')).toString();
+            case PHI:
+                for (int k = 0; k < args.length; k++)
+                    sb.append(k == 0 ? " [" : ", [").append(args[k]).append(", ").append(from[k] == null ? "?" : from[k].label()).append(']');
+                return sb.toString();
+            case JUMP:
+                return sb.append(' ').append(targets[0].label()).toString();
+            case BRANCH:
+                return sb.append(' ').append(cond).append(' ').append(args[0]).append(", ").append(args[1])
+                        .append(" ? ").append(targets[0].label()).append(" : ").append(targets[1].label()).toString();
+            default:
+                for (int k = 0; k < args.length; k++)
+                    sb.append(k == 0 ? " " : ", ").append(args[k]);
+                return sb.toString();
+        }
+    }
+}
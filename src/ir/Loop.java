@@ -0,0 +1,54 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A natural loop: its header, which dominates the blocks of the loop, and the blocks from which
+ * the back edges to the header reach it without leaving them. The loops sharing a header are one.
+ */
+public class Loop {
+
+    public final BasicBlock header;
+    // in reverse postorder, the header first
+    public final Set<BasicBlock> blocks = new LinkedHashSet<>();
+    // null for the outermost loops
+    public Loop parent;
+    public final List<Loop> children = new ArrayList<>();
+
+    Loop(BasicBlock header) {
+        this.header = header;
+    }
+
+    public boolean contains(BasicBlock b) {
+        return blocks.contains(b);
+    }
+
+    /*
+     * Number of loops around this one, the outermost loops being at depth 1.
+     */
+    public int depth() {
+        return parent == null ? 1 : parent.depth() + 1;
+    }
+
+    /*
+     * The single block from outside the loop entering it, which only goes to the header, or null.
+     */
+    public BasicBlock preheader() {
+        BasicBlock entering = null;
+        for (BasicBlock p : header.preds) {
+            if (contains(p))
+                continue;
+            if (entering != null)
+                return null;
+            entering = p;
+        }
+        return entering != null && entering.succs.size() == 1 ? entering : null;
+    }
+
+    public String toString() {
+        return "loop " + header.label() + " " + blocks;
+    }
+}
@@ -0,0 +1,154 @@
+package ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The natural loops of a function and how they nest. An edge is a back edge when its target
+ * dominates its source; the cycles which are not entered through a single header have none and
+ * are not loops. The CFG edges of the function must be up to date.
+ */
+public class LoopForest {
+
+    private final Function f;
+    private final DominatorTree dom;
+    private final Map<BasicBlock, Loop> byHeader = new LinkedHashMap<>();
+    // innermost loop of each block in a loop
+    private final Map<BasicBlock, Loop> loopOf = new HashMap<>();
+    private final List<Loop> roots = new ArrayList<>();
+
+    public LoopForest(Function f) {
+        this.f = f;
+        dom = new DominatorTree(f);
+        Map<BasicBlock, Set<BasicBlock>> bodies = new LinkedHashMap<>();
+        for (BasicBlock b : dom.reversePostorder()) {
+            for (BasicBlock h : b.succs) {
+                if (dom.dominates(h, b))
+                    addBody(bodies.computeIfAbsent(h, x -> new HashSet<>()), b, h);
+            }
+        }
+        for (BasicBlock h : bodies.keySet()) {
+            Loop l = new Loop(h);
+            for (BasicBlock b : dom.reversePostorder()) {
+                if (bodies.get(h).contains(b))
+                    l.blocks.add(b);
+            }
+            byHeader.put(h, l);
+        }
+
+        // a loop nested in another has fewer blocks, so that the outer loops are met first
+        List<Loop> bySize = new ArrayList<>(byHeader.values());
+        bySize.sort(Comparator.comparingInt((Loop l) -> l.blocks.size()).reversed());
+        for (Loop l : bySize) {
+            l.parent = loopOf.get(l.header);
+            if (l.parent == null)
+                roots.add(l);
+            else
+                l.parent.children.add(l);
+            for (BasicBlock b : l.blocks)
+                loopOf.put(b, l);
+        }
+    }
+
+    /*
+     * Adds the blocks reaching the source of the back edge without going through the header.
+     */
+    private void addBody(Set<BasicBlock> body, BasicBlock source, BasicBlock header) {
+        body.add(header);
+        Deque<BasicBlock> work = new ArrayDeque<>();
+        if (body.add(source))
+            work.add(source);
+        while (!work.isEmpty()) {
+            for (BasicBlock p : work.poll().preds) {
+                if (body.add(p))
+                    work.add(p);
+            }
+        }
+    }
+
+    public DominatorTree dominators() {
+        return dom;
+    }
+
+    /*
+     * The innermost loop of the block, null when it is in none.
+     */
+    public Loop loopOf(BasicBlock b) {
+        return loopOf.get(b);
+    }
+
+    /*
+     * All the loops, each after the loops nested in it.
+     */
+    public List<Loop> loops() {
+        List<Loop> order = new ArrayList<>();
+        for (Loop l : roots)
+            postorder(l, order);
+        return order;
+    }
+
+    private void postorder(Loop l, List<Loop> order) {
+        for (Loop c : l.children)
+            postorder(c, order);
+        order.add(l);
+    }
+
+    /*
+     * Gives a preheader to the loops which have none, the entry of the function aside, merging
+     * the phi arguments of the edges entering the loop in a phi of the preheader. Returns whether
+     * the function changed, the forest then being out of date.
+     */
+    public boolean insertPreheaders() {
+        boolean changed = false;
+        for (Loop l : byHeader.values()) {
+            if (l.header == f.entry() || l.preheader() != null)
+                continue;
+            List<BasicBlock> entering = new ArrayList<>();
+            for (BasicBlock p : l.header.preds) {
+                if (!l.contains(p))
+                    entering.add(p);
+            }
+            BasicBlock pre = f.newBlock();
+            for (Instr i : l.header.instrs) {
+                if (i.op != Opcode.PHI)
+                    break;
+                Instr merged = Instr.phi(f.newTemp(i.dst.type), entering.size());
+                List<Value> args = new ArrayList<>();
+                List<BasicBlock> from = new ArrayList<>();
+                for (int k = 0; k < i.args.length; k++) {
+                    int e = entering.indexOf(i.from[k]);
+                    if (e < 0) {
+                        args.add(i.args[k]);
+                        from.add(i.from[k]);
+                    } else {
+                        merged.args[e] = i.args[k];
+                        merged.from[e] = i.from[k];
+                    }
+                }
+                pre.add(merged);
+                args.add(merged.dst);
+                from.add(pre);
+                i.args = args.toArray(new Value[0]);
+                i.from = from.toArray(new BasicBlock[0]);
+            }
+            pre.add(Instr.jump(l.header));
+            for (BasicBlock p : entering)
+                p.terminator().replaceTarget(l.header, pre);
+            f.blocks.add(f.blocks.indexOf(l.header), pre);
+            changed = true;
+        }
+        if (changed) {
+            f.computeCFG();
+            SSABuilder.simplifyPhis(f);
+        }
+        return changed;
+    }
+}
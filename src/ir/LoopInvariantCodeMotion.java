@@ -0,0 +1,99 @@
+package ir;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hoists the computations a loop repeats with the same operands into its preheader, the inner
+ * loops first so that what is invariant in the outer loops too moves on out of them.
+ *
+ * Only the instructions without side effects which cannot trap are moved: they may then run when
+ * the loop body would not have. Loads stay in the loop, which may store to the same memory.
+ * The addresses of slots and globals stay in the loops calling functions too, as keeping them
+ * across the calls would take a callee-saved register when computing them again is as cheap.
+ * The address of a global or slot the loop takes several times is hoisted once.
+ */
+public class LoopInvariantCodeMotion {
+
+    private final Function f;
+    private final Map<Temp, BasicBlock> defBlock = new HashMap<>();
+
+    public LoopInvariantCodeMotion(Function f) {
+        this.f = f;
+    }
+
+    /*
+     * Returns whether the function changed.
+     */
+    public boolean run() {
+        boolean changed = new LoopForest(f).insertPreheaders();
+        for (BasicBlock b : f.blocks) {
+            for (Instr i : b.instrs) {
+                if (i.dst != null)
+                    defBlock.put(i.dst, b);
+            }
+        }
+        for (Loop l : new LoopForest(f).loops()) {
+            BasicBlock pre = l.preheader();
+            if (pre != null)
+                changed |= hoist(l, pre);
+        }
+        return changed;
+    }
+
+    private boolean hoist(Loop l, BasicBlock pre) {
+        boolean changed = false;
+        boolean calls = false;
+        for (BasicBlock b : l.blocks) {
+            for (Instr i : b.instrs)
+                calls |= i.op == Opcode.CALL && !IRBuilder.isBuiltin(i.symbol);
+        }
+        // address already computed in the preheader, of each global and slot
+        Map<Object, Temp> addresses = new HashMap<>();
+        for (Instr i : pre.instrs) {
+            if (i.op == Opcode.LA || i.op == Opcode.FRAME)
+                addresses.putIfAbsent(i.op == Opcode.LA ? i.symbol : i.slot, i.dst);
+        }
+        // the blocks are in reverse postorder, a definition being met before its uses
+        for (BasicBlock b : l.blocks) {
+            for (int k = 0; k < b.instrs.size(); k++) {
+                Instr i = b.instrs.get(k);
+                if (!isInvariant(i, l) || calls && (i.op == Opcode.LA || i.op == Opcode.FRAME))
+                    continue;
+                b.instrs.remove(k--);
+                changed = true;
+                if (i.op == Opcode.LA || i.op == Opcode.FRAME) {
+                    Object key = i.op == Opcode.LA ? i.symbol : i.slot;
+                    if (addresses.containsKey(key)) {
+                        // a single register for the address however many times the loop takes it
+                        f.replaceUses(i.dst, addresses.get(key));
+                        continue;
+                    }
+                    addresses.put(key, i.dst);
+                }
+                pre.instrs.add(pre.instrs.size() - 1, i);
+                defBlock.put(i.dst, pre);
+            }
+        }
+        return changed;
+    }
+
+    private boolean isInvariant(Instr i, Loop l) {
+        switch (i.op) {
+            case DIV:
+            case MOD:
+                if (!(i.args[1] instanceof Const) || ((Const) i.args[1]).value == 0)
+                    return false;
+                break;
+            case LOAD: case STORE: case PARAM: case CALL: case PHI: case JUMP: case BRANCH: case RET:
+                return false;
+            default:
+                break;
+        }
+        for (Value v : i.args) {
+            if (v instanceof Temp && l.contains(defBlock.get(v)))
+                return false;
+        }
+        return true;
+    }
+}
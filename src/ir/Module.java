@@ -0,0 +1,21 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The IR of a whole program, headers included.
+ */
+public class Module {
+
+    public final List<Global> globals = new ArrayList<>();
+    public final List<Function> functions = new ArrayList<>();
+
+    public Function function(String name) {
+        for (Function f : functions) {
+            if (f.name.equals(name))
+                return f;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,106 @@
+package ir;
+
+public enum Opcode {
+    // dst = arg0
+    MOV,
+    // dst = arg0 op arg1, MULH giving the high word of the signed product
+    ADD, SUB, MUL, MULH, DIV, MOD, AND, OR, XOR, SLL, SRA, SRL,
+    // dst = arg0 op arg1 ? 1 : 0, also the conditions of BRANCH
+    SLT, SLE, SGT, SGE, SEQ, SNE,
+    // dst = address of the global symbol
+    LA,
+    // dst = address of the stack slot
+    FRAME,
+    // dst = memory[arg0 + offset]
+    LOAD,
+    // memory[arg0 + offset] = arg1
+    STORE,
+    // dst = the offset-th parameter of the function
+    PARAM,
+    // dst = symbol(args), dst is null for void functions
+    CALL,
+    // dst = the argument coming from the corresponding predecessor
+    PHI,
+    // terminators
+    JUMP, BRANCH, RET;
+
+    public boolean isBinary() {
+        return compareTo(ADD) >= 0 && compareTo(SNE) <= 0;
+    }
+
+    public boolean isComparison() {
+        return compareTo(SLT) >= 0 && compareTo(SNE) <= 0;
+    }
+
+    public boolean isCommutative() {
+        switch (this) {
+            case ADD: case MUL: case MULH: case AND: case OR: case XOR: case SEQ: case SNE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public boolean isTerminator() {
+        return this == JUMP || this == BRANCH || this == RET;
+    }
+
+    /*
+     * The comparison with its operands swapped, a < b being b > a.
+     */
+    public Opcode swap() {
+        switch (this) {
+            case SLT: return SGT;
+            case SLE: return SGE;
+            case SGT: return SLT;
+            case SGE: return SLE;
+            default: return this;
+        }
+    }
+
+    /*
+     * The comparison which holds when this one does not.
+     */
+    public Opcode negate() {
+        switch (this) {
+            case SLT: return SGE;
+            case SLE: return SGT;
+            case SGT: return SLE;
+            case SGE: return SLT;
+            case SEQ: return SNE;
+            case SNE: return SEQ;
+            default: throw new IllegalArgumentException(toString());
+        }
+    }
+
+    /*
+     * Value of a op b computed as MIPS would, null for a division by zero.
+     */
+    public Integer fold(int a, int b) {
+        switch (this) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case MULH: return (int) ((long) a * b >> 32);
+            case DIV: return b == 0 ? null : a / b;
+            case MOD: return b == 0 ? null : a % b;
+            case AND: return a & b;
+            case OR: return a | b;
+            case XOR: return a ^ b;
+            case SLL: return a << b;
+            case SRA: return a >> b;
+            case SRL: return a >>> b;
+            case SLT: return a < b ? 1 : 0;
+            case SLE: return a <= b ? 1 : 0;
+            case SGT: return a > b ? 1 : 0;
+            case SGE: return a >= b ? 1 : 0;
+            case SEQ: return a == b ? 1 : 0;
+            case SNE: return a != b ? 1 : 0;
+            default: throw new IllegalArgumentException(toString());
+        }
+    }
+
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
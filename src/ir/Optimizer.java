@@ -0,0 +1,63 @@
+package ir;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The passes run over the IR of a module between its lowering and instruction selection. The
+ * functions are left in SSA form, see SSADestructor.
+ */
+public class Optimizer {
+
+    // largest function inlined, in IR instructions, 0 for none
+    private final int inlineThreshold;
+
+    public Optimizer() {
+        this(Inliner.DEFAULT_THRESHOLD);
+    }
+
+    public Optimizer(int inlineThreshold) {
+        this.inlineThreshold = inlineThreshold;
+    }
+
+    public void optimize(Module m) {
+        removeDeadFunctions(m);
+        if (new Inliner(m, inlineThreshold).run())
+            removeDeadFunctions(m);
+        for (Function f : m.functions) {
+            new SSABuilder(f).build();
+            new ConstantPropagation(f).run();
+            new LoopInvariantCodeMotion(f).run();
+            new InductionVariables(f).run();
+            new StrengthReduction(f).run();
+            new DeadCodeElimination(f).run();
+            new CFGCleanup(f).run();
+        }
+        removeDeadGlobals(m);
+    }
+
+    /*
+     * Drops the functions main never calls, directly or not.
+     */
+    private void removeDeadFunctions(Module m) {
+        Set<Function> reached = new CallGraph(m).reachableFromMain();
+        if (!reached.isEmpty())
+            m.functions.retainAll(reached);
+    }
+
+    /*
+     * Drops the globals and strings no function uses any more.
+     */
+    private void removeDeadGlobals(Module m) {
+        Set<String> used = new HashSet<>();
+        for (Function f : m.functions) {
+            for (BasicBlock b : f.blocks) {
+                for (Instr i : b.instrs) {
+                    if (i.op == Opcode.LA)
+                        used.add(i.symbol);
+                }
+            }
+        }
+        m.globals.removeIf(g -> !used.contains(g.name));
+    }
+}
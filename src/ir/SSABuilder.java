@@ -0,0 +1,249 @@
+package ir;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Puts a function into SSA form, promoting the local variables whose address does not escape to
+ * temporaries (Cytron et al.). A slot is promoted when it holds a single word and its address is
+ * only used by loads and stores of the same type.
+ *
+ * Phis are placed on the iterated dominance frontier of the blocks storing to the variable, then
+ * the loads and stores are renamed in a walk of the dominator tree: a load is replaced by the value
+ * last stored on the path from the entry, which is undefined, here 0, when there is none.
+ */
+public class SSABuilder {
+
+    private final Function f;
+    private DominatorTree dom;
+
+    // promoted slots, with the type of their accesses
+    private final Map<Slot, IRType> promoted = new LinkedHashMap<>();
+    // slot addressed by the FRAME temporaries
+    private final Map<Temp, Slot> address = new HashMap<>();
+    // variable of the phis placed
+    private final Map<Instr, Slot> phis = new HashMap<>();
+    private final Map<Slot, Deque<Value>> stacks = new HashMap<>();
+    // value of the loads removed
+    private final Map<Temp, Value> loaded = new HashMap<>();
+
+    public SSABuilder(Function f) {
+        this.f = f;
+    }
+
+    public void build() {
+        findPromotable();
+        if (promoted.isEmpty()) {
+            f.slots.removeIf(s -> !address.containsValue(s));
+            return;
+        }
+        dom = new DominatorTree(f);
+        placePhis();
+        for (Slot s : promoted.keySet())
+            stacks.put(s, new ArrayDeque<>());
+        rename(f.entry());
+        // with the slots which are never used
+        f.slots.removeIf(s -> promoted.containsKey(s) || !address.containsValue(s));
+        simplifyPhis(f);
+    }
+
+    private void findPromotable() {
+        Set<Slot> escaping = new HashSet<>();
+        for (BasicBlock b : f.blocks) {
+            for (Instr i : b.instrs) {
+                if (i.op == Opcode.FRAME) {
+                    address.put(i.dst, i.slot);
+                    if (i.slot.size != 4)
+                        escaping.add(i.slot);
+                    else
+                        promoted.putIfAbsent(i.slot, null);
+                }
+            }
+        }
+        for (BasicBlock b : f.blocks) {
+            for (Instr i : b.instrs) {
+                for (int k = 0; k < i.args.length; k++) {
+                    Slot s = address.get(i.args[k]);
+                    if (s == null)
+                        continue;
+                    boolean access = k == 0 && i.offset == 0 && (i.op == Opcode.LOAD || i.op == Opcode.STORE);
+                    IRType type = promoted.get(s);
+                    if (!access || type != null && type != i.type)
+                        escaping.add(s);
+                    else
+                        promoted.put(s, i.type);
+                }
+            }
+        }
+        promoted.keySet().removeAll(escaping);
+        // the address is never used
+        promoted.replaceAll((s, t) -> t == null ? IRType.INT : t);
+    }
+
+    private void placePhis() {
+        for (Map.Entry<Slot, IRType> e : promoted.entrySet()) {
+            Slot s = e.getKey();
+            Deque<BasicBlock> work = new ArrayDeque<>();
+            for (BasicBlock b : f.blocks) {
+                for (Instr i : b.instrs) {
+                    if (i.op == Opcode.STORE && address.get(i.args[0]) == s) {
+                        work.add(b);
+                        break;
+                    }
+                }
+            }
+            Set<BasicBlock> placed = new HashSet<>();
+            Set<BasicBlock> queued = new HashSet<>(work);
+            while (!work.isEmpty()) {
+                for (BasicBlock d : dom.frontier(work.poll())) {
+                    if (!placed.add(d))
+                        continue;
+                    Instr phi = Instr.phi(f.newTemp(e.getValue(), s.name), d.preds.size());
+                    for (int k = 0; k < d.preds.size(); k++)
+                        phi.from[k] = d.preds.get(k);
+                    d.instrs.add(0, phi);
+                    phis.put(phi, s);
+                    if (queued.add(d))
+                        work.add(d);
+                }
+            }
+        }
+    }
+
+    private Value current(Slot s) {
+        Value v = stacks.get(s).peek();
+        return v != null ? v : new Const(promoted.get(s), 0);
+    }
+
+    /*
+     * Walks the dominator tree in preorder with an explicit stack, so that deep trees cannot
+     * overflow the Java stack. Each block is pushed twice: to be renamed, then below its
+     * children, to pop the values it defined once they are done.
+     */
+    private void rename(BasicBlock entry) {
+        Deque<BasicBlock> blocks = new ArrayDeque<>();
+        Deque<List<Slot>> definitions = new ArrayDeque<>();
+        blocks.push(entry);
+        definitions.push(new ArrayList<>());
+        Set<BasicBlock> renamed = new HashSet<>();
+        while (!blocks.isEmpty()) {
+            BasicBlock b = blocks.peek();
+            if (renamed.add(b)) {
+                renameBlock(b, definitions.peek());
+                List<BasicBlock> children = dom.children(b);
+                for (int k = children.size() - 1; k >= 0; k--) {
+                    blocks.push(children.get(k));
+                    definitions.push(new ArrayList<>());
+                }
+            } else {
+                blocks.pop();
+                for (Slot s : definitions.pop())
+                    stacks.get(s).pop();
+            }
+        }
+    }
+
+    /*
+     * Renames the uses and definitions of the promoted slots in the block and the phi arguments
+     * of its successors, recording in defined the slots whose values it pushed.
+     */
+    private void renameBlock(BasicBlock b, List<Slot> defined) {
+        for (Iterator<Instr> it = b.instrs.iterator(); it.hasNext(); ) {
+            Instr i = it.next();
+            Slot s = phis.get(i);
+            if (s != null) {
+                stacks.get(s).push(i.dst);
+                defined.add(s);
+                continue;
+            }
+            for (int k = 0; k < i.args.length; k++) {
+                Value v = loaded.get(i.args[k]);
+                if (v != null)
+                    i.args[k] = v;
+            }
+            if (i.op == Opcode.FRAME && promoted.containsKey(i.slot)) {
+                it.remove();
+            } else if (i.op == Opcode.LOAD && promoted.containsKey(address.get(i.args[0]))) {
+                loaded.put(i.dst, current(address.get(i.args[0])));
+                it.remove();
+            } else if (i.op == Opcode.STORE && promoted.containsKey(address.get(i.args[0]))) {
+                s = address.get(i.args[0]);
+                stacks.get(s).push(i.args[1]);
+                defined.add(s);
+                it.remove();
+            }
+        }
+        for (BasicBlock succ : b.succs) {
+            for (Instr phi : succ.instrs) {
+                Slot s = phis.get(phi);
+                if (phi.op != Opcode.PHI)
+                    break;
+                for (int k = 0; k < phi.args.length; k++) {
+                    if (s != null && phi.from[k] == b)
+                        phi.args[k] = current(s);
+                }
+            }
+        }
+    }
+
+    /*
+     * Removes the phis whose arguments are all the same value, or the phi itself, and the phis
+     * whose result is only used by dead phis.
+     */
+    static void simplifyPhis(Function f) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (BasicBlock b : f.blocks) {
+                for (Iterator<Instr> it = b.instrs.iterator(); it.hasNext(); ) {
+                    Instr i = it.next();
+                    if (i.op != Opcode.PHI)
+                        break;
+                    Value same = null;
+                    boolean trivial = true;
+                    for (Value v : i.args) {
+                        if (v == i.dst || v.equals(same))
+                            continue;
+                        if (same != null)
+                            trivial = false;
+                        same = v;
+                    }
+                    if (trivial) {
+                        it.remove();
+                        f.replaceUses(i.dst, same != null ? same : new Const(i.dst.type, 0));
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        Set<Temp> live = new HashSet<>();
+        Deque<Instr> work = new ArrayDeque<>();
+        Map<Temp, Instr> phiOf = new HashMap<>();
+        for (BasicBlock b : f.blocks) {
+            for (Instr i : b.instrs) {
+                if (i.op == Opcode.PHI)
+                    phiOf.put(i.dst, i);
+                else
+                    work.add(i);
+            }
+        }
+        while (!work.isEmpty()) {
+            for (Value v : work.poll().args) {
+                Instr phi = phiOf.get(v);
+                if (phi != null && live.add(phi.dst))
+                    work.add(phi);
+            }
+        }
+        for (BasicBlock b : f.blocks)
+            b.instrs.removeIf(i -> i.op == Opcode.PHI && !live.contains(i.dst));
+    }
+}
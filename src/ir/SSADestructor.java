@@ -0,0 +1,173 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Takes a function out of SSA form before instruction selection. The phis of a block become
+ * parallel copies at the end of each predecessor, a block being inserted on the edges from
+ * predecessors which do not simply jump to it unless the copies are dead on their other edges,
+ * and each parallel copy is sequentialised into moves, a cycle being broken with a fresh
+ * temporary.
+ */
+public class SSADestructor {
+
+    private final Function f;
+    // temporaries live at the start of each block, its phis aside
+    private final Map<BasicBlock, Set<Temp>> liveIn = new HashMap<>();
+
+    public SSADestructor(Function f) {
+        this.f = f;
+    }
+
+    public void destruct() {
+        computeLiveness();
+        for (BasicBlock b : new ArrayList<>(f.blocks)) {
+            List<Instr> phis = new ArrayList<>();
+            for (Instr i : b.instrs) {
+                if (i.op != Opcode.PHI)
+                    break;
+                phis.add(i);
+            }
+            if (phis.isEmpty())
+                continue;
+            for (BasicBlock p : new ArrayList<>(b.preds)) {
+                List<Temp> dsts = new ArrayList<>();
+                List<Value> srcs = new ArrayList<>();
+                for (Instr phi : phis) {
+                    for (int k = 0; k < phi.args.length; k++) {
+                        if (phi.from[k] == p) {
+                            dsts.add(phi.dst);
+                            srcs.add(phi.args[k]);
+                            break;
+                        }
+                    }
+                }
+                BasicBlock at = p;
+                if (p.terminator().op != Opcode.JUMP && !copiesFitIn(p, b, dsts))
+                    at = splitEdge(p, b);
+                at.instrs.addAll(at.instrs.size() - 1, sequentialise(dsts, srcs));
+            }
+            b.instrs.removeAll(phis);
+        }
+        f.computeCFG();
+    }
+
+    /*
+     * Whether the copies into the phis of to can be made at the end of from, before its branch,
+     * rather than on a block of their own: they can when they are dead on the other edges from
+     * from and the branch does not read them. The back edge of a rotated loop then takes no jump.
+     */
+    private boolean copiesFitIn(BasicBlock from, BasicBlock to, List<Temp> dsts) {
+        for (Value v : from.terminator().args) {
+            if (dsts.contains(v))
+                return false;
+        }
+        for (BasicBlock s : from.succs) {
+            if (s == to)
+                continue;
+            for (Temp t : dsts) {
+                if (liveIn.get(s).contains(t))
+                    return false;
+            }
+            for (Instr phi : s.instrs) {
+                if (phi.op != Opcode.PHI)
+                    break;
+                for (int k = 0; k < phi.args.length; k++) {
+                    if (phi.from[k] == from && dsts.contains(phi.args[k]))
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void computeLiveness() {
+        for (BasicBlock b : f.blocks)
+            liveIn.put(b, new HashSet<>());
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int n = f.blocks.size() - 1; n >= 0; n--) {
+                BasicBlock b = f.blocks.get(n);
+                Set<Temp> live = new HashSet<>();
+                for (BasicBlock s : b.succs) {
+                    live.addAll(liveIn.get(s));
+                    for (Instr phi : s.instrs) {
+                        if (phi.op != Opcode.PHI)
+                            break;
+                        for (int k = 0; k < phi.args.length; k++) {
+                            if (phi.from[k] == b && phi.args[k] instanceof Temp)
+                                live.add((Temp) phi.args[k]);
+                        }
+                    }
+                }
+                for (int k = b.instrs.size() - 1; k >= 0; k--) {
+                    Instr i = b.instrs.get(k);
+                    if (i.dst != null)
+                        live.remove(i.dst);
+                    if (i.op == Opcode.PHI)
+                        continue;
+                    for (Value v : i.args) {
+                        if (v instanceof Temp)
+                            live.add((Temp) v);
+                    }
+                }
+                if (!live.equals(liveIn.get(b))) {
+                    liveIn.put(b, live);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /*
+     * Inserts a block on the edge, after from in the layout.
+     */
+    private BasicBlock splitEdge(BasicBlock from, BasicBlock to) {
+        BasicBlock b = f.newBlock();
+        b.add(Instr.jump(to));
+        from.terminator().replaceTarget(to, b);
+        f.blocks.add(f.blocks.indexOf(from) + 1, b);
+        return b;
+    }
+
+    /*
+     * Moves performing the copies dsts[k] = srcs[k] all at once.
+     */
+    private List<Instr> sequentialise(List<Temp> dsts, List<Value> srcs) {
+        List<Instr> moves = new ArrayList<>();
+        for (int k = dsts.size() - 1; k >= 0; k--) {
+            if (dsts.get(k) == srcs.get(k)) {
+                dsts.remove(k);
+                srcs.remove(k);
+            }
+        }
+        while (!dsts.isEmpty()) {
+            boolean progress = false;
+            for (int k = 0; k < dsts.size(); k++) {
+                // a destination still to be read by another copy cannot be written yet
+                if (!srcs.contains(dsts.get(k))) {
+                    moves.add(Instr.mov(dsts.remove(k), srcs.remove(k)));
+                    progress = true;
+                    k--;
+                }
+            }
+            if (!progress) {
+                // only cycles are left: save a destination, so that it can be written
+                Temp d = dsts.get(0);
+                Temp saved = f.newTemp(d.type, d.name);
+                moves.add(Instr.mov(saved, d));
+                for (int k = 0; k < srcs.size(); k++) {
+                    if (srcs.get(k) == d)
+                        srcs.set(k, saved);
+                }
+            }
+        }
+        return moves;
+    }
+}
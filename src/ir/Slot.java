@@ -0,0 +1,22 @@
+package ir;
+
+/**
+ * A stack slot of a function, holding a local variable. Its address is taken by a FRAME
+ * instruction, its offset in the frame is decided by the code generator.
+ */
+public final class Slot {
+
+    public final int id;
+    public final int size;
+    public final String name;
+
+    Slot(int id, int size, String name) {
+        this.id = id;
+        this.size = size;
+        this.name = name;
+    }
+
+    public String toString() {
+        return "$" + id + (name == null ? "" : "." + name);
+    }
+}
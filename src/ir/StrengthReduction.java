@@ -0,0 +1,203 @@
+package ir;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replaces the multiplications, divisions and remainders by a constant with cheaper sequences.
+ *
+ * A multiplication by a power of two becomes a shift, and one by 2^k + 1, 2^k - 1 or these times a
+ * power of two a shift and an add or subtract. A division by a power of two becomes an arithmetic
+ * shift, biased for the negative dividends so that it still truncates towards zero, and one by any
+ * other constant a multiplication by its reciprocal keeping the high word (Granlund and Montgomery,
+ * as described in Hacker's Delight). A remainder is the dividend less the quotient times the
+ * divisor, a mask for the powers of two.
+ *
+ * The results computed by a single instruction are then forwarded to their uses.
+ */
+public class StrengthReduction {
+
+    private final Function f;
+    // instructions computing the value being reduced, inserted before it
+    private final List<Instr> before = new ArrayList<>();
+    private final Set<Instr> copies = new HashSet<>();
+
+    public StrengthReduction(Function f) {
+        this.f = f;
+    }
+
+    /*
+     * Returns whether the function changed.
+     */
+    public boolean run() {
+        boolean changed = false;
+        for (BasicBlock b : f.blocks) {
+            for (int k = 0; k < b.instrs.size(); k++) {
+                Instr i = b.instrs.get(k);
+                if (!i.op.isBinary() || i.op.isComparison())
+                    continue;
+                Value v = reduce(i.op, i.args[0], i.args[1]);
+                if (v == null)
+                    continue;
+                b.instrs.addAll(k, before);
+                k += before.size();
+                before.clear();
+                i.becomeMov(v);
+                copies.add(i);
+                changed = true;
+            }
+        }
+        for (BasicBlock b : f.blocks) {
+            for (Instr i : b.instrs) {
+                if (copies.contains(i))
+                    f.replaceUses(i.dst, i.args[0]);
+            }
+        }
+        for (BasicBlock b : f.blocks)
+            b.instrs.removeAll(copies);
+        return changed;
+    }
+
+    /*
+     * The value of a op b, computed by the instructions left in before, or null when it is as cheap
+     * as it gets.
+     */
+    private Value reduce(Opcode op, Value a, Value b) {
+        if (a instanceof Const && b instanceof Const)
+            return null;
+        if (a instanceof Const && op.isCommutative()) {
+            Value t = a;
+            a = b;
+            b = t;
+        }
+        if (!(b instanceof Const))
+            return null;
+        int c = ((Const) b).value;
+        switch (op) {
+            case ADD: case SUB: case OR: case XOR: case SLL: case SRA: case SRL:
+                return c == 0 ? a : null;
+            case AND:
+                return c == 0 ? b : c == -1 ? a : null;
+            case MUL:
+                return multiply(a, c);
+            case DIV:
+                if (c == 0 || c == Integer.MIN_VALUE)
+                    return null;
+                return divide(a, c);
+            case MOD:
+                if (c == 0 || c == Integer.MIN_VALUE)
+                    return null;
+                if (c == 1 || c == -1)
+                    return new Const(0);
+                if (Integer.bitCount(Math.abs(c)) == 1)
+                    return remainderByPowerOfTwo(a, Integer.numberOfTrailingZeros(Math.abs(c)));
+                Value q = divide(a, c);
+                Value p = multiply(q, c);
+                return emit(Opcode.SUB, a, p != null ? p : emit(Opcode.MUL, q, b));
+            default:
+                return null;
+        }
+    }
+
+    /*
+     * a * c in at most three shifts and adds, or null when there is none.
+     */
+    private Value multiply(Value a, int c) {
+        if (c == 0)
+            return new Const(0);
+        if (c == 1)
+            return a;
+        if (c == -1)
+            return emit(Opcode.SUB, new Const(0), a);
+        if (Integer.bitCount(c) == 1)
+            return shift(Opcode.SLL, a, Integer.numberOfTrailingZeros(c));
+        if (c != Integer.MIN_VALUE && Integer.bitCount(-c) == 1)
+            return emit(Opcode.SUB, new Const(0), shift(Opcode.SLL, a, Integer.numberOfTrailingZeros(-c)));
+        int k = Integer.numberOfTrailingZeros(c);
+        int odd = c >> k;
+        // odd is 2^j + 1 or 2^j - 1
+        if (Integer.bitCount(odd - 1) == 1 && odd - 1 > 1)
+            return shift(Opcode.SLL, emit(Opcode.ADD, shift(Opcode.SLL, a, Integer.numberOfTrailingZeros(odd - 1)), a), k);
+        if (Integer.bitCount(odd + 1) == 1 && odd + 1 > 2)
+            return shift(Opcode.SLL, emit(Opcode.SUB, shift(Opcode.SLL, a, Integer.numberOfTrailingZeros(odd + 1)), a), k);
+        return null;
+    }
+
+    /*
+     * a / c truncated towards zero, c being neither 0 nor the smallest int.
+     */
+    private Value divide(Value a, int c) {
+        if (c == 1)
+            return a;
+        if (c == -1)
+            return emit(Opcode.SUB, new Const(0), a);
+        Value q;
+        int d = Math.abs(c);
+        if (Integer.bitCount(d) == 1) {
+            int k = Integer.numberOfTrailingZeros(d);
+            // adding d - 1 to the negative dividends makes the shift round towards zero
+            Value bias = shift(Opcode.SRL, k == 1 ? a : shift(Opcode.SRA, a, 31), 32 - k);
+            q = shift(Opcode.SRA, emit(Opcode.ADD, a, bias), k);
+        } else {
+            int[] magic = magic(d);
+            Value t = emit(Opcode.MULH, a, new Const(magic[0]));
+            if (magic[0] < 0)
+                t = emit(Opcode.ADD, t, a);
+            t = shift(Opcode.SRA, t, magic[1]);
+            // plus one for the negative quotients
+            q = emit(Opcode.ADD, t, shift(Opcode.SRL, t, 31));
+        }
+        return c < 0 ? emit(Opcode.SUB, new Const(0), q) : q;
+    }
+
+    /*
+     * a % 2^k, which has the sign of a.
+     */
+    private Value remainderByPowerOfTwo(Value a, int k) {
+        Value bias = shift(Opcode.SRL, k == 1 ? a : shift(Opcode.SRA, a, 31), 32 - k);
+        Value masked = emit(Opcode.AND, emit(Opcode.ADD, a, bias), new Const((1 << k) - 1));
+        return emit(Opcode.SUB, masked, bias);
+    }
+
+    /*
+     * The magic multiplier and shift of the division by d, for 2 <= d < 2^31 not a power of two.
+     */
+    private static int[] magic(int d) {
+        long two31 = 1L << 31;
+        long mask = 0xFFFFFFFFL;
+        long anc = two31 - 1 - two31 % d;
+        long q1 = two31 / anc, r1 = two31 - q1 * anc;
+        long q2 = two31 / d, r2 = two31 - q2 * d;
+        int p = 31;
+        long delta;
+        do {
+            p++;
+            q1 = 2 * q1 & mask;
+            r1 = 2 * r1 & mask;
+            if (r1 >= anc) {
+                q1 = q1 + 1 & mask;
+                r1 = r1 - anc & mask;
+            }
+            q2 = 2 * q2 & mask;
+            r2 = 2 * r2 & mask;
+            if (r2 >= d) {
+                q2 = q2 + 1 & mask;
+                r2 = r2 - d & mask;
+            }
+            delta = d - r2;
+        } while (q1 < delta || q1 == delta && r1 == 0);
+        return new int[]{(int) (q2 + 1), p - 32};
+    }
+
+    private Value shift(Opcode op, Value a, int k) {
+        return k == 0 ? a : emit(op, a, new Const(k));
+    }
+
+    private Temp emit(Opcode op, Value a, Value b) {
+        Temp t = f.newTemp(IRType.INT);
+        before.add(Instr.binary(op, t, a, b));
+        return t;
+    }
+}
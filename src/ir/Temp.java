@@ -0,0 +1,22 @@
+package ir;
+
+/**
+ * A virtual register of a function. There is no limit on their number, the register allocator
+ * maps them to machine registers or to the stack.
+ */
+public final class Temp extends Value {
+
+    public final int id;
+    // name of the variable it holds, if any, for the dumps
+    public final String name;
+
+    Temp(IRType type, int id, String name) {
+        super(type);
+        this.id = id;
+        this.name = name;
+    }
+
+    public String toString() {
+        return name == null ? "%" + id : "%" + id + "." + name;
+    }
+}
@@ -0,0 +1,17 @@
+package ir;
+
+/**
+ * An operand of an IR instruction, either a temporary or a constant.
+ */
+public abstract class Value {
+
+    public final IRType type;
+
+    Value(IRType type) {
+        this.type = type;
+    }
+
+    public boolean isConst() {
+        return this instanceof Const;
+    }
+}
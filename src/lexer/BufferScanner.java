@@ -0,0 +1,89 @@
+package lexer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A Scanner over a source file which is memory-mapped and decoded in one go.
+ * The end of the input is signalled by the EOF sentinel, never by an exception.
+ */
+public class BufferScanner extends Scanner {
+
+    private final char[] buffer;
+    private final int end;
+    private int pos;
+
+    public BufferScanner(File source) throws IOException {
+        this(read(source));
+    }
+
+    public BufferScanner(char[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public BufferScanner(char[] buffer, int begin, int end) {
+        this(buffer, begin, end, 1);
+    }
+
+    /*
+     * Scans buffer[begin..end), which starts at the beginning of the given line of the source.
+     */
+    public BufferScanner(char[] buffer, int begin, int end, int line) {
+        this.buffer = buffer;
+        this.pos = begin;
+        this.end = end;
+        this.line = line;
+    }
+
+    public static char[] read(File source) throws IOException {
+        if (!source.isFile())
+            throw new FileNotFoundException(source.toString());
+        try (FileInputStream in = new FileInputStream(source);
+             FileChannel channel = in.getChannel()) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CharBuffer chars = Charset.defaultCharset().decode(bytes);
+            char[] result = new char[chars.remaining()];
+            chars.get(result);
+            return result;
+        }
+    }
+
+    public char[] getBuffer() {
+        return buffer;
+    }
+
+    public int getOffset() {
+        return pos;
+    }
+
+    @Override
+    public int peekChar() {
+        if (pos < end)
+            return buffer[pos];
+        return EOF;
+    }
+
+    @Override
+    public int nextChar() {
+        if (pos >= end)
+            return EOF;
+        char r = buffer[pos++];
+        if (r == '\n' || r == '\r') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+        return r;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,61 @@
+package lexer;
+
+import lexer.Token.TokenClass;
+
+/**
+ * Perfect hash table of the Mini-C keywords.
+ * The hash of a word only depends on its length and on its first and last characters,
+ * so classifying an identifier costs a single probe and at most one comparison.
+ */
+final class Keywords {
+
+    private static final int SIZE = 16;
+
+    private static final char[][] words = new char[SIZE][];
+    private static final TokenClass[] classes = new TokenClass[SIZE];
+
+    static {
+        add("int", TokenClass.INT);
+        add("void", TokenClass.VOID);
+        add("char", TokenClass.CHAR);
+        add("if", TokenClass.IF);
+        add("else", TokenClass.ELSE);
+        add("while", TokenClass.WHILE);
+        add("return", TokenClass.RETURN);
+        add("struct", TokenClass.STRUCT);
+        add("sizeof", TokenClass.SIZEOF);
+    }
+
+    private Keywords() {
+    }
+
+    private static void add(String word, TokenClass tokenClass) {
+        char[] w = word.toCharArray();
+        int h = hash(w, 0, w.length);
+        if (words[h] != null)
+            throw new AssertionError("keyword hash is not perfect for " + word);
+        words[h] = w;
+        classes[h] = tokenClass;
+    }
+
+    private static int hash(char[] buf, int off, int len) {
+        return (buf[off] + 6 * buf[off + len - 1] + len) & (SIZE - 1);
+    }
+
+    /*
+     * Returns the keyword class of buf[off..off+len), or null if it is not a keyword.
+     */
+    static TokenClass lookup(char[] buf, int off, int len) {
+        if (len < 2 || len > 6)
+            return null;
+        int h = hash(buf, off, len);
+        char[] w = words[h];
+        if (w == null || w.length != len)
+            return null;
+        for (int i = 0; i < len; i++) {
+            if (w[i] != buf[off + i])
+                return null;
+        }
+        return classes[h];
+    }
+}
@@ -0,0 +1,64 @@
+package lexer;
+
+/**
+ * Per-compilation table of identifier spellings.
+ * Every occurrence of an identifier is mapped to one canonical String instance
+ * (the JVM-interned one), so later phases can compare names by reference.
+ * Lookups hash the characters in place, no intermediate String is built for names already seen.
+ */
+public class NameTable {
+
+    private String[] table = new String[256];
+    private int count = 0;
+
+    public String intern(char[] buf, int off, int len) {
+        int h = 0;
+        for (int i = 0; i < len; i++)
+            h = 31 * h + buf[off + i];
+
+        int mask = table.length - 1;
+        int i = h & mask;
+        String s;
+        while ((s = table[i]) != null) {
+            if (s.length() == len && matches(s, buf, off))
+                return s;
+            i = (i + 1) & mask;
+        }
+
+        s = new String(buf, off, len).intern();
+        table[i] = s;
+        if (++count * 2 > table.length)
+            grow();
+        return s;
+    }
+
+    public String intern(String s) {
+        return intern(s.toCharArray(), 0, s.length());
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private static boolean matches(String s, char[] buf, int off) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) != buf[off + i])
+                return false;
+        }
+        return true;
+    }
+
+    private void grow() {
+        String[] old = table;
+        table = new String[old.length * 2];
+        int mask = table.length - 1;
+        for (String s : old) {
+            if (s == null)
+                continue;
+            int i = s.hashCode() & mask;
+            while (table[i] != null)
+                i = (i + 1) & mask;
+            table[i] = s;
+        }
+    }
+}
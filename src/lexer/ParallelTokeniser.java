@@ -0,0 +1,192 @@
+package lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Tokenises a whole source buffer by splitting it into chunks which are lexed in parallel.
+ *
+ * Chunks only start right after a newline which the tokeniser skips as whitespace,
+ * i.e. outside comments, string and character literals.  Those boundaries are found by a pre-scan which
+ * follows the tokeniser's own rules for the constructs that may swallow a newline.
+ * Each chunk is lexed by its own Tokeniser, starting at the right line, and the resulting
+ * streams are stitched back in order, so the tokens, positions and error messages are the
+ * same as a sequential run over the whole buffer.
+ */
+public class ParallelTokeniser {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+    private final char[] source;
+    private final NameTable names;
+    private final int chunkSize;
+
+    private int error = 0;
+
+    public ParallelTokeniser(char[] source, NameTable names) {
+        this(source, names, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelTokeniser(char[] source, NameTable names, int chunkSize) {
+        this.source = source;
+        this.names = names;
+        this.chunkSize = chunkSize;
+    }
+
+    public int getErrorCount() {
+        return error;
+    }
+
+    public TokenStream tokenise() {
+        List<int[]> chunks = split(source, chunkSize);
+        List<ChunkTask> tasks = new ArrayList<>();
+        for (int[] chunk : chunks)
+            tasks.add(new ChunkTask(chunk[0], chunk[1], chunk[2]));
+        if (tasks.size() == 1)
+            tasks.get(0).invoke();
+        else
+            ForkJoinPool.commonPool().invoke(new RecursiveTask<Void>() {
+                @Override
+                protected Void compute() {
+                    invokeAll(tasks);
+                    return null;
+                }
+            });
+
+        TokenStream result = new TokenStream(names);
+        for (int i = 0; i < tasks.size(); i++) {
+            ChunkTask task = tasks.get(i);
+            result.append(task.getRawResult(), i == tasks.size() - 1);
+            error += task.error;
+        }
+        return result;
+    }
+
+    private class ChunkTask extends RecursiveTask<TokenStream> {
+        private static final long serialVersionUID = 1L;
+
+        private final int begin;
+        private final int end;
+        private final int line;
+        private int error;
+
+        ChunkTask(int begin, int end, int line) {
+            this.begin = begin;
+            this.end = end;
+            this.line = line;
+        }
+
+        @Override
+        protected TokenStream compute() {
+            Tokeniser tokeniser = new Tokeniser(new BufferScanner(source, begin, end, line));
+            TokenStream stream = new TokenStream(tokeniser);
+            tokeniser.deferErrorsTo(stream);
+            stream.size();
+            error = tokeniser.getErrorCount();
+            return stream;
+        }
+    }
+
+    /*
+     * Returns the chunks as {begin, end, line} triples covering the whole buffer.
+     * A new chunk is started at the first safe boundary after every chunkSize characters.
+     */
+    static List<int[]> split(char[] buf, int chunkSize) {
+        List<int[]> chunks = new ArrayList<>();
+        int n = buf.length;
+        int begin = 0;
+        int beginLine = 1;
+        int line = 1;
+        int pos = 0;
+        while (pos < n) {
+            int start = pos;
+            pos = skipToken(buf, pos, n);
+            for (int i = start; i < pos; i++) {
+                if (buf[i] == '\n' || buf[i] == '\r')
+                    line++;
+            }
+            // only a newline skipped as plain whitespace is a safe place to cut: nothing peeks past it
+            if (pos - begin >= chunkSize && pos < n && pos == start + 1 && buf[start] == '\n') {
+                chunks.add(new int[]{begin, pos, beginLine});
+                begin = pos;
+                beginLine = line;
+            }
+        }
+        chunks.add(new int[]{begin, n, beginLine});
+        return chunks;
+    }
+
+    /*
+     * Returns the position after the token (or skipped whitespace and comment) starting at pos.
+     * Only the constructs that may contain a newline are followed precisely,
+     * every other character is stepped over on its own, which is safe since it never hides a newline.
+     */
+    private static int skipToken(char[] buf, int pos, int n) {
+        char c = buf[pos++];
+        switch (c) {
+            case '/':
+                if (pos < n && buf[pos] == '/') {
+                    while (pos < n && buf[pos++] != '\n') {
+                    }
+                } else if (pos < n && buf[pos] == '*') {
+                    pos++;
+                    while (pos < n) {
+                        if (buf[pos++] == '*' && pos < n && buf[pos] == '/')
+                            return pos + 1;
+                    }
+                }
+                return pos;
+            case '#':
+                while (pos < n && !Character.isWhitespace(buf[pos]))
+                    pos++;
+                return pos;
+            case '"':
+                while (pos < n) {
+                    c = buf[pos];
+                    if (c == '\\') {
+                        pos++;
+                        if (pos == n || !isEscape(buf[pos]))
+                            return pos;
+                        pos++;
+                    } else {
+                        pos++;
+                        if (c == '"' || c == '\n')
+                            return pos;
+                    }
+                }
+                return pos;
+            case '\'':
+                if (pos == n)
+                    return pos;
+                c = buf[pos++];
+                if (c == '\'')
+                    return pos;
+                if (c == '\\') {
+                    if (pos == n || !isEscape(buf[pos++]))
+                        return pos;
+                }
+                return pos < n ? pos + 1 : pos;
+            default:
+                return pos;
+        }
+    }
+
+    private static boolean isEscape(char c) {
+        switch (c) {
+            case '0':
+            case 't':
+            case 'b':
+            case 'n':
+            case 'r':
+            case 'f':
+            case '\'':
+            case '"':
+            case '\\':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -7,16 +7,27 @@ import java.io.*;
  */
 public class Scanner {
 
+    /*
+     * Sentinel returned by peekChar() and nextChar() once the input is exhausted.
+     */
+    public static final int EOF = -1;
+
     private BufferedReader input;
     private int peeked = -1;
 
-    private int line = 1;
-    private int column = 1;
+    protected int line = 1;
+    protected int column = 1;
 
     public Scanner(File source) throws FileNotFoundException {
         input = new BufferedReader(new FileReader(source));
     }
 
+    /*
+     * Used by subclasses which provide their own input.
+     */
+    protected Scanner() {
+    }
+
 
     public int getColumn() {
         return column;
@@ -27,28 +38,41 @@ public class Scanner {
     }
 
     public char peek() throws IOException {
-        if (peeked != -1)
-            return (char) peeked;
-
-        int r = input.read();
-        if (r == -1)
+        int r = peekChar();
+        if (r == EOF)
             throw new EOFException();
-
-        peeked = r;
         return (char) r;
     }
 
 
     public char next() throws IOException {
-        char r;
+        int r = nextChar();
+        if (r == EOF)
+            throw new EOFException();
+        return (char) r;
+    }
+
+    /*
+     * Returns the next character without consuming it, or EOF at the end of the input.
+     */
+    public int peekChar() throws IOException {
+        if (peeked == -1)
+            peeked = input.read();
+        return peeked;
+    }
+
+    /*
+     * Consumes and returns the next character, or EOF at the end of the input.
+     */
+    public int nextChar() throws IOException {
+        int r;
         if (peeked != -1) {
-            r = (char) peeked;
+            r = peeked;
             peeked = -1;
         } else {
-            int i = input.read();
-            if (i == -1)
-                throw new EOFException();
-            r = (char) i;
+            r = input.read();
+            if (r == -1)
+                return EOF;
         }
 
         if (r == '\n' || r == '\r') {
@@ -0,0 +1,198 @@
+package lexer;
+
+import lexer.Token.TokenClass;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact stream of tokens stored as parallel primitive arrays:
+ * the token class ordinal, the line and column packed into one long,
+ * and the offset and length of the token text in a shared character pool.
+ * No Token or Position object is created per lexeme.
+ *
+ * Tokens are pulled from the tokeniser on demand, so lexing errors are still reported
+ * in the order the parser reaches them, and any token already read is accessed in O(1).
+ */
+public class TokenStream {
+
+    private static final TokenClass[] classes = TokenClass.values();
+
+    private final Tokeniser tokeniser;
+    private final NameTable names;
+
+    private byte[] kinds = new byte[1024];
+    private long[] positions = new long[1024];
+    private int[] offsets = new int[1024];
+    private int[] lengths = new int[1024];
+    private int size = 0;
+
+    private char[] text = new char[4096];
+    private int textLength = 0;
+
+    private boolean complete = false;
+
+    // lexing error messages recorded ahead of time, with the index of the token they belong to
+    private List<String> messages;
+    private List<Integer> messageTokens;
+    private int replayed = 0;
+
+    public TokenStream(Tokeniser tokeniser) {
+        this.tokeniser = tokeniser;
+        this.names = tokeniser.getNameTable();
+    }
+
+    /*
+     * Creates an empty stream which is filled with append(), e.g. when stitching partial streams.
+     */
+    TokenStream(NameTable names) {
+        this.tokeniser = null;
+        this.names = names;
+    }
+
+    public TokenClass tokenClass(int i) {
+        i = index(i);
+        return classes[kinds[i]];
+    }
+
+    public String data(int i) {
+        i = index(i);
+        if (classes[kinds[i]] == TokenClass.IDENTIFIER)
+            return names.intern(text, offsets[i], lengths[i]);
+        return new String(text, offsets[i], lengths[i]);
+    }
+
+    public int line(int i) {
+        i = index(i);
+        return (int) (positions[i] >>> 32);
+    }
+
+    public int column(int i) {
+        i = index(i);
+        return (int) positions[i];
+    }
+
+    public String position(int i) {
+        return line(i) + ":" + column(i);
+    }
+
+    public Token token(int i) {
+        TokenClass tokenClass = tokenClass(i);
+        if (Tokeniser.hasData(tokenClass))
+            return new Token(tokenClass, data(i), line(i), column(i));
+        return new Token(tokenClass, line(i), column(i));
+    }
+
+    public String toString(int i) {
+        i = index(i);
+        if (lengths[i] == 0)
+            return classes[kinds[i]].toString();
+        return classes[kinds[i]] + "(" + data(i) + ")";
+    }
+
+    /*
+     * Reads the remaining tokens and returns the total number of tokens, including the final EOF.
+     */
+    public int size() {
+        while (!complete)
+            pull();
+        return size;
+    }
+
+    /*
+     * Makes sure token i has been read. Past the end of the input the EOF token is repeated.
+     * Deferred error messages are printed when their token is first reached,
+     * just as the tokeniser would have printed them while producing it.
+     */
+    private int index(int i) {
+        while (i >= size && !complete)
+            pull();
+        if (i >= size)
+            i = size - 1;
+        if (messages != null) {
+            while (replayed < messages.size() && messageTokens.get(replayed) <= i) {
+                System.out.println(messages.get(replayed));
+                replayed++;
+            }
+        }
+        return i;
+    }
+
+    /*
+     * Records an error message for the token currently being appended.
+     */
+    void defer(String message) {
+        if (messages == null) {
+            messages = new ArrayList<>();
+            messageTokens = new ArrayList<>();
+        }
+        messages.add(message);
+        messageTokens.add(size);
+    }
+
+    /*
+     * Appends all tokens of a completely read stream, except its EOF token unless keepEof is set.
+     */
+    void append(TokenStream other, boolean keepEof) {
+        int first = size;
+        int n = keepEof ? other.size : other.size - 1;
+        for (int i = 0; i < n; i++) {
+            long p = other.positions[i];
+            append(classes[other.kinds[i]], (int) (p >>> 32), (int) p, other.text, other.offsets[i], other.lengths[i]);
+        }
+        if (other.messages != null) {
+            for (int i = 0; i < other.messages.size(); i++) {
+                if (messages == null) {
+                    messages = new ArrayList<>();
+                    messageTokens = new ArrayList<>();
+                }
+                messages.add(other.messages.get(i));
+                messageTokens.add(first + other.messageTokens.get(i));
+            }
+        }
+    }
+
+    private void pull() {
+        TokenClass tokenClass = tokeniser.scan();
+        if (Tokeniser.hasData(tokenClass))
+            append(tokenClass, tokeniser.line, tokeniser.column, tokeniser.text, 0, tokeniser.textLength);
+        else
+            append(tokenClass, tokeniser.line, tokeniser.column, null, 0, 0);
+    }
+
+    void append(TokenClass tokenClass, int line, int column, char[] buf, int off, int len) {
+        if (size == kinds.length)
+            growTokens();
+        if (textLength + len > text.length) {
+            char[] bigger = new char[Math.max(text.length * 2, textLength + len)];
+            System.arraycopy(text, 0, bigger, 0, textLength);
+            text = bigger;
+        }
+        if (len > 0)
+            System.arraycopy(buf, off, text, textLength, len);
+        kinds[size] = (byte) tokenClass.ordinal();
+        positions[size] = ((long) line << 32) | (column & 0xFFFFFFFFL);
+        offsets[size] = textLength;
+        lengths[size] = len;
+        textLength += len;
+        size++;
+        if (tokenClass == TokenClass.EOF)
+            complete = true;
+    }
+
+    private void growTokens() {
+        int n = kinds.length * 2;
+        byte[] k = new byte[n];
+        long[] p = new long[n];
+        int[] o = new int[n];
+        int[] l = new int[n];
+        System.arraycopy(kinds, 0, k, 0, size);
+        System.arraycopy(positions, 0, p, 0, size);
+        System.arraycopy(offsets, 0, o, 0, size);
+        System.arraycopy(lengths, 0, l, 0, size);
+        kinds = k;
+        positions = p;
+        offsets = o;
+        lengths = l;
+    }
+}
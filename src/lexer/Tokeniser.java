@@ -2,7 +2,6 @@ package lexer;
 
 import lexer.Token.TokenClass;
 
-import java.io.EOFException;
 import java.io.IOException;
 
 /**
@@ -12,513 +11,414 @@ public class Tokeniser {
 
     private Scanner scanner;
 
+    private final NameTable names;
+
+    // position of the token last recognised by scan()
+    int line;
+    int column;
+
+    // scratch buffer holding the characters of the current identifier or literal
+    char[] text = new char[64];
+    int textLength = 0;
+
     private int error = 0;
 
+    // when set, error messages are recorded in this stream instead of being printed
+    private TokenStream deferred;
+
     public int getErrorCount() {
         return this.error;
     }
 
     public Tokeniser(Scanner scanner) {
+        this(scanner, new NameTable());
+    }
+
+    public Tokeniser(Scanner scanner, NameTable names) {
         this.scanner = scanner;
+        this.names = names;
+    }
+
+    public NameTable getNameTable() {
+        return names;
+    }
+
+    void deferErrorsTo(TokenStream stream) {
+        deferred = stream;
     }
 
     private void error(char c, int line, int col) {
-        System.out.println("Lexing error: unrecognised character (" + c + ") at " + line + ":" + col);
+        String message = "Lexing error: unrecognised character (" + c + ") at " + line + ":" + col;
+        if (deferred != null)
+            deferred.defer(message);
+        else
+            System.out.println(message);
         error++;
     }
 
 
     public Token nextToken() {
-        Token result;
+        TokenClass tokenClass = scan();
+        if (hasData(tokenClass))
+            return new Token(tokenClass, data(tokenClass), line, column);
+        return new Token(tokenClass, line, column);
+    }
+
+    /*
+     * Recognises the next token and returns its class.
+     * Its position is left in line and column, and the characters of identifiers and literals in text.
+     */
+    TokenClass scan() {
         try {
-            result = next();
-        } catch (EOFException eof) {
-            // end of file, nothing to worry about, just return EOF token
-            return new Token(TokenClass.EOF, scanner.getLine(), scanner.getColumn());
+            return next();
         } catch (IOException ioe) {
             ioe.printStackTrace();
             // something went horribly wrong, abort
             System.exit(-1);
             return null;
         }
-        return result;
     }
 
-    private Token next() throws IOException {
-
-        int line = scanner.getLine();
-        int column = scanner.getColumn();
-
-        // get the next character
-        char c = scanner.next();
-        // skip white spaces
-        if (Character.isWhitespace(c))
-            return next();
+    static boolean hasData(TokenClass tokenClass) {
+        switch (tokenClass) {
+            case IDENTIFIER:
+            case STRING_LITERAL:
+            case INT_LITERAL:
+            case CHAR_LITERAL:
+                return true;
+            default:
+                return false;
+        }
+    }
 
-        // recognises operators
-        if (c == '+')
-            return new Token(TokenClass.PLUS, line, column);
+    private String data(TokenClass tokenClass) {
+        if (tokenClass == TokenClass.IDENTIFIER)
+            return names.intern(text, 0, textLength);
+        return text();
+    }
 
-        if (c == '-')
-            return new Token(TokenClass.MINUS, line, column);
+    private void append(char c) {
+        if (textLength == text.length) {
+            char[] bigger = new char[text.length * 2];
+            System.arraycopy(text, 0, bigger, 0, textLength);
+            text = bigger;
+        }
+        text[textLength++] = c;
+    }
 
-        if (c == '*')
-            return new Token(TokenClass.ASTERIX, line, column);
+    private String text() {
+        return new String(text, 0, textLength);
+    }
 
-        if (c == '/') {
-            try {
-                c = scanner.peek();
-            } catch (EOFException eof) {
-                return new Token(TokenClass.DIV, line, column);
-            }
-            if (c != '/' && c != '*')
-                return new Token(TokenClass.DIV, line, column);
-            else if (c == '/') {
-                c = scanner.next();
-                while (c != '\n') {
-                    c = scanner.next();
-                }
-                return next();
-            } else {
-                scanner.next();
+    private TokenClass next() throws IOException {
+
+        int r;
+        char c;
+
+        // skip white spaces and comments
+        while (true) {
+            line = scanner.getLine();
+            column = scanner.getColumn();
+
+            // get the next character
+            r = scanner.nextChar();
+            if (r == Scanner.EOF)
+                // end of file, nothing to worry about, just return EOF token
+                return TokenClass.EOF;
+            c = (char) r;
+
+            if (Character.isWhitespace(c))
+                continue;
+
+            if (c != '/')
+                break;
+
+            r = scanner.peekChar();
+            if (r == '/') {
+                do {
+                    r = scanner.nextChar();
+                } while (r != '\n' && r != Scanner.EOF);
+            } else if (r == '*') {
+                c = '*';
+                scanner.nextChar();
                 while (true) {
-                    try {
-                        c = scanner.next();
-                    } catch (EOFException eof) {
-                        error(c, line, column);
-                        return new Token(TokenClass.INVALID, line, column);
+                    r = scanner.nextChar();
+                    while (r != '*' && r != Scanner.EOF) {
+                        c = (char) r;
+                        r = scanner.nextChar();
                     }
-                    while (c != '*') {
-                        try {
-                            c = scanner.next();
-                        } catch (EOFException eof) {
-                            error(c, line, column);
-                            return new Token(TokenClass.INVALID, line, column);
-                        }
+                    if (r == Scanner.EOF) {
+                        error(c, line, column);
+                        return TokenClass.INVALID;
                     }
-                    try {
-                        c = scanner.peek();
-                    } catch (EOFException eof) {
+                    c = '*';
+                    r = scanner.peekChar();
+                    if (r == Scanner.EOF) {
                         error(c, line, column);
-                        return new Token(TokenClass.INVALID, line, column);
+                        return TokenClass.INVALID;
                     }
+                    c = (char) r;
                     if (c == '/') {
-                        scanner.next();
+                        scanner.nextChar();
                         break;
                     }
                 }
-                return next();
+            } else {
+                return TokenClass.DIV;
             }
         }
 
-        if (c == '%')
-            return new Token(TokenClass.REM, line, column);
-
-        if (c == '.')
-            return new Token(TokenClass.DOT, line, column);
-
-        if (Character.isLetter(c) || c == '_') {
-            StringBuilder input = new StringBuilder();
-            input.append(c);
-            try {
-                c = scanner.peek();
-            } catch (EOFException eof) {
-                return new Token(TokenClass.IDENTIFIER, String.valueOf(c), line, column);
-            }
-            while (!Character.isWhitespace(c)) {
-                if (Character.isLetterOrDigit(c) || c == '_') {
-                    input.append(c);
-                } else {
-                    break;
+        switch (c) {
+            // operators
+            case '+':
+                return TokenClass.PLUS;
+            case '-':
+                return TokenClass.MINUS;
+            case '*':
+                return TokenClass.ASTERIX;
+            case '%':
+                return TokenClass.REM;
+            case '.':
+                return TokenClass.DOT;
+
+            // delimiters
+            case '{':
+                return TokenClass.LBRA;
+            case '}':
+                return TokenClass.RBRA;
+            case '(':
+                return TokenClass.LPAR;
+            case ')':
+                return TokenClass.RPAR;
+            case '[':
+                return TokenClass.LSBR;
+            case ']':
+                return TokenClass.RSBR;
+            case ';':
+                return TokenClass.SC;
+            case ',':
+                return TokenClass.COMMA;
+
+            // assignment and comparisons
+            case '=':
+                if (scanner.peekChar() == '=') {
+                    scanner.nextChar();
+                    return TokenClass.EQ;
                 }
-                scanner.next();
-                try {
-                    c = scanner.peek();
-                } catch (EOFException eof) {
-                    break;
+                return TokenClass.ASSIGN;
+            case '<':
+                if (scanner.peekChar() == '=') {
+                    scanner.nextChar();
+                    return TokenClass.LE;
                 }
-            }
-
-            String result = input.toString();
-
-            switch (result) {
-                case "int":
-                    return new Token(TokenClass.INT, line, column);
-                case "void":
-                    return new Token(TokenClass.VOID, line, column);
-                case "char":
-                    return new Token(TokenClass.CHAR, line, column);
-                case "if":
-                    return new Token(TokenClass.IF, line, column);
-                case "else":
-                    return new Token(TokenClass.ELSE, line, column);
-                case "while":
-                    return new Token(TokenClass.WHILE, line, column);
-                case "return":
-                    return new Token(TokenClass.RETURN, line, column);
-                case "struct":
-                    return new Token(TokenClass.STRUCT, line, column);
-                case "sizeof":
-                    return new Token(TokenClass.SIZEOF, line, column);
-            }
-            return new Token(TokenClass.IDENTIFIER, result, line, column);
-        }
-
-        if (c == '#') {
-            StringBuilder input = new StringBuilder();
-            input.append(c);
-            try {
-                c = scanner.peek();
-            } catch (EOFException eof) {
-                error(c, line, column);
-                return new Token(TokenClass.INVALID, line, column);
-            }
-            while (!Character.isWhitespace(c)) {
-                try {
-                    c = scanner.next();
-                    input.append(c);
-                    c = scanner.peek();
-                } catch (EOFException eof) {
-                    break;
+                return TokenClass.LT;
+            case '>':
+                if (scanner.peekChar() == '=') {
+                    scanner.nextChar();
+                    return TokenClass.GE;
                 }
-            }
-            if (input.toString().equals("#include")) {
-                return new Token(TokenClass.INCLUDE, line, column);
-            } else {
-                error(c, line, column);
-                return new Token(TokenClass.INVALID, line, column);
-            }
+                return TokenClass.GT;
+            case '!':
+                return pair(c, '=', TokenClass.NE);
+
+            // logical operators
+            case '&':
+                return pair(c, '&', TokenClass.AND);
+            case '|':
+                return pair(c, '|', TokenClass.OR);
+
+            // include
+            case '#':
+                return include();
+
+            // literals
+            case '"':
+                return stringLiteral();
+            case '\'':
+                return charLiteral();
         }
 
-        if (c == '=') {
-            try {
-                c = scanner.peek();
-            } catch (EOFException eof) {
-                return new Token(TokenClass.ASSIGN, line, column);
+        if (Character.isLetter(c) || c == '_') {
+            textLength = 0;
+            append(c);
+            r = scanner.peekChar();
+            while (r != Scanner.EOF && (Character.isLetterOrDigit((char) r) || r == '_')) {
+                append((char) r);
+                scanner.nextChar();
+                r = scanner.peekChar();
             }
-            if (c == '=') {
-                scanner.next();
-                return new Token(TokenClass.EQ, line, column);
-            } else
-                return new Token(TokenClass.ASSIGN, line, column);
-        }
 
-//        // delimiters
-//        LBRA,  // '{' // left brace
-//        RBRA,  // '}' // right brace
-//        LPAR,  // '(' // left parenthesis
-//        RPAR,  // ')' // right parenthesis
-//        LSBR,  // '[' // left square brace
-//        RSBR,  // ']' // left square brace
-//        SC,    // ';' // semicolon
-//        COMMA, // ','
-
-        if (c == '{') {
-            return new Token(TokenClass.LBRA, line, column);
-        }
-        if (c == '}') {
-            return new Token(TokenClass.RBRA, line, column);
-        }
-        if (c == '(') {
-            return new Token(TokenClass.LPAR, line, column);
-        }
-        if (c == ')') {
-            return new Token(TokenClass.RPAR, line, column);
+            TokenClass keyword = Keywords.lookup(text, 0, textLength);
+            if (keyword != null)
+                return keyword;
+            return TokenClass.IDENTIFIER;
         }
-        if (c == '[') {
-            return new Token(TokenClass.LSBR, line, column);
-        }
-        if (c == ']') {
-            return new Token(TokenClass.RSBR, line, column);
-        }
-        if (c == ';') {
-            return new Token(TokenClass.SC, line, column);
-        }
-        if (c == ',') {
-            return new Token(TokenClass.COMMA, line, column);
-        }
-
-//        // logical operators
-//        AND, // "&&"
-//        OR,  // "||"
 
-        if (c == '&') {
-            try {
-                c = scanner.peek();
-            } catch (EOFException eof) {
-                error(c, line, column);
-                return new Token(TokenClass.INVALID, line, column);
-            }
-            if (c == '&') {
-                scanner.next();
-                return new Token(TokenClass.AND, line, column);
-            } else {
-                error(c, line, column);
-                return new Token(TokenClass.INVALID, line, column);
+        if (Character.isDigit(c)) {
+            textLength = 0;
+            append(c);
+            r = scanner.peekChar();
+            while (r != Scanner.EOF && Character.isDigit((char) r)) {
+                scanner.nextChar();
+                append((char) r);
+                r = scanner.peekChar();
             }
+            return TokenClass.INT_LITERAL;
         }
 
-        if (c == '|') {
-            try {
-                c = scanner.peek();
-            } catch (EOFException eof) {
-                error(c, line, column);
-                return new Token(TokenClass.INVALID, line, column);
-            }
-            if (c == '|') {
-                scanner.next();
-                return new Token(TokenClass.OR, line, column);
-            } else {
-                error(c, line, column);
-                return new Token(TokenClass.INVALID, line, column);
-            }
-        }
+        // if we reach this point, it means we did not recognise a valid token
+        error(c, line, column);
+        return TokenClass.INVALID;
+    }
 
-//        // comparisons
-//                EQ, // "=="
-//                NE, // "!="
-//                LT, // '<'
-//                GT, // '>'
-//                LE, // "<="
-//                GE, // ">="
-        if (c == '!') {
-            try {
-                c = scanner.peek();
-            } catch (EOFException eof) {
-                error(c, line, column);
-                return new Token(TokenClass.INVALID, line, column);
-            }
-            if (c == '=') {
-                scanner.next();
-                return new Token(TokenClass.NE, line, column);
-            } else {
-                error(c, line, column);
-                return new Token(TokenClass.INVALID, line, column);
-            }
+    /*
+     * Recognises the two character operator made of first followed by second.
+     */
+    private TokenClass pair(char first, char second, TokenClass tokenClass) throws IOException {
+        int r = scanner.peekChar();
+        if (r == second) {
+            scanner.nextChar();
+            return tokenClass;
         }
+        error(r == Scanner.EOF ? first : (char) r, line, column);
+        return TokenClass.INVALID;
+    }
 
-        if (c == '<') {
-            try {
-                c = scanner.peek();
-            } catch (EOFException eof) {
-                return new Token(TokenClass.LT, line, column);
-            }
-            if (c == '=') {
-                scanner.next();
-                return new Token(TokenClass.LE, line, column);
-            } else
-                return new Token(TokenClass.LT, line, column);
+    private TokenClass include() throws IOException {
+        textLength = 0;
+        append('#');
+        char c = '#';
+        int r = scanner.peekChar();
+        if (r == Scanner.EOF) {
+            error(c, line, column);
+            return TokenClass.INVALID;
         }
-
-        if (c == '>') {
-            try {
-                c = scanner.peek();
-            } catch (EOFException eof) {
-                return new Token(TokenClass.GT, line, column);
-            }
-            if (c == '=') {
-                scanner.next();
-                return new Token(TokenClass.GE, line, column);
-            } else
-                return new Token(TokenClass.GT, line, column);
+        c = (char) r;
+        while (!Character.isWhitespace(c)) {
+            c = (char) scanner.nextChar();
+            append(c);
+            r = scanner.peekChar();
+            if (r == Scanner.EOF)
+                break;
+            c = (char) r;
         }
+        if (textLength == 8 && text().equals("#include"))
+            return TokenClass.INCLUDE;
+        error(c, line, column);
+        return TokenClass.INVALID;
+    }
 
-        // literals
-        // STRING_LITERAL, // \".*\"  any sequence of characters enclosed within two double quote " (please be aware of the escape character backslash \)
-        // INT_LITERAL,    // ('0'|...|'9')+
-        // CHAR_LITERAL,   // \'('a'|...|'z'|'A'|...|'Z'|'\t'|'\b'|'\n'|'\r'|'\f'|'\''|'\"'|'\\'|'.'|','|'_'|...)\'  a character starts and end with a single quote '
-        if (c == '"') {
-            try {
-                StringBuilder input = new StringBuilder();
-                while (true) {
-                    c = scanner.peek();
-                    if (c != '"' && c != '\\' && c != '\n') {
-                        input.append(c);
-                        scanner.next();
-                    } else if (c == '\\') {
-                        scanner.next();
-                        char escape = scanner.peek();
-                        switch (escape) {
-                            case '0': {
-                                escape = '\0';
-                                break;
-                            }
-                            case 't': {
-                                escape = '\t';
-                                break;
-                            }
-                            case 'b': {
-                                escape = '\b';
-                                break;
-                            }
-                            case 'n': {
-                                escape = '\n';
-                                break;
-                            }
-                            case 'r': {
-                                escape = '\r';
-                                break;
-                            }
-                            case 'f': {
-                                escape = '\f';
-                                break;
-                            }
-                            case '\'': {
-                                escape = '\'';
-                                break;
-                            }
-                            case '"': {
-                                escape = '"';
-                                break;
-                            }
-                            case '\\': {
-                                escape = '\\';
-                                break;
-                            }
-                            default: {
-                                error(c, line, column);
-                                return new Token(TokenClass.INVALID, line, column);
-                            }
-                        }
-                        input.append(escape);
-                        scanner.next();
-                    } else if (c == '"') {
-                        scanner.next();
-                        return new Token(TokenClass.STRING_LITERAL, input.toString(), line, column);
-                    } else {
-                        scanner.next();
-                        error(c, line, column);
-                        return new Token(TokenClass.INVALID, line, column);
-                    }
+    // STRING_LITERAL, // \".*\"  any sequence of characters enclosed within two double quote " (please be aware of the escape character backslash \)
+    private TokenClass stringLiteral() throws IOException {
+        textLength = 0;
+        char c = '"';
+        while (true) {
+            int r = scanner.peekChar();
+            if (r == Scanner.EOF)
+                break;
+            c = (char) r;
+            if (c != '"' && c != '\\' && c != '\n') {
+                append(c);
+                scanner.nextChar();
+            } else if (c == '\\') {
+                scanner.nextChar();
+                r = scanner.peekChar();
+                if (r == Scanner.EOF)
+                    break;
+                char escape = unescape((char) r);
+                if (escape == 0 && r != '0') {
+                    error(c, line, column);
+                    return TokenClass.INVALID;
                 }
-            } catch (EOFException e) {
+                append(escape);
+                scanner.nextChar();
+            } else if (c == '"') {
+                scanner.nextChar();
+                return TokenClass.STRING_LITERAL;
+            } else {
+                scanner.nextChar();
                 error(c, line, column);
-                return new Token(TokenClass.INVALID, line, column);
+                return TokenClass.INVALID;
             }
         }
+        error(c, line, column);
+        return TokenClass.INVALID;
+    }
 
-        if (Character.isDigit(c)) {
-            StringBuilder input = new StringBuilder();
-            input.append(c);
-            try {
-                c = scanner.peek();
-            } catch (EOFException eof) {
-                return new Token(TokenClass.INT_LITERAL, input.toString(), line, column);
-            }
-            while (Character.isDigit(c)) {
-                try {
-                    scanner.next();
-                    input.append(c);
-                    c = scanner.peek();
-                } catch (EOFException eof) {
-                    break;
-                }
-            }
-            return new Token(TokenClass.INT_LITERAL, input.toString(), line, column);
+    // CHAR_LITERAL,   // \'('a'|...|'z'|'A'|...|'Z'|'\t'|'\b'|'\n'|'\r'|'\f'|'\''|'\"'|'\\'|'.'|','|'_'|...)\'  a character starts and end with a single quote '
+    private TokenClass charLiteral() throws IOException {
+        char c = '\'';
+        int r = scanner.peekChar();
+        if (r == Scanner.EOF) {
+            error(c, line, column);
+            return TokenClass.INVALID;
         }
-
+        c = (char) r;
+        char value;
         if (c == '\'') {
-            try {
-                c = scanner.peek();
-            } catch (EOFException eof) {
+            scanner.nextChar();
+            error(c, line, column);
+            return TokenClass.INVALID;
+        } else if (c != '\\') {
+            value = (char) scanner.nextChar();
+        } else {
+            scanner.nextChar();
+            r = scanner.nextChar();
+            if (r == Scanner.EOF) {
                 error(c, line, column);
-                return new Token(TokenClass.INVALID, line, column);
+                return TokenClass.INVALID;
             }
-            if (c == '\'') {
-                scanner.next();
+            value = unescape((char) r);
+            if (value == 0 && r != '0') {
+                r = scanner.peekChar();
+                if (r != Scanner.EOF)
+                    c = (char) r;
                 error(c, line, column);
-                return new Token(TokenClass.INVALID, line, column);
-            } else if (c != '\\') {
-                char input = scanner.next();
-                try {
-                    c = scanner.peek();
-                } catch (EOFException eof) {
-                    error(c, line, column);
-                    return new Token(TokenClass.INVALID, line, column);
-                }
-                if (c == '\'') {
-                    scanner.next();
-                    return new Token(TokenClass.CHAR_LITERAL, String.valueOf(input), line, column);
-                } else {
-                    try {
-                        c = scanner.next();
-                    } catch (EOFException eof) {
-                        error(c, line, column);
-                        return new Token(TokenClass.INVALID, line, column);
-                    }
-                    error(c, line, column);
-                    return new Token(TokenClass.INVALID, line, column);
-                }
-            } else {
-                scanner.next();
-                char input;
-                try {
-                    input = scanner.next();
-                } catch (EOFException eof) {
-                    error(c, line, column);
-                    return new Token(TokenClass.INVALID, line, column);
-                }
-                try {
-                    c = scanner.peek();
-                } catch (EOFException eof) {
-                    error(c, line, column);
-                    return new Token(TokenClass.INVALID, line, column);
-                }
-                switch (input) {
-                    case '0': {
-                        input = '\0';
-                        break;
-                    }
-                    case 't': {
-                        input = '\t';
-                        break;
-                    }
-                    case 'b': {
-                        input = '\b';
-                        break;
-                    }
-                    case 'n': {
-                        input = '\n';
-                        break;
-                    }
-                    case 'r': {
-                        input = '\r';
-                        break;
-                    }
-                    case 'f': {
-                        input = '\f';
-                        break;
-                    }
-                    case '\'': {
-                        input = '\'';
-                        break;
-                    }
-                    case '"': {
-                        input = '"';
-                        break;
-                    }
-                    case '\\': {
-                        input = '\\';
-                        break;
-                    }
-                    default: {
-                        error(c, line, column);
-                        return new Token(TokenClass.INVALID, line, column);
-                    }
-                }
-                if (c == '\'') {
-                    scanner.next();
-                    return new Token(TokenClass.CHAR_LITERAL, String.valueOf(input), line, column);
-                } else {
-                    scanner.next();
-                    error(c, line, column);
-                    return new Token(TokenClass.INVALID, line, column);
-                }
+                return TokenClass.INVALID;
             }
         }
 
-        // if we reach this point, it means we did not recognise a valid token
+        r = scanner.peekChar();
+        if (r == Scanner.EOF) {
+            error(c, line, column);
+            return TokenClass.INVALID;
+        }
+        c = (char) r;
+        scanner.nextChar();
+        if (c == '\'') {
+            textLength = 0;
+            append(value);
+            return TokenClass.CHAR_LITERAL;
+        }
         error(c, line, column);
-        return new Token(TokenClass.INVALID, line, column);
+        return TokenClass.INVALID;
+    }
+
+    /*
+     * Returns the character denoted by the escape sequence \c, or 0 if the escape is unknown.
+     */
+    private static char unescape(char c) {
+        switch (c) {
+            case '0':
+                return '\0';
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case '\'':
+                return '\'';
+            case '"':
+                return '"';
+            case '\\':
+                return '\\';
+            default:
+                return 0;
+        }
     }
 }
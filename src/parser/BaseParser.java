@@ -0,0 +1,262 @@
+package parser;
+
+import ast.*;
+import lexer.Token.TokenClass;
+import lexer.TokenStream;
+
+import java.util.Arrays;
+
+/**
+ * The token cursor, error reporting and expression machinery shared by Parser and TableParser.
+ *
+ * An operand is read as its prefixes (value at, negation and type casts), a primary expression
+ * and its array and field accesses, which bind tighter than the prefixes: *p.x is *(p.x).
+ * The binary operators between operands are then shaped by precedence climbing.
+ * Subclasses only decide which of these comes next, by looking at the tokens or by prediction.
+ */
+public abstract class BaseParser {
+
+    // index of the current token in the stream
+    protected int token = -1;
+
+    protected final TokenStream tokens;
+
+    protected BaseParser(TokenStream tokens) {
+        this.tokens = tokens;
+    }
+
+    public Program parse() {
+        // get the first token
+        nextToken();
+
+        return parseProgram();
+    }
+
+    public int getErrorCount() {
+        return error;
+    }
+
+    protected abstract Program parseProgram();
+
+    protected abstract Type parseType();
+
+    private int error = 0;
+    private int lastErrorToken = -1;
+
+    protected void error(TokenClass... expected) {
+
+        if (lastErrorToken == token) {
+            // skip this error, same token causing trouble
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        String sep = "";
+        for (TokenClass e : expected) {
+            sb.append(sep);
+            sb.append(e);
+            sep = "|";
+        }
+        System.out.println("Parsing error: expected (" + sb + ") found (" + tokens.toString(token) + ") at " + tokens.position(token));
+
+        error++;
+        lastErrorToken = token;
+    }
+
+    /*
+     * Look ahead the class of the i^th token after the current one.
+     * i should be >= 1
+     */
+    protected TokenClass lookAhead(int i) {
+        return tokens.tokenClass(token + i);
+    }
+
+    protected TokenClass tokenClass() {
+        return tokens.tokenClass(token);
+    }
+
+    protected String data() {
+        return tokens.data(token);
+    }
+
+    /*
+     * Consumes the current token and moves to the next one in the stream.
+     */
+    protected void nextToken() {
+        token++;
+    }
+
+    /*
+     * If the current token is equals to the expected one, then skip it, otherwise report an error.
+     * Returns the index of the expected token or -1 if an error occurred.
+     */
+    protected int expect(TokenClass expected) {
+        if (expected == tokenClass()) {
+            int cur = token;
+            nextToken();
+            return cur;
+        }
+        error(expected);
+        return -1;
+    }
+
+
+    /* Expressions */
+
+    /*
+     * Binding power of the binary operators, indexed by token class ordinal (0 for non operators),
+     * and the operator each of them builds.
+     */
+    static final int[] precedence = new int[TokenClass.values().length];
+    static final Op[] operators = new Op[TokenClass.values().length];
+
+    static {
+        binary(TokenClass.OR, Op.OR, 1);
+        binary(TokenClass.AND, Op.AND, 2);
+        binary(TokenClass.EQ, Op.EQ, 3);
+        binary(TokenClass.NE, Op.NE, 3);
+        binary(TokenClass.LT, Op.LT, 4);
+        binary(TokenClass.GT, Op.GT, 4);
+        binary(TokenClass.LE, Op.LE, 4);
+        binary(TokenClass.GE, Op.GE, 4);
+        binary(TokenClass.PLUS, Op.ADD, 5);
+        binary(TokenClass.MINUS, Op.SUB, 5);
+        binary(TokenClass.ASTERIX, Op.MUL, 6);
+        binary(TokenClass.DIV, Op.DIV, 6);
+        binary(TokenClass.REM, Op.MOD, 6);
+    }
+
+    private static void binary(TokenClass tokenClass, Op op, int prec) {
+        precedence[tokenClass.ordinal()] = prec;
+        operators[tokenClass.ordinal()] = op;
+    }
+
+    /*
+     * Returns true if the current token may be a binary operator continuing the expression.
+     * Whether it binds tightly enough is decided by its precedence.
+     */
+    protected abstract boolean acceptBinary();
+
+    /*
+     * Returns the prefix starting at the current token: ASTERIX, MINUS, INVALID for a type cast,
+     * or null if the operand has no more prefixes.
+     */
+    protected abstract TokenClass acceptPrefix();
+
+    /*
+     * Parses the expression an operand starts with, after its prefixes.
+     */
+    protected abstract Expr parsePrimary();
+
+    /*
+     * Returns the postfix starting at the current token: LSBR for an array access,
+     * DOT for a field access, or null if the operand ends here.
+     */
+    protected abstract TokenClass acceptPostfix();
+
+    protected Expr parseExp() {
+        return parseBinary(1);
+    }
+
+    /*
+     * Precedence climbing: parses an operand followed by all the binary operators
+     * binding at least as tightly as minPrec. All operators are left associative.
+     */
+    private Expr parseBinary(int minPrec) {
+        Expr e = parseUnary();
+        while (acceptBinary()) {
+            int tc = tokenClass().ordinal();
+            int prec = precedence[tc];
+            if (prec < minPrec)
+                return e;
+            nextToken();
+            e = new BinOp(e, operators[tc], parseBinary(prec + 1));
+        }
+        return e;
+    }
+
+    // pending prefix operators of the operands being parsed, INVALID standing for a type cast
+    private TokenClass[] prefixes = new TokenClass[16];
+    private Type[] casts = new Type[16];
+    private int prefixCount = 0;
+
+    private void pushPrefix(TokenClass tc, Type t) {
+        if (prefixCount == prefixes.length) {
+            prefixes = Arrays.copyOf(prefixes, prefixCount * 2);
+            casts = Arrays.copyOf(casts, prefixCount * 2);
+        }
+        prefixes[prefixCount] = tc;
+        casts[prefixCount] = t;
+        prefixCount++;
+    }
+
+    /*
+     * An operand of a binary operator.
+     */
+    private Expr parseUnary() {
+        int base = prefixCount;
+        TokenClass tc;
+        while ((tc = acceptPrefix()) != null) {
+            nextToken();
+            if (tc == TokenClass.INVALID) {
+                pushPrefix(tc, parseType());
+                expect(TokenClass.RPAR);
+            } else {
+                pushPrefix(tc, null);
+            }
+        }
+        Expr e = parsePrimary();
+        while ((tc = acceptPostfix()) != null) {
+            nextToken();
+            if (tc == TokenClass.LSBR) {
+                e = new ArrayAccessExpr(e, parseExp());
+                expect(TokenClass.RSBR);
+            } else {
+                String name = data();
+                expect(TokenClass.IDENTIFIER);
+                e = new FieldAccessExpr(e, name);
+            }
+        }
+        // the prefixes are applied in the order they were read
+        for (int i = base; i < prefixCount; i++) {
+            switch (prefixes[i]) {
+                case ASTERIX:
+                    e = new ValueAtExpr(e);
+                    break;
+                case MINUS:
+                    e = new BinOp(new IntLiteral(0), Op.SUB, e);
+                    break;
+                default:
+                    e = new TypecastExpr(casts[i], e);
+            }
+            casts[i] = null;
+        }
+        prefixCount = base;
+        return e;
+    }
+
+    /*
+     * The parenthesised expression of a primary, whose "(" is the current token.
+     */
+    protected Expr parseParenthesised() {
+        nextToken();
+        Expr e = parseExp();
+        expect(TokenClass.RPAR);
+        return e;
+    }
+
+    protected IntLiteral parseIntLiteral() {
+        int n = expect(TokenClass.INT_LITERAL);
+        if (n == -1)
+            return new IntLiteral(0);
+        return new IntLiteral(Integer.parseInt(tokens.data(n)));
+    }
+
+    protected SizeOfExpr parseSizeof() {
+        expect(TokenClass.SIZEOF);
+        expect(TokenClass.LPAR);
+        Type t = parseType();
+        expect(TokenClass.RPAR);
+        return new SizeOfExpr(t);
+    }
+}
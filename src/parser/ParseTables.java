@@ -0,0 +1,249 @@
+package parser;
+
+/*
+ * Generated by parser.TableGenerator from grammar/ebnf_no_left_recursion.txt, do not edit.
+ * Regenerate with: ant parser-tables
+ */
+final class ParseTables {
+
+    /*
+     * program: (include)*
+     *   0: include
+     *   1: empty
+     */
+    static final int PROGRAM_1 = 0;
+
+    /*
+     * program: (structdecl)*
+     *   0: structdecl
+     *   1: empty
+     */
+    static final int PROGRAM_2 = 1;
+
+    /*
+     * program: (vardecl)*
+     *   0: vardecl
+     *   1: empty
+     */
+    static final int PROGRAM_3 = 2;
+
+    /*
+     * program: (fundecl)*
+     *   0: fundecl
+     *   1: empty
+     */
+    static final int PROGRAM_4 = 3;
+
+    /*
+     * structdecl: (vardecl)+
+     *   0: vardecl
+     *   1: empty
+     */
+    static final int STRUCTDECL_1 = 4;
+
+    /*
+     * vardecl: ";" | "[" INT_LITERAL "]" ";"
+     *   0: ";"
+     *   1: "[" INT_LITERAL "]" ";"
+     */
+    static final int VARDECL_1 = 5;
+
+    /*
+     * type: "int" | "char" | "void" | structtype
+     *   0: "int"
+     *   1: "char"
+     *   2: "void"
+     *   3: structtype
+     */
+    static final int TYPE_1 = 6;
+
+    /*
+     * type: ["*"]
+     *   0: "*"
+     *   1: empty
+     */
+    static final int TYPE_2 = 7;
+
+    /*
+     * params: [type IDENT ("," type IDENT)*]
+     *   0: type IDENT ("," type IDENT)*
+     *   1: empty
+     */
+    static final int PARAMS_1 = 8;
+
+    /*
+     * params: ("," type IDENT)*
+     *   0: "," type IDENT
+     *   1: empty
+     */
+    static final int PARAMS_2 = 9;
+
+    /*
+     * stmt: block | "while" "(" exp ")" stmt | "if" "(" exp ")" stmt ["else" stmt] | "return" [exp] ";" | exp ("=" exp ";" | ";")
+     *   0: block
+     *   1: "while" "(" exp ")" stmt
+     *   2: "if" "(" exp ")" stmt ["else" stmt]
+     *   3: "return" [exp] ";"
+     *   4: exp ("=" exp ";" | ";")
+     */
+    static final int STMT = 10;
+
+    /*
+     * stmt: ["else" stmt]
+     *   0: "else" stmt
+     *   1: empty
+     */
+    static final int STMT_1 = 11;
+
+    /*
+     * stmt: [exp]
+     *   0: exp
+     *   1: empty
+     */
+    static final int STMT_2 = 12;
+
+    /*
+     * stmt: "=" exp ";" | ";"
+     *   0: "=" exp ";"
+     *   1: ";"
+     */
+    static final int STMT_3 = 13;
+
+    /*
+     * block: (vardecl)*
+     *   0: vardecl
+     *   1: empty
+     */
+    static final int BLOCK_1 = 14;
+
+    /*
+     * block: (stmt)*
+     *   0: stmt
+     *   1: empty
+     */
+    static final int BLOCK_2 = 15;
+
+    /*
+     * exp: "(" exp ")" | (IDENT | INT_LITERAL) | "-" exp | CHAR_LITERAL | STRING_LITERAL | valueat | funcall | sizeof | typecast
+     *   0: "(" exp ")"
+     *   1: (IDENT | INT_LITERAL)
+     *   2: "-" exp
+     *   3: CHAR_LITERAL
+     *   4: STRING_LITERAL
+     *   5: valueat
+     *   6: funcall
+     *   7: sizeof
+     *   8: typecast
+     */
+    static final int EXP_1 = 16;
+
+    /*
+     * exp: IDENT | INT_LITERAL
+     *   0: IDENT
+     *   1: INT_LITERAL
+     */
+    static final int EXP_2 = 17;
+
+    /*
+     * exp_: (">" | "<" | ">=" | "<=" | "!=" | "==" | "+" | "-" | "/" | "*" | "%" | "||" | "&&") exp | "[" exp "]" | "." IDENT | empty
+     *   0: (">" | "<" | ">=" | "<=" | "!=" | "==" | "+" | "-" | "/" | "*" | "%" | "||" | "&&") exp
+     *   1: "[" exp "]"
+     *   2: "." IDENT
+     *   3: empty
+     */
+    static final int EXP_ = 18;
+
+    /*
+     * exp_: ">" | "<" | ">=" | "<=" | "!=" | "==" | "+" | "-" | "/" | "*" | "%" | "||" | "&&"
+     *   0: ">"
+     *   1: "<"
+     *   2: ">="
+     *   3: "<="
+     *   4: "!="
+     *   5: "=="
+     *   6: "+"
+     *   7: "-"
+     *   8: "/"
+     *   9: "*"
+     *   10: "%"
+     *   11: "||"
+     *   12: "&&"
+     */
+    static final int EXP__1 = 19;
+
+    /*
+     * funcall: [exp ("," exp)*]
+     *   0: exp ("," exp)*
+     *   1: empty
+     */
+    static final int FUNCALL_1 = 20;
+
+    /*
+     * funcall: ("," exp)*
+     *   0: "," exp
+     *   1: empty
+     */
+    static final int FUNCALL_2 = 21;
+
+    static final int DECISIONS = 22;
+
+    // one column per token class
+    static final int WIDTH = 39;
+
+    // start state of each decision
+    static final int[] START = {1, 2, 5, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32, 33, 34, 35, 36, 39, 40, 41, 42, 43};
+
+    /*
+     * Lookahead automata. Entry [state * WIDTH + token class ordinal] is the next state,
+     * the predicted alternative a encoded as -(a + 1), or 0 if the token cannot occur there.
+     */
+    static final short[] TABLE = {
+            /* 0 */ 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 1 */ 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -2, -2, -2, 0, 0, 0, 0, -2, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -2, 0,
+            /* 2 */ 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -2, -2, -2, 0, 0, 0, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -2, 0,
+            /* 3 */ 4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 4 */ -2, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -2, 0, 0, 0, 0, 0,
+            /* 5 */ 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 6, 10, 14, 0, 0, 0, 0, 18, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -2, 0,
+            /* 6 */ 7, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 8, 0, 0, 0, 0, 0,
+            /* 7 */ 0, 0, 0, 0, -2, 0, -1, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 8 */ 9, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 9 */ 0, 0, 0, 0, -2, 0, -1, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 10 */ 11, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 12, 0, 0, 0, 0, 0,
+            /* 11 */ 0, 0, 0, 0, -2, 0, -1, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 12 */ 13, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 13 */ 0, 0, 0, 0, -2, 0, -1, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 14 */ 15, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 16, 0, 0, 0, 0, 0,
+            /* 15 */ 0, 0, 0, 0, -2, 0, -1, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 16 */ 17, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 17 */ 0, 0, 0, 0, -2, 0, -1, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 18 */ 19, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 19 */ 20, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 21, 0, 0, 0, 0, 0,
+            /* 20 */ 0, 0, 0, 0, -2, 0, -1, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 21 */ 22, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 22 */ 0, 0, 0, 0, -2, 0, -1, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 23 */ 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, -1, -1, 0, 0, 0, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -2, 0,
+            /* 24 */ 0, 0, 0, -2, 0, 0, 0, 0, 0, 0, -1, -1, -1, 0, 0, 0, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 25 */ 0, 0, 0, 0, 0, 0, -2, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 26 */ 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, -3, -2, 0, 0, 0, 0, -4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 27 */ -2, 0, 0, 0, 0, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, 0, 0, 0, 0, 0,
+            /* 28 */ 0, 0, 0, 0, 0, -2, 0, 0, 0, 0, -1, -1, -1, 0, 0, 0, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 29 */ 0, 0, 0, 0, 0, -2, 0, 0, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 30 */ -5, 0, -1, 0, -5, 0, 0, 0, 0, 0, 0, 0, 0, -3, 0, -2, -4, 0, -5, 0, -5, -5, -5, 0, 0, 0, 0, 0, 0, 0, 0, 0, -5, -5, 0, 0, 0, 0, 0,
+            /* 31 */ -2, 0, -2, -2, -2, 0, 0, 0, 0, 0, 0, 0, 0, -2, -1, -2, -2, 0, -2, 0, -2, -2, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, -2, -2, 0, 0, 0, 0, 0,
+            /* 32 */ -1, 0, 0, 0, -1, 0, 0, 0, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, 0, -1, -1, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, -1, 0, 0, 0, 0, 0,
+            /* 33 */ 0, -1, 0, 0, 0, 0, 0, 0, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 34 */ -2, 0, -2, -2, -2, 0, 0, 0, 0, 0, -1, -1, -1, -2, 0, -2, -2, -1, -2, 0, -2, -2, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, -2, -2, 0, 0, 0, 0, 0,
+            /* 35 */ -1, 0, -1, -2, -1, 0, 0, 0, 0, 0, 0, 0, 0, -1, 0, -1, -1, 0, -1, 0, -1, -1, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, -1, 0, 0, 0, 0, 0,
+            /* 36 */ 37, 0, 0, 0, 38, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -8, 0, -5, -2, -4, 0, 0, 0, 0, 0, 0, 0, 0, 0, -3, -6, 0, 0, 0, 0, 0,
+            /* 37 */ 0, -2, 0, 0, -7, -2, -2, -2, -2, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -2, -2, -2, -2, -2, -2, -2, -2, -2, -2, -2, -2, -2, -2, 0, 0,
+            /* 38 */ -1, 0, 0, 0, -1, 0, 0, 0, 0, 0, -9, -9, -9, 0, 0, 0, 0, -9, -1, 0, -1, -1, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, -1, 0, 0, 0, 0, 0,
+            /* 39 */ -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            /* 40 */ 0, -4, 0, 0, 0, -4, -2, -4, -4, -4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -3, 0, 0,
+            /* 41 */ 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -13, -12, -6, -5, -2, -1, -4, -3, -7, -8, -10, -9, -11, 0, 0, 0,
+            /* 42 */ -1, 0, 0, 0, -1, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, 0, -1, -1, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, -1, -1, 0, 0, 0, 0, 0,
+            /* 43 */ 0, 0, 0, 0, 0, -2, 0, 0, 0, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+    };
+
+    private ParseTables() {
+    }
+}
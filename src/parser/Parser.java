@@ -1,114 +1,32 @@
 package parser;
 
 import ast.*;
-import lexer.Token;
 import lexer.Token.TokenClass;
+import lexer.TokenStream;
 import lexer.Tokeniser;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 
 
 /**
  * @author cdubach
  */
-public class Parser {
-
-    private Token token;
-
-    // use for backtracking (useful for distinguishing decls from procs when parsing a program for instance)
-    private Queue<Token> buffer = new LinkedList<>();
-
-    private final Tokeniser tokeniser;
-
+public class Parser extends BaseParser {
 
     public Parser(Tokeniser tokeniser) {
-        this.tokeniser = tokeniser;
-    }
-
-    public Program parse() {
-        // get the first token
-        nextToken();
-
-        return parseProgram();
+        this(new TokenStream(tokeniser));
     }
 
-    public int getErrorCount() {
-        return error;
-    }
-
-    private int error = 0;
-    private Token lastErrorToken;
-
-    private void error(TokenClass... expected) {
-
-        if (lastErrorToken == token) {
-            // skip this error, same token causing trouble
-            return;
-        }
-
-        StringBuilder sb = new StringBuilder();
-        String sep = "";
-        for (TokenClass e : expected) {
-            sb.append(sep);
-            sb.append(e);
-            sep = "|";
-        }
-        System.out.println("Parsing error: expected (" + sb + ") found (" + token + ") at " + token.position);
-
-        error++;
-        lastErrorToken = token;
-    }
-
-    /*
-     * Look ahead the i^th element from the stream of token.
-     * i should be >= 1
-     */
-    private Token lookAhead(int i) {
-        // ensures the buffer has the element we want to look ahead
-        while (buffer.size() < i)
-            buffer.add(tokeniser.nextToken());
-        assert buffer.size() >= i;
-
-        int cnt = 1;
-        for (Token t : buffer) {
-            if (cnt == i)
-                return t;
-            cnt++;
-        }
-
-        assert false; // should never reach this
-        return null;
-    }
-
-
-    /*
-     * Consumes the next token from the tokeniser or the buffer if not empty.
-     */
-    private void nextToken() {
-        if (!buffer.isEmpty())
-            token = buffer.remove();
-        else
-            token = tokeniser.nextToken();
+    public Parser(TokenStream tokens) {
+        super(tokens);
     }
 
     /*
-     * If the current token is equals to the expected one, then skip it, otherwise report an error.
-     * Returns the expected token or null if an error occurred.
+     * Single token variant of accept, sparing the varargs array on the common path.
      */
-    private Token expect(TokenClass... expected) {
-        for (TokenClass e : expected) {
-            if (e == token.tokenClass) {
-                Token cur = token;
-                nextToken();
-                return cur;
-            }
-        }
-
-        error(expected);
-        return null;
+    private boolean accept(TokenClass expected) {
+        return expected == tokenClass();
     }
 
     /*
@@ -117,36 +35,40 @@ public class Parser {
     private boolean accept(TokenClass... expected) {
         boolean result = false;
         for (TokenClass e : expected)
-            result |= (e == token.tokenClass);
+            result |= (e == tokenClass());
         return result;
     }
 
 
-    private Program parseProgram() {
-        parseIncludes();
+    @Override
+    protected Program parseProgram() {
+        List<String> includes = parseIncludes();
         List<StructTypeDecl> stds = parseStructDecls();
         List<VarDecl> vds = new ArrayList<>();
         if (acceptVarDecls())
             vds = parseVarDecls();
         List<FunDecl> fds = parseFunDecls();
         expect(TokenClass.EOF);
-        return new Program(stds, vds, fds);
+        return new Program(includes, stds, vds, fds);
     }
 
-    // includes are ignored, so does not need to return an AST node
-    private void parseIncludes() {
-        if (accept(TokenClass.INCLUDE)) {
+    // returns the names of the included files
+    private List<String> parseIncludes() {
+        List<String> includes = new ArrayList<>();
+        while (accept(TokenClass.INCLUDE)) {
             nextToken();
-            expect(TokenClass.STRING_LITERAL);
-            parseIncludes();
+            int n = expect(TokenClass.STRING_LITERAL);
+            if (n != -1)
+                includes.add(tokens.data(n));
         }
+        return includes;
     }
 
     private List<StructTypeDecl> parseStructDecls() {
         List<StructTypeDecl> std = new ArrayList<>();
         StructType t;
         List<VarDecl> vd;
-        if (accept(TokenClass.STRUCT) && lookAhead(2).tokenClass == TokenClass.LBRA) {
+        if (accept(TokenClass.STRUCT) && lookAhead(2) == TokenClass.LBRA) {
             t = parseStructType();
             expect(TokenClass.LBRA);
             vd = parseVarDecls();
@@ -161,14 +83,14 @@ public class Parser {
     private List<VarDecl> parseVarDecls() {
         List<VarDecl> vd = new ArrayList<>();
         Type t = parseType();
-        String s = token.data;
+        String s = data();
         IntLiteral il;
         expect(TokenClass.IDENTIFIER);
         if (accept(TokenClass.LSBR)) {
             nextToken();
             il = parseIntLiteral();
             expect(TokenClass.RSBR);
-            t = new ArrayType(t, il.i);
+            t = Types.array(t, il.i);
         }
         expect(TokenClass.SC);
         vd.add(new VarDecl(t, s));
@@ -180,16 +102,16 @@ public class Parser {
     private boolean acceptVarDecls() {
         boolean flag = false;
         if (acceptTypeNotPointerNotStruct()) {
-            if (lookAhead(1).tokenClass == TokenClass.IDENTIFIER)
-                if (lookAhead(2).tokenClass == TokenClass.SC || lookAhead(2).tokenClass == TokenClass.LSBR)
+            if (lookAhead(1) == TokenClass.IDENTIFIER)
+                if (lookAhead(2) == TokenClass.SC || lookAhead(2) == TokenClass.LSBR)
                     flag = true;
         } else if (acceptTypeNotPointerStruct() || acceptPointerTypeNotStruct()) {
-            if (lookAhead(2).tokenClass == TokenClass.IDENTIFIER)
-                if (lookAhead(3).tokenClass == TokenClass.SC || lookAhead(3).tokenClass == TokenClass.LSBR)
+            if (lookAhead(2) == TokenClass.IDENTIFIER)
+                if (lookAhead(3) == TokenClass.SC || lookAhead(3) == TokenClass.LSBR)
                     flag = true;
         } else if (acceptPointerTypeStruct()) {
-            if (lookAhead(3).tokenClass == TokenClass.IDENTIFIER)
-                if (lookAhead(4).tokenClass == TokenClass.SC || lookAhead(4).tokenClass == TokenClass.LSBR)
+            if (lookAhead(3) == TokenClass.IDENTIFIER)
+                if (lookAhead(4) == TokenClass.SC || lookAhead(4) == TokenClass.LSBR)
                     flag = true;
         }
         return flag;
@@ -202,7 +124,7 @@ public class Parser {
         Block b;
         while (acceptFunDecls()) {
             t = parseType();
-            String s = token.data;
+            String s = data();
             expect(TokenClass.IDENTIFIER);
             expect(TokenClass.LPAR);
             vd = parseParams();
@@ -216,25 +138,26 @@ public class Parser {
     private boolean acceptFunDecls() {
         boolean flag = false;
         if (acceptTypeNotPointerNotStruct()) {
-            if (lookAhead(1).tokenClass == TokenClass.IDENTIFIER)
-                if (lookAhead(2).tokenClass == TokenClass.LPAR)
+            if (lookAhead(1) == TokenClass.IDENTIFIER)
+                if (lookAhead(2) == TokenClass.LPAR)
                     flag = true;
         } else if (acceptTypeNotPointerStruct() || acceptPointerTypeNotStruct()) {
-            if (lookAhead(2).tokenClass == TokenClass.IDENTIFIER)
-                if (lookAhead(3).tokenClass == TokenClass.LPAR)
+            if (lookAhead(2) == TokenClass.IDENTIFIER)
+                if (lookAhead(3) == TokenClass.LPAR)
                     flag = true;
         } else if (acceptPointerTypeStruct()) {
-            if (lookAhead(3).tokenClass == TokenClass.IDENTIFIER)
-                if (lookAhead(4).tokenClass == TokenClass.LPAR)
+            if (lookAhead(3) == TokenClass.IDENTIFIER)
+                if (lookAhead(4) == TokenClass.LPAR)
                     flag = true;
         }
         return flag;
     }
 
-    private Type parseType() {
+    @Override
+    protected Type parseType() {
         Type t = null;
         if (accept(TokenClass.INT, TokenClass.CHAR, TokenClass.VOID)) {
-            switch (token.tokenClass) {
+            switch (tokenClass()) {
                 case INT:
                     t = BaseType.INT;
                     break;
@@ -251,16 +174,16 @@ public class Parser {
         }
         if (accept(TokenClass.ASTERIX)) {
             nextToken();
-            t = new PointerType(t);
+            t = Types.pointer(t);
         }
         return t;
     }
 
     private StructType parseStructType() {
         expect(TokenClass.STRUCT);
-        String s = token.data;
+        String s = data();
         expect(TokenClass.IDENTIFIER);
-        return new StructType(s);
+        return Types.struct(s);
     }
 
     private List<VarDecl> parseParams() {
@@ -269,14 +192,14 @@ public class Parser {
         String s;
         if (accept(TokenClass.INT, TokenClass.CHAR, TokenClass.VOID, TokenClass.STRUCT)) {
             t = parseType();
-            s = token.data;
+            s = data();
             expect(TokenClass.IDENTIFIER);
             vd.add(new VarDecl(t, s));
             while (true) {
                 if (accept(TokenClass.COMMA)) {
                     nextToken();
                     t = parseType();
-                    s = token.data;
+                    s = data();
                     expect(TokenClass.IDENTIFIER);
                     vd.add(new VarDecl(t, s));
                 } else
@@ -345,236 +268,43 @@ public class Parser {
         return new Block(vd, ps);
     }
 
-    private Expr parseExp() {
-        Expr e = parseLv7();
-        while (true) {
-            if (accept(TokenClass.OR)) {
-                nextToken();
-                e = new BinOp(e, Op.OR, parseLv7());
-            } else {
-                break;
-            }
-        }
-        return e;
-    }
-
-    private Expr parseLv7() {
-        Expr e = parseLv6();
-        while (true) {
-            if (accept(TokenClass.AND)) {
-                nextToken();
-                e = new BinOp(e, Op.AND, parseLv6());
-            } else {
-                break;
-            }
-        }
-        return e;
-    }
-
-    private Expr parseLv6() {
-        Expr e = parseLv5(), e2;
-        Op op;
-        while (true) {
-            if (accept(TokenClass.EQ, TokenClass.NE)) {
-                if (token.tokenClass == TokenClass.EQ) {
-                    op = Op.EQ;
-                } else {
-                    op = Op.NE;
-                }
-                nextToken();
-                e2 = parseLv5();
-                e = new BinOp(e, op, e2);
-            } else {
-                break;
-            }
-        }
-        return e;
-    }
-
-    private Expr parseLv5() {
-        Expr e = parseLv4(), e2;
-        Op op;
-        while (true) {
-            if (accept(TokenClass.LT, TokenClass.GT, TokenClass.LE, TokenClass.GE)) {
-                switch (token.tokenClass) {
-                    case LT:
-                        op = Op.LT;
-                        break;
-                    case GT:
-                        op = Op.GT;
-                        break;
-                    case LE:
-                        op = Op.LE;
-                        break;
-                    default:
-                        op = Op.GE;
-                }
-                nextToken();
-                e2 = parseLv4();
-                e = new BinOp(e, op, e2);
-            } else {
-                break;
-            }
-        }
-        return e;
+    @Override
+    protected boolean acceptBinary() {
+        // the precedence table tells the binary operators apart
+        return true;
     }
 
-    private Expr parseLv4() {
-        Expr e = parseLv3(), e2;
-        Op op;
-        while (true) {
-            if (accept(TokenClass.PLUS, TokenClass.MINUS)) {
-                if (token.tokenClass == TokenClass.PLUS) {
-                    op = Op.ADD;
-                } else {
-                    op = Op.SUB;
-                }
-                nextToken();
-                e2 = parseLv3();
-                e = new BinOp(e, op, e2);
-            } else {
-                break;
-            }
-        }
-        return e;
+    @Override
+    protected TokenClass acceptPrefix() {
+        TokenClass tc = tokenClass();
+        if (tc == TokenClass.ASTERIX || tc == TokenClass.MINUS)
+            return tc;
+        if (tc == TokenClass.LPAR && isTypeStart(lookAhead(1)))
+            return TokenClass.INVALID;
+        return null;
     }
 
-    private Expr parseLv3() {
-        Expr e = parseLv2(), e2;
-        Op op;
-        while (true) {
-            if (accept(TokenClass.ASTERIX, TokenClass.DIV, TokenClass.REM)) {
-                if (token.tokenClass == TokenClass.ASTERIX) {
-                    op = Op.MUL;
-                } else if (token.tokenClass == TokenClass.DIV) {
-                    op = Op.DIV;
-                } else {
-                    op = Op.MOD;
-                }
-                nextToken();
-                e2 = parseLv2();
-                e = new BinOp(e, op, e2);
-            } else {
-                break;
-            }
-        }
-        return e;
+    private static boolean isTypeStart(TokenClass tc) {
+        return tc == TokenClass.STRUCT || tc == TokenClass.INT || tc == TokenClass.CHAR || tc == TokenClass.VOID;
     }
 
-    private Expr parseLv2() {
-        if (accept(TokenClass.SIZEOF)) {
+    @Override
+    protected Expr parsePrimary() {
+        if (tokenClass() == TokenClass.LPAR)
+            return parseParenthesised();
+        if (tokenClass() == TokenClass.SIZEOF)
             return parseSizeof();
-        } else {
-            List<TokenClass> list = new ArrayList<>();
-            List<Type> t = new ArrayList<>();
-            while (true) {
-                if (accept(TokenClass.ASTERIX)) {
-                    nextToken();
-                    list.add(TokenClass.ASTERIX);
-                } else if (accept(TokenClass.MINUS)) {
-                    nextToken();
-                    list.add(TokenClass.MINUS);
-                } else if (accept(TokenClass.LPAR)
-                        && (lookAhead(1).tokenClass == TokenClass.STRUCT ||
-                        lookAhead(1).tokenClass == TokenClass.INT ||
-                        lookAhead(1).tokenClass == TokenClass.CHAR ||
-                        lookAhead(1).tokenClass == TokenClass.VOID)) {
-                    nextToken();
-                    t.add(parseType());
-                    list.add(TokenClass.INVALID);
-                    nextToken();
-                } else {
-                    break;
-                }
-            }
-            Expr e = parseLv1();
-            int i = 0;
-            for (TokenClass tc : list) {
-                switch (tc) {
-                    case ASTERIX:
-                        e = new ValueAtExpr(e);
-                        break;
-                    case MINUS:
-                        e = new BinOp(new IntLiteral(0), Op.SUB, e);
-                        break;
-                    case INVALID:
-                        e = new TypecastExpr(t.get(i), e);
-                        i++;
-                }
-            }
-            return e;
-        }
+        if (tokenClass() == TokenClass.IDENTIFIER && lookAhead(1) == TokenClass.LPAR)
+            return parseFuncall();
+        return parseFactor();
     }
 
-//    private Expr parseLv2() {
-//        Expr e = null;
-//        boolean raw = true;
-//        if (accept(TokenClass.SIZEOF)) {
-//            return parseSizeof();
-//        } else {
-//            while (true) {
-//                if (accept(TokenClass.ASTERIX, TokenClass.MINUS)) {
-//                    raw = false;
-//                    boolean flag;
-//                    if (token.tokenClass == TokenClass.ASTERIX) {
-//                        flag = true;
-//                    } else {
-//                        flag = false;
-//                    }
-//                    nextToken();
-//                    e = parseLv1();
-//                    if (flag)
-//                        e = new ValueAtExpr(e);
-//                    else
-//                        e = new BinOp(new IntLiteral(0), Op.SUB, e);
-//                } else if (accept(TokenClass.LPAR)
-//                        && (lookAhead(1).tokenClass == TokenClass.STRUCT ||
-//                        lookAhead(1).tokenClass == TokenClass.INT ||
-//                        lookAhead(1).tokenClass == TokenClass.CHAR ||
-//                        lookAhead(1).tokenClass == TokenClass.VOID)) {
-//                    raw = false;
-//                    nextToken();
-//                    Type t = parseType();
-//                    nextToken();
-//                    e = parseLv1();
-//                    e = new TypecastExpr(t, e);
-//                } else
-//                    break;
-//            }
-//            if (raw) {
-//                e = parseLv1();
-//            }
-//            return e;
-//        }
-//    }
-
-    private Expr parseLv1() {
-        Expr e, follow;
-        if (accept(TokenClass.LPAR)) {
-            nextToken();
-            e = parseExp();
-            expect(TokenClass.RPAR);
-        } else {
-            if (lookAhead(1).tokenClass == TokenClass.LPAR && accept(TokenClass.IDENTIFIER)) {
-                e = parseFuncall();
-            } else
-                e = parseFactor();
-            while (true) {
-                if (accept(TokenClass.LSBR)) {
-                    nextToken();
-                    follow = parseExp();
-                    e = new ArrayAccessExpr(e, follow);
-                    expect(TokenClass.RSBR);
-                } else if (accept(TokenClass.DOT)) {
-                    nextToken();
-                    String name = token.data;
-                    expect(TokenClass.IDENTIFIER);
-                    e = new FieldAccessExpr(e, name);
-                } else
-                    break;
-            }
-        }
-        return e;
+    @Override
+    protected TokenClass acceptPostfix() {
+        TokenClass tc = tokenClass();
+        if (tc == TokenClass.LSBR || tc == TokenClass.DOT)
+            return tc;
+        return null;
     }
 
     private Expr parseFactor() {
@@ -582,14 +312,14 @@ public class Parser {
         if (accept(TokenClass.INT_LITERAL)) {
             e = parseIntLiteral();
         } else if (accept(TokenClass.STRING_LITERAL)) {
-            e = new StrLiteral(token.data);
+            e = new StrLiteral(data());
             nextToken();
         } else if (accept(TokenClass.CHAR_LITERAL)) {
-            e = new ChrLiteral(token.data.charAt(0));
+            e = new ChrLiteral(data().charAt(0));
             nextToken();
         } else {
             if (accept(TokenClass.IDENTIFIER)) {
-                e = new VarExpr(token.data);
+                e = new VarExpr(data());
                 nextToken();
             } else {
                 error(TokenClass.IDENTIFIER);
@@ -598,15 +328,8 @@ public class Parser {
         return e;
     }
 
-    private IntLiteral parseIntLiteral() {
-        Token n = expect(TokenClass.INT_LITERAL);
-        assert n != null;
-        int i = Integer.parseInt(n.data);
-        return new IntLiteral(i);
-    }
-
     private FunCallExpr parseFuncall() {
-        String id = token.data;
+        String id = data();
         expect(TokenClass.IDENTIFIER);
         expect(TokenClass.LPAR);
         List<Expr> es = new ArrayList<>();
@@ -627,18 +350,10 @@ public class Parser {
         return new FunCallExpr(id, es);
     }
 
-    private SizeOfExpr parseSizeof() {
-        expect(TokenClass.SIZEOF);
-        expect(TokenClass.LPAR);
-        Type t = parseType();
-        expect(TokenClass.RPAR);
-        return new SizeOfExpr(t);
-    }
-
     private boolean acceptTypeNotPointerNotStruct() {
         boolean result = false;
         if (accept(TokenClass.INT, TokenClass.CHAR, TokenClass.VOID)) {
-            if (lookAhead(1).tokenClass != TokenClass.ASTERIX)
+            if (lookAhead(1) != TokenClass.ASTERIX)
                 result = true;
         }
         return result;
@@ -647,8 +362,8 @@ public class Parser {
     private boolean acceptTypeNotPointerStruct() {
         boolean result = false;
         if (accept(TokenClass.STRUCT)) {
-            if (lookAhead(1).tokenClass == TokenClass.IDENTIFIER)
-                if (lookAhead(2).tokenClass != TokenClass.ASTERIX)
+            if (lookAhead(1) == TokenClass.IDENTIFIER)
+                if (lookAhead(2) != TokenClass.ASTERIX)
                     result = true;
         }
         return result;
@@ -657,7 +372,7 @@ public class Parser {
     private boolean acceptPointerTypeNotStruct() {
         boolean result = false;
         if (accept(TokenClass.INT, TokenClass.CHAR, TokenClass.VOID)) {
-            if (lookAhead(1).tokenClass == TokenClass.ASTERIX)
+            if (lookAhead(1) == TokenClass.ASTERIX)
                 result = true;
         }
         return result;
@@ -666,8 +381,8 @@ public class Parser {
     private boolean acceptPointerTypeStruct() {
         boolean result = false;
         if (accept(TokenClass.STRUCT)) {
-            if (lookAhead(1).tokenClass == TokenClass.IDENTIFIER)
-                if (lookAhead(2).tokenClass == TokenClass.ASTERIX)
+            if (lookAhead(1) == TokenClass.IDENTIFIER)
+                if (lookAhead(2) == TokenClass.ASTERIX)
                     result = true;
         }
         return result;
@@ -676,8 +391,8 @@ public class Parser {
     /*
     private void parseExp() {
         if (accept(TokenClass.LPAR)) {
-            if (lookAhead(1).tokenClass == TokenClass.CHAR || lookAhead(1).tokenClass == TokenClass.INT
-                    || lookAhead(1).tokenClass == TokenClass.VOID || lookAhead(1).tokenClass == TokenClass.STRUCT) {
+            if (lookAhead(1) == TokenClass.CHAR || lookAhead(1) == TokenClass.INT
+                    || lookAhead(1) == TokenClass.VOID || lookAhead(1) == TokenClass.STRUCT) {
                 parseTypecast();
                 parseExp_();
             } else {
@@ -687,7 +402,7 @@ public class Parser {
                 parseExp_();
             }
         } else if (accept(TokenClass.IDENTIFIER)) {
-            if (lookAhead(1).tokenClass == TokenClass.LPAR) {
+            if (lookAhead(1) == TokenClass.LPAR) {
                 parseFuncall();
                 parseExp_();
             } else {
@@ -0,0 +1,673 @@
+package parser;
+
+import lexer.Token.TokenClass;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Build time generator of the prediction tables used by TableParser.
+ *
+ * The EBNF grammar is read and the common prefixes of alternatives are left factored.
+ * Every choice point (alternatives, optional parts and repetitions) then becomes a decision,
+ * for which a lookahead automaton is computed by simulating the grammar on the FIRST and FOLLOW
+ * contexts of each alternative, one token at a time, until a single alternative remains (LL(k)).
+ * Choices the grammar leaves ambiguous are resolved in favour of the earliest alternative,
+ * which makes options and repetitions greedy. Two of them are intended and not reported:
+ * the dangling else of stmt, which binds to the nearest if as in C, and exp_, which may
+ * continue either a nested exp or the enclosing one and is given to the nested one,
+ * so that "-" exp and valueat keep their array and field accesses: *p.x is *(p.x).
+ * The binary operators it continues with are then shaped by the precedence table of BaseParser.
+ *
+ * For a repetition or an optional part, alternative 0 enters it and alternative 1 skips it.
+ *
+ * Usage: java parser.TableGenerator grammar-file output-file
+ */
+public class TableGenerator {
+
+    // decisions still ambiguous after that many tokens of lookahead are resolved by alternative order
+    private static final int MAX_K = 8;
+
+    // rules whose ambiguity is resolved by greediness on purpose, see above
+    private static final Set<String> greedy = new HashSet<>(Arrays.asList("stmt", "exp_"));
+
+    private static final Map<String, TokenClass> spellings = new HashMap<>();
+
+    static {
+        spell("#include", TokenClass.INCLUDE);
+        spell("{", TokenClass.LBRA);
+        spell("}", TokenClass.RBRA);
+        spell("(", TokenClass.LPAR);
+        spell(")", TokenClass.RPAR);
+        spell("[", TokenClass.LSBR);
+        spell("]", TokenClass.RSBR);
+        spell(";", TokenClass.SC);
+        spell(",", TokenClass.COMMA);
+        spell("=", TokenClass.ASSIGN);
+        spell("int", TokenClass.INT);
+        spell("void", TokenClass.VOID);
+        spell("char", TokenClass.CHAR);
+        spell("if", TokenClass.IF);
+        spell("else", TokenClass.ELSE);
+        spell("while", TokenClass.WHILE);
+        spell("return", TokenClass.RETURN);
+        spell("struct", TokenClass.STRUCT);
+        spell("sizeof", TokenClass.SIZEOF);
+        spell("&&", TokenClass.AND);
+        spell("||", TokenClass.OR);
+        spell("==", TokenClass.EQ);
+        spell("!=", TokenClass.NE);
+        spell("<", TokenClass.LT);
+        spell(">", TokenClass.GT);
+        spell("<=", TokenClass.LE);
+        spell(">=", TokenClass.GE);
+        spell("+", TokenClass.PLUS);
+        spell("-", TokenClass.MINUS);
+        spell("*", TokenClass.ASTERIX);
+        spell("/", TokenClass.DIV);
+        spell("%", TokenClass.REM);
+        spell(".", TokenClass.DOT);
+    }
+
+    private static void spell(String s, TokenClass tokenClass) {
+        spellings.put(s, tokenClass);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: java " + TableGenerator.class.getName() + " grammar-file output-file");
+            System.exit(-1);
+        }
+        String grammar = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+        TableGenerator generator = new TableGenerator();
+        generator.read(grammar);
+        generator.convert();
+        generator.analyse();
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8))) {
+            generator.write(writer, args[0]);
+        }
+        System.out.println(generator.decisions.size() + " decisions, " + (generator.rows.size() - 1) + " states");
+    }
+
+
+    /* EBNF */
+
+    private static abstract class Node {
+    }
+
+    private static class Sym extends Node {
+        final String name;      // token class or rule name
+        final String spelling;  // as written in the grammar
+        final boolean terminal;
+
+        Sym(String name, String spelling, boolean terminal) {
+            this.name = name;
+            this.spelling = spelling;
+            this.terminal = terminal;
+        }
+
+        public String toString() {
+            return spelling;
+        }
+    }
+
+    private static class Seq extends Node {
+        final List<Node> items;
+
+        Seq(List<Node> items) {
+            this.items = items;
+        }
+
+        public String toString() {
+            if (items.isEmpty())
+                return "empty";
+            StringBuilder sb = new StringBuilder();
+            for (Node item : items) {
+                if (sb.length() > 0)
+                    sb.append(' ');
+                if (item instanceof Alt && ((Alt) item).alts.size() > 1)
+                    sb.append('(').append(item).append(')');
+                else
+                    sb.append(item);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static class Alt extends Node {
+        final List<Seq> alts;
+
+        Alt(List<Seq> alts) {
+            this.alts = alts;
+        }
+
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Seq alt : alts) {
+                if (sb.length() > 0)
+                    sb.append(" | ");
+                sb.append(alt);
+            }
+            return sb.toString();
+        }
+    }
+
+    private static class Repeat extends Node {
+        final char kind; // '*', '+' or '?'
+        final Node body;
+
+        Repeat(char kind, Node body) {
+            this.kind = kind;
+            this.body = body;
+        }
+
+        public String toString() {
+            if (kind == '?')
+                return "[" + body + "]";
+            return "(" + body + ")" + kind;
+        }
+    }
+
+    // rules in the order of the grammar file
+    private final Map<String, Alt> rules = new LinkedHashMap<>();
+
+    private List<String> words;
+    private int pos;
+
+    private void read(String grammar) {
+        words = new ArrayList<>();
+        int i = 0;
+        int n = grammar.length();
+        while (i < n) {
+            char c = grammar.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '#') {
+                while (i < n && grammar.charAt(i) != '\n')
+                    i++;
+            } else if (c == '"') {
+                int end = grammar.indexOf('"', i + 1);
+                words.add(grammar.substring(i, end + 1));
+                i = end + 1;
+            } else if (grammar.startsWith("::=", i)) {
+                words.add("::=");
+                i += 3;
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < n && (Character.isLetterOrDigit(grammar.charAt(i)) || grammar.charAt(i) == '_'))
+                    i++;
+                words.add(grammar.substring(start, i));
+            } else if ("|()[]*+".indexOf(c) >= 0) {
+                words.add(String.valueOf(c));
+                i++;
+            } else {
+                throw new IllegalArgumentException("unexpected character '" + c + "' in grammar");
+            }
+        }
+
+        pos = 0;
+        while (pos < words.size()) {
+            String name = words.get(pos);
+            if (!isRuleStart(pos))
+                throw new IllegalArgumentException("rule expected at " + name);
+            pos += 2;
+            rules.put(name, parseAlt());
+        }
+        for (Alt body : rules.values())
+            checkReferences(body);
+    }
+
+    private boolean isRuleStart(int i) {
+        return i + 1 < words.size() && words.get(i + 1).equals("::=");
+    }
+
+    private boolean atSeqEnd() {
+        if (pos == words.size() || isRuleStart(pos))
+            return true;
+        String w = words.get(pos);
+        return w.equals("|") || w.equals(")") || w.equals("]");
+    }
+
+    private Alt parseAlt() {
+        List<Seq> alts = new ArrayList<>();
+        alts.add(parseSeq());
+        while (pos < words.size() && words.get(pos).equals("|")) {
+            pos++;
+            alts.add(parseSeq());
+        }
+        return new Alt(alts);
+    }
+
+    private Seq parseSeq() {
+        List<Node> items = new ArrayList<>();
+        while (!atSeqEnd()) {
+            Node item = parseItem();
+            if (item == null)
+                continue;
+            if (pos < words.size() && (words.get(pos).equals("*") || words.get(pos).equals("+")))
+                item = new Repeat(words.get(pos++).charAt(0), item);
+            items.add(item);
+        }
+        return new Seq(items);
+    }
+
+    private Node parseItem() {
+        String w = words.get(pos++);
+        switch (w) {
+            case "(": {
+                Alt alt = parseAlt();
+                expectWord(")");
+                return alt;
+            }
+            case "[": {
+                Alt alt = parseAlt();
+                expectWord("]");
+                return new Repeat('?', alt);
+            }
+            case "empty":
+                return null;
+        }
+        if (w.startsWith("\"")) {
+            TokenClass tokenClass = spellings.get(w.substring(1, w.length() - 1));
+            if (tokenClass == null)
+                throw new IllegalArgumentException("unknown terminal " + w);
+            return new Sym(tokenClass.name(), w, true);
+        }
+        if (Character.isUpperCase(w.charAt(0))) {
+            String name = w.equals("IDENT") ? TokenClass.IDENTIFIER.name() : TokenClass.valueOf(w).name();
+            return new Sym(name, w, true);
+        }
+        return new Sym(w, w, false);
+    }
+
+    private void expectWord(String w) {
+        if (pos == words.size() || !words.get(pos).equals(w))
+            throw new IllegalArgumentException("'" + w + "' expected in grammar");
+        pos++;
+    }
+
+    private void checkReferences(Node n) {
+        if (n instanceof Sym) {
+            Sym s = (Sym) n;
+            if (!s.terminal && !rules.containsKey(s.name))
+                throw new IllegalArgumentException("undefined rule " + s.name);
+        } else if (n instanceof Seq) {
+            for (Node item : ((Seq) n).items)
+                checkReferences(item);
+        } else if (n instanceof Alt) {
+            for (Seq alt : ((Alt) n).alts)
+                checkReferences(alt);
+        } else {
+            checkReferences(((Repeat) n).body);
+        }
+    }
+
+    /*
+     * Factors out the leading item shared by several alternatives, e.g. exp "=" exp ";" | exp ";"
+     * becomes exp ("=" exp ";" | ";"). The group takes the place of its first member.
+     */
+    private static List<Seq> leftFactor(List<Seq> alts) {
+        Map<String, List<Seq>> groups = new LinkedHashMap<>();
+        for (Seq alt : alts) {
+            String key = alt.items.isEmpty() ? "" : alt.items.get(0).toString();
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(alt);
+        }
+        if (groups.size() == alts.size())
+            return alts;
+        List<Seq> result = new ArrayList<>();
+        for (Map.Entry<String, List<Seq>> group : groups.entrySet()) {
+            List<Seq> members = group.getValue();
+            if (members.size() == 1 || group.getKey().isEmpty()) {
+                result.addAll(members);
+                continue;
+            }
+            List<Seq> tails = new ArrayList<>();
+            for (Seq member : members)
+                tails.add(new Seq(member.items.subList(1, member.items.size())));
+            List<Node> items = new ArrayList<>();
+            items.add(members.get(0).items.get(0));
+            items.add(new Alt(leftFactor(tails)));
+            result.add(new Seq(items));
+        }
+        return result;
+    }
+
+
+    /* BNF */
+
+    private static class Decision {
+        final String name;
+        final String nonterminal;
+        final String rule;
+        final String text;
+        final List<String> alternatives = new ArrayList<>();
+        int start;
+
+        Decision(String name, String nonterminal, String rule, String text) {
+            this.name = name;
+            this.nonterminal = nonterminal;
+            this.rule = rule;
+            this.text = text;
+        }
+    }
+
+    private final List<Decision> decisions = new ArrayList<>();
+    private final Map<String, Integer> decisionCounts = new HashMap<>();
+
+    private final List<String> lhs = new ArrayList<>();
+    private final List<String[]> rhs = new ArrayList<>();
+    private final Map<String, List<Integer>> productions = new HashMap<>();
+    // every (production, index) at which a nonterminal occurs
+    private final Map<String, List<int[]>> occurrences = new HashMap<>();
+
+    private void convert() {
+        for (Map.Entry<String, Alt> rule : rules.entrySet()) {
+            String name = rule.getKey();
+            List<Seq> alts = leftFactor(rule.getValue().alts);
+            if (alts.size() == 1) {
+                addProduction(name, flatten(alts.get(0), name));
+            } else {
+                Decision d = new Decision(name.toUpperCase(), name, name, new Alt(alts).toString());
+                decisions.add(d);
+                for (Seq alt : alts) {
+                    d.alternatives.add(alt.toString());
+                    addProduction(name, flatten(alt, name));
+                }
+            }
+        }
+        for (int p = 0; p < rhs.size(); p++) {
+            String[] r = rhs.get(p);
+            for (int i = 0; i < r.length; i++) {
+                if (!isTerminal(r[i]))
+                    occurrences.computeIfAbsent(r[i], k -> new ArrayList<>()).add(new int[]{p, i});
+            }
+        }
+    }
+
+    private Decision newDecision(String rule, Node n) {
+        int count = decisionCounts.merge(rule, 1, Integer::sum);
+        String name = rule.toUpperCase() + "_" + count;
+        Decision d = new Decision(name, name, rule, n.toString());
+        decisions.add(d);
+        return d;
+    }
+
+    private List<String> flatten(Node n, String rule) {
+        List<String> result = new ArrayList<>();
+        if (n instanceof Sym) {
+            result.add(((Sym) n).name);
+        } else if (n instanceof Seq) {
+            for (Node item : ((Seq) n).items)
+                result.addAll(flatten(item, rule));
+        } else if (n instanceof Alt) {
+            List<Seq> alts = leftFactor(((Alt) n).alts);
+            if (alts.size() == 1)
+                return flatten(alts.get(0), rule);
+            Decision d = newDecision(rule, new Alt(alts));
+            for (Seq alt : alts) {
+                d.alternatives.add(alt.toString());
+                addProduction(d.nonterminal, flatten(alt, rule));
+            }
+            result.add(d.nonterminal);
+        } else {
+            Repeat r = (Repeat) n;
+            Decision d = newDecision(rule, n);
+            List<String> body = flatten(r.body, rule);
+            d.alternatives.add(r.body.toString());
+            d.alternatives.add("empty");
+            List<String> more = new ArrayList<>(body);
+            if (r.kind != '?')
+                more.add(d.nonterminal);
+            addProduction(d.nonterminal, more);
+            addProduction(d.nonterminal, new ArrayList<>());
+            if (r.kind == '+')
+                result.addAll(body);
+            result.add(d.nonterminal);
+        }
+        return result;
+    }
+
+    private void addProduction(String nonterminal, List<String> symbols) {
+        productions.computeIfAbsent(nonterminal, k -> new ArrayList<>()).add(lhs.size());
+        lhs.add(nonterminal);
+        rhs.add(symbols.toArray(new String[0]));
+    }
+
+    private boolean isTerminal(String symbol) {
+        return !productions.containsKey(symbol);
+    }
+
+
+    /* Lookahead analysis */
+
+    // return address of a production being simulated
+    private static final class Ctx {
+        final int prod;
+        final int dot;
+        final Ctx next;
+
+        Ctx(int prod, int dot, Ctx next) {
+            this.prod = prod;
+            this.dot = dot;
+            this.next = next;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Ctx))
+                return false;
+            Ctx c = (Ctx) o;
+            return prod == c.prod && dot == c.dot && Objects.equals(next, c.next);
+        }
+
+        public int hashCode() {
+            return Objects.hash(prod, dot, next);
+        }
+    }
+
+    // position reached in the grammar by one alternative; a null stack stands for any context
+    private static final class Config {
+        final int alt;
+        final int prod;
+        final int dot;
+        final Ctx stack;
+
+        Config(int alt, int prod, int dot, Ctx stack) {
+            this.alt = alt;
+            this.prod = prod;
+            this.dot = dot;
+            this.stack = stack;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Config))
+                return false;
+            Config c = (Config) o;
+            return alt == c.alt && prod == c.prod && dot == c.dot && Objects.equals(stack, c.stack);
+        }
+
+        public int hashCode() {
+            return Objects.hash(alt, prod, dot, stack);
+        }
+    }
+
+    private final int width = TokenClass.values().length;
+
+    // rows of the transition table, row 0 is unused so that 0 can mean "no transition"
+    private final List<short[]> rows = new ArrayList<>();
+
+    private void analyse() {
+        rows.add(new short[width]);
+        for (Decision d : decisions) {
+            Set<Config> configs = new HashSet<>();
+            List<Integer> alts = productions.get(d.nonterminal);
+            for (int alt = 0; alt < alts.size(); alt++)
+                closure(new Config(alt, alts.get(alt), 0, null), configs, 0);
+            d.start = state(d, configs, new ArrayList<>());
+        }
+    }
+
+    private void closure(Config c, Set<Config> out, int depth) {
+        if (depth > 200)
+            throw new IllegalStateException("left recursion in grammar at " + lhs.get(c.prod));
+        if (!out.add(c))
+            return;
+        String[] r = rhs.get(c.prod);
+        if (c.dot == r.length) {
+            if (c.stack != null) {
+                closure(new Config(c.alt, c.stack.prod, c.stack.dot, c.stack.next), out, depth);
+            } else {
+                for (int[] occ : occurrences.getOrDefault(lhs.get(c.prod), new ArrayList<>()))
+                    closure(new Config(c.alt, occ[0], occ[1] + 1, null), out, depth);
+            }
+        } else if (!isTerminal(r[c.dot])) {
+            Ctx ret = new Ctx(c.prod, c.dot + 1, c.stack);
+            for (int q : productions.get(r[c.dot]))
+                closure(new Config(c.alt, q, 0, ret), out, depth + 1);
+        }
+    }
+
+    /*
+     * Returns the table entry for the given set of configurations reached after the lookahead path:
+     * a prediction if a single alternative is left, otherwise a new state.
+     */
+    private int state(Decision d, Set<Config> configs, List<TokenClass> path) {
+        resolveConflicts(d, configs, path);
+        Set<Integer> alts = new HashSet<>();
+        for (Config c : configs)
+            alts.add(c.alt);
+        if (alts.isEmpty())
+            return 0;
+        int min = Integer.MAX_VALUE;
+        for (int alt : alts)
+            min = Math.min(min, alt);
+        if (alts.size() == 1)
+            return -(min + 1);
+        if (path.size() == MAX_K) {
+            System.out.println("warning: decision " + d.name + " needs more than " + MAX_K
+                    + " tokens of lookahead after " + path + ", alternative " + min + " chosen");
+            return -(min + 1);
+        }
+
+        Map<TokenClass, Set<Config>> moves = new TreeMap<>();
+        for (Config c : configs) {
+            String[] r = rhs.get(c.prod);
+            if (c.dot < r.length && isTerminal(r[c.dot])) {
+                TokenClass t = TokenClass.valueOf(r[c.dot]);
+                Set<Config> next = moves.computeIfAbsent(t, k -> new HashSet<>());
+                closure(new Config(c.alt, c.prod, c.dot + 1, c.stack), next, 0);
+            }
+        }
+
+        int state = rows.size();
+        short[] row = new short[width];
+        rows.add(row);
+        for (Map.Entry<TokenClass, Set<Config>> move : moves.entrySet()) {
+            path.add(move.getKey());
+            row[move.getKey().ordinal()] = (short) state(d, move.getValue(), path);
+            path.remove(path.size() - 1);
+        }
+        return state;
+    }
+
+    /*
+     * When two alternatives reach the same grammar position, and the stack of the earlier one
+     * covers the stack of the later one, the remaining input can never tell them apart:
+     * the later alternative is dropped there.
+     */
+    private void resolveConflicts(Decision d, Set<Config> configs, List<TokenClass> path) {
+        Map<Long, List<Config>> byPosition = new HashMap<>();
+        for (Config c : configs)
+            byPosition.computeIfAbsent(((long) c.prod << 32) | c.dot, k -> new ArrayList<>()).add(c);
+        Set<Config> dropped = new HashSet<>();
+        Set<String> reported = new HashSet<>();
+        for (List<Config> same : byPosition.values()) {
+            for (Config a : same) {
+                for (Config b : same) {
+                    if (a.alt < b.alt && covers(a.stack, b.stack)) {
+                        dropped.add(b);
+                        if (!greedy.contains(d.rule) && reported.add(a.alt + "/" + b.alt))
+                            System.out.println("warning: decision " + d.name + " is ambiguous" + (path.isEmpty() ? "" : " after " + path)
+                                    + ", alternative " + a.alt + " chosen over " + b.alt);
+                    }
+                }
+            }
+        }
+        configs.removeAll(dropped);
+    }
+
+    /*
+     * Returns true if every context of stack b is also a context of stack a,
+     * i.e. a is a prefix of b, its null tail accepting anything.
+     */
+    private static boolean covers(Ctx a, Ctx b) {
+        for (; a != null; a = a.next, b = b.next) {
+            if (b == null || a.prod != b.prod || a.dot != b.dot)
+                return false;
+        }
+        return true;
+    }
+
+
+    /* Output */
+
+    private void write(PrintWriter w, String grammarFile) {
+        w.println("package parser;");
+        w.println();
+        w.println("/*");
+        w.println(" * Generated by parser.TableGenerator from " + grammarFile.replace('\\', '/') + ", do not edit.");
+        w.println(" * Regenerate with: ant parser-tables");
+        w.println(" */");
+        w.println("final class ParseTables {");
+        w.println();
+        for (int i = 0; i < decisions.size(); i++) {
+            Decision d = decisions.get(i);
+            w.println("    /*");
+            w.println("     * " + d.rule + ": " + d.text);
+            for (int alt = 0; alt < d.alternatives.size(); alt++)
+                w.println("     *   " + alt + ": " + d.alternatives.get(alt));
+            w.println("     */");
+            w.println("    static final int " + d.name + " = " + i + ";");
+            w.println();
+        }
+        w.println("    static final int DECISIONS = " + decisions.size() + ";");
+        w.println();
+        w.println("    // one column per token class");
+        w.println("    static final int WIDTH = " + width + ";");
+        w.println();
+        w.println("    // start state of each decision");
+        w.print("    static final int[] START = {");
+        for (int i = 0; i < decisions.size(); i++)
+            w.print((i == 0 ? "" : ", ") + decisions.get(i).start);
+        w.println("};");
+        w.println();
+        w.println("    /*");
+        w.println("     * Lookahead automata. Entry [state * WIDTH + token class ordinal] is the next state,");
+        w.println("     * the predicted alternative a encoded as -(a + 1), or 0 if the token cannot occur there.");
+        w.println("     */");
+        w.println("    static final short[] TABLE = {");
+        for (int s = 0; s < rows.size(); s++) {
+            StringBuilder sb = new StringBuilder();
+            for (short e : rows.get(s))
+                sb.append(e).append(", ");
+            w.println("            /* " + s + " */ " + sb.toString().trim());
+        }
+        w.println("    };");
+        w.println();
+        w.println("    private ParseTables() {");
+        w.println("    }");
+        w.println("}");
+    }
+}
@@ -0,0 +1,321 @@
+package parser;
+
+import ast.*;
+import lexer.Token.TokenClass;
+import lexer.TokenStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static parser.ParseTables.*;
+
+/**
+ * A parser driven by the prediction tables generated from grammar/ebnf_no_left_recursion.txt
+ * (see TableGenerator). Every choice of the grammar is made by running the lookahead automaton
+ * of its decision, one array access per token of lookahead, and the methods below only follow
+ * the predicted alternative to build the same AST as Parser. Where no alternative is predicted,
+ * they go on as Parser does, so that both parsers report the same errors.
+ *
+ * The grammar does not give the binary operators any precedence, so exp_ only tells
+ * whether a binary operator follows; the tree is shaped by the precedence table of BaseParser.
+ */
+public class TableParser extends BaseParser {
+
+    static {
+        if (WIDTH != TokenClass.values().length)
+            throw new IllegalStateException("ParseTables is out of date, run ant parser-tables");
+    }
+
+    public TableParser(TokenStream tokens) {
+        super(tokens);
+    }
+
+    /*
+     * Runs the lookahead automaton of the decision from the current token.
+     * Returns the predicted alternative, or -1 if none of them can start here.
+     */
+    private int predict(int decision) {
+        int state = START[decision];
+        for (int i = 0; ; i++) {
+            int entry = TABLE[state * WIDTH + tokens.tokenClass(token + i).ordinal()];
+            if (entry <= 0)
+                return -entry - 1;
+            state = entry;
+        }
+    }
+
+
+    @Override
+    protected Program parseProgram() {
+        List<String> includes = new ArrayList<>();
+        while (predict(PROGRAM_1) == 0) {
+            nextToken();
+            int n = expect(TokenClass.STRING_LITERAL);
+            if (n != -1)
+                includes.add(tokens.data(n));
+        }
+        List<StructTypeDecl> stds = new ArrayList<>();
+        while (acceptStructDecl())
+            stds.add(parseStructDecl());
+        List<VarDecl> vds = new ArrayList<>();
+        while (acceptVarDecl())
+            vds.add(parseVarDecl());
+        List<FunDecl> fds = new ArrayList<>();
+        while (acceptFunDecl())
+            fds.add(parseFunDecl());
+        expect(TokenClass.EOF);
+        return new Program(includes, stds, vds, fds);
+    }
+
+    private boolean acceptStructDecl() {
+        // Parser only looks for the "{", and reports a name which is not an identifier
+        return predict(PROGRAM_2) == 0
+                || tokenClass() == TokenClass.STRUCT && tokens.tokenClass(token + 2) == TokenClass.LBRA;
+    }
+
+    /*
+     * Like Parser, a declaration is only started once the token after its name is known to be
+     * "(" for a function, or ";" or "[" for a variable, otherwise the error is reported at its type.
+     * The decision between the global variables and the functions looks that far ahead, so it
+     * also tells where the variables of a structure or of a block start.
+     */
+    private boolean acceptVarDecl() {
+        return predict(PROGRAM_3) == 0;
+    }
+
+    private boolean acceptFunDecl() {
+        return tokenClass() != TokenClass.EOF && predict(PROGRAM_3) == 1;
+    }
+
+    private StructTypeDecl parseStructDecl() {
+        StructType t = parseStructType();
+        expect(TokenClass.LBRA);
+        List<VarDecl> vd = new ArrayList<>();
+        do {
+            vd.add(parseVarDecl());
+        } while (acceptVarDecl());
+        expect(TokenClass.RBRA);
+        expect(TokenClass.SC);
+        return new StructTypeDecl(t, vd);
+    }
+
+    private VarDecl parseVarDecl() {
+        Type t = parseType();
+        String s = data();
+        expect(TokenClass.IDENTIFIER);
+        if (predict(VARDECL_1) == 1) {
+            nextToken();
+            IntLiteral il = parseIntLiteral();
+            expect(TokenClass.RSBR);
+            t = Types.array(t, il.i);
+        }
+        expect(TokenClass.SC);
+        return new VarDecl(t, s);
+    }
+
+    private FunDecl parseFunDecl() {
+        Type t = parseType();
+        String s = data();
+        expect(TokenClass.IDENTIFIER);
+        expect(TokenClass.LPAR);
+        List<VarDecl> vd = parseParams();
+        expect(TokenClass.RPAR);
+        Block b = parseBlock();
+        return new FunDecl(t, s, vd, b);
+    }
+
+    @Override
+    protected Type parseType() {
+        Type t = null;
+        switch (predict(TYPE_1)) {
+            case 0:
+                t = BaseType.INT;
+                nextToken();
+                break;
+            case 1:
+                t = BaseType.CHAR;
+                nextToken();
+                break;
+            case 2:
+                t = BaseType.VOID;
+                nextToken();
+                break;
+            default:
+                t = parseStructType();
+                break;
+        }
+        if (predict(TYPE_2) == 0) {
+            nextToken();
+            t = Types.pointer(t);
+        }
+        return t;
+    }
+
+    private StructType parseStructType() {
+        expect(TokenClass.STRUCT);
+        String s = data();
+        expect(TokenClass.IDENTIFIER);
+        return Types.struct(s);
+    }
+
+    private List<VarDecl> parseParams() {
+        List<VarDecl> vd = new ArrayList<>();
+        if (predict(PARAMS_1) == 0) {
+            vd.add(parseParam());
+            while (predict(PARAMS_2) == 0) {
+                nextToken();
+                vd.add(parseParam());
+            }
+        }
+        return vd;
+    }
+
+    private VarDecl parseParam() {
+        Type t = parseType();
+        String s = data();
+        expect(TokenClass.IDENTIFIER);
+        return new VarDecl(t, s);
+    }
+
+    private Stmt parseStmt() {
+        switch (predict(STMT)) {
+            case 0:
+                return parseBlock();
+            case 1: {
+                nextToken();
+                expect(TokenClass.LPAR);
+                Expr e = parseExp();
+                expect(TokenClass.RPAR);
+                Stmt s = parseStmt();
+                return new While(e, s);
+            }
+            case 2: {
+                nextToken();
+                expect(TokenClass.LPAR);
+                Expr e = parseExp();
+                expect(TokenClass.RPAR);
+                Stmt s1 = parseStmt(), s2 = null;
+                if (predict(STMT_1) == 0) {
+                    nextToken();
+                    s2 = parseStmt();
+                }
+                return new If(e, s1, s2);
+            }
+            case 3: {
+                nextToken();
+                Expr e = null;
+                if (predict(STMT_2) == 0)
+                    e = parseExp();
+                expect(TokenClass.SC);
+                return new Return(e);
+            }
+            default: {
+                // anything else is parsed as an expression, so that errors are reported as in Parser
+                Expr e1 = parseExp();
+                if (predict(STMT_3) != 1) {
+                    expect(TokenClass.ASSIGN);
+                    Expr e2 = parseExp();
+                    expect(TokenClass.SC);
+                    return new Assign(e1, e2);
+                }
+                nextToken();
+                return new ExprStmt(e1);
+            }
+        }
+    }
+
+    private Block parseBlock() {
+        expect(TokenClass.LBRA);
+        List<VarDecl> vd = new ArrayList<>();
+        while (acceptVarDecl())
+            vd.add(parseVarDecl());
+        List<Stmt> ps = new ArrayList<>();
+        while (predict(BLOCK_2) == 0)
+            ps.add(parseStmt());
+        expect(TokenClass.RBRA);
+        return new Block(vd, ps);
+    }
+
+    @Override
+    protected boolean acceptBinary() {
+        return predict(EXP_) == 0;
+    }
+
+    @Override
+    protected TokenClass acceptPrefix() {
+        switch (predict(EXP_1)) {
+            case 2:
+                return TokenClass.MINUS;
+            case 5:
+                return TokenClass.ASTERIX;
+            case 8:
+                return TokenClass.INVALID;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    protected Expr parsePrimary() {
+        switch (predict(EXP_1)) {
+            case 0:
+                return parseParenthesised();
+            case 1:
+                if (predict(EXP_2) == 1)
+                    return parseIntLiteral();
+                break;
+            case 3: {
+                Expr e = new ChrLiteral(data().charAt(0));
+                nextToken();
+                return e;
+            }
+            case 4: {
+                Expr e = new StrLiteral(data());
+                nextToken();
+                return e;
+            }
+            case 6:
+                return parseFuncall();
+            case 7:
+                return parseSizeof();
+            default:
+                // a "(" followed by a token which cannot start an expression, reported by parseExp as in Parser
+                if (tokenClass() == TokenClass.LPAR)
+                    return parseParenthesised();
+        }
+        // also taken by an identifier followed by a token the grammar does not allow there,
+        // which is left to the caller to report, as in Parser
+        String name = data();
+        if (expect(TokenClass.IDENTIFIER) != -1)
+            return new VarExpr(name);
+        return null;
+    }
+
+    @Override
+    protected TokenClass acceptPostfix() {
+        switch (predict(EXP_)) {
+            case 1:
+                return TokenClass.LSBR;
+            case 2:
+                return TokenClass.DOT;
+            default:
+                return null;
+        }
+    }
+
+    private FunCallExpr parseFuncall() {
+        String id = data();
+        expect(TokenClass.IDENTIFIER);
+        expect(TokenClass.LPAR);
+        List<Expr> es = new ArrayList<>();
+        if (predict(FUNCALL_1) != 1) {
+            es.add(parseExp());
+            while (predict(FUNCALL_2) == 0) {
+                nextToken();
+                es.add(parseExp());
+            }
+        }
+        expect(TokenClass.RPAR);
+        return new FunCallExpr(id, es);
+    }
+}
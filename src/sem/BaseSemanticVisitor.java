@@ -1,5 +1,11 @@
 package sem;
 
+import ast.Program;
+import ast.Types;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
 
 /**
  * 
@@ -8,7 +14,9 @@ package sem;
  */
 public abstract class BaseSemanticVisitor<T> implements SemanticVisitor<T> {
 	private int errors;
-	
+
+	// when set, error messages are recorded in this list instead of being printed
+	private List<String> deferred;
 	
 	public BaseSemanticVisitor() {
 		errors = 0;
@@ -17,9 +25,37 @@ public abstract class BaseSemanticVisitor<T> implements SemanticVisitor<T> {
 	public int getErrorCount() {
 		return errors;
 	}
+
+	void deferErrorsTo(List<String> messages) {
+		deferred = messages;
+	}
 	
 	protected void error(String message) {
-		System.err.println("semantic error: " + message);
+		message = "semantic error: " + message;
+		if (deferred != null)
+			deferred.add(message);
+		else
+			System.err.println(message);
 		errors++;
 	}
+
+	/*
+	 * Lays out the structs of p (see Types.layout) and reports those whose size cannot be known.
+	 * Returns the number of errors.
+	 */
+	int checkLayout(Program p) {
+		List<String> failures = Types.layout(p).getErrors();
+		for (String failure : failures)
+			error(failure);
+		return failures.size();
+	}
+
+	protected void printStackTrace(Throwable e) {
+		if (deferred != null) {
+			StringWriter sw = new StringWriter();
+			e.printStackTrace(new PrintWriter(sw));
+			deferred.add(sw.toString().trim());
+		} else
+			e.printStackTrace();
+	}
 }
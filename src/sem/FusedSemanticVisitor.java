@@ -0,0 +1,395 @@
+package sem;
+
+import ast.*;
+
+import java.util.List;
+
+/**
+ * Name analysis and type checking in a single traversal.
+ *
+ * Each node has its names resolved exactly as NameAnalysisVisitor does, then its type computed
+ * from those of its children exactly as TypeCheckVisitor does, so the two passes can be replaced
+ * by this one: same errors, same VarExpr.vd, FunCallExpr.fd and Expr.type annotations.
+ *
+ * TypeCheckVisitor reports no errors, but it gives up on the rest of the program at the first
+ * exception, unless an array access or a variable catches it. typing is cleared where it would
+ * have thrown and set back where the exception would have been caught, so that annotations stop
+ * at the same place. resolving is cleared in the body of a function declared twice, which
+ * NameAnalysisVisitor skips but TypeCheckVisitor still walks.
+ */
+public class FusedSemanticVisitor extends BaseSemanticVisitor<Type> {
+
+    private final SymbolTable scope;
+
+    private boolean resolving = true;
+    private boolean typing = true;
+
+    // when set, the expressions given a type are recorded here
+    private List<Expr> annotated;
+
+    public FusedSemanticVisitor() {
+        this(new SymbolTable());
+    }
+
+    FusedSemanticVisitor(SymbolTable scope) {
+        this.scope = scope;
+    }
+
+    SymbolTable getScope() {
+        return scope;
+    }
+
+    /*
+     * Whether types are still being annotated, i.e. TypeCheckVisitor would not have given up yet.
+     */
+    boolean isTyping() {
+        return typing;
+    }
+
+    void recordAnnotations(List<Expr> exprs) {
+        annotated = exprs;
+    }
+
+    private Type annotate(Expr e, Type t) {
+        e.type = t;
+        if (annotated != null)
+            annotated.add(e);
+        return t;
+    }
+
+    @Override
+    public Type visitProgram(Program p) {
+        declareGlobals(p);
+        for (FunDecl fd : p.funDecls) {
+            fd.accept(this);
+        }
+        return null;
+    }
+
+    /*
+     * Declares everything which comes before the functions: default functions, headers,
+     * structs and global variables.
+     */
+    void declareGlobals(Program p) {
+        for (String name : NameAnalysisVisitor.declareGlobals(p, scope)) {
+            error("Name declared twice by included headers: " + name);
+        }
+        for (StructTypeDecl std : p.structTypeDecls) {
+            std.accept(this);
+        }
+        for (VarDecl vd : p.varDecls) {
+            vd.accept(this);
+        }
+    }
+
+    @Override
+    public Type visitStructTypeDecl(StructTypeDecl std) {
+        String name = std.st.s;
+        if (scope.lookupCurrent(name) != null) {
+            error("Struct name already exists in the same scope: " + name);
+        } else {
+            scope.put((new StructSymbol(std)));
+            if (std.varDecls.size() != 0) {
+                scope.enterScope();
+                for (VarDecl vd : std.varDecls) {
+                    vd.accept(this);
+                }
+                scope.exitScope();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Type visitFunDecl(FunDecl p) {
+        checkBody(p, declareFunction(p));
+        return null;
+    }
+
+    /*
+     * Declares the function, unless its name is taken, and returns whether it was declared.
+     */
+    boolean declareFunction(FunDecl p) {
+        if (scope.lookupCurrent(p.name) != null) {
+            error("FunDecl already exist:" + p.name);
+            return false;
+        }
+        scope.put(new ProcSymbol(p));
+        if (p.params.size() != 0) {
+            if (p.block.varDecls.size() != 0) {
+                p.block.varDecls.addAll(p.params);
+            } else {
+                p.block.varDecls = p.params;
+            }
+        }
+        return true;
+    }
+
+    void checkBody(FunDecl p, boolean declared) {
+        if (declared) {
+            visitBlock(p.block);
+        } else {
+            resolving = false;
+            visitBlock(p.block);
+            resolving = true;
+        }
+    }
+
+    @Override
+    public Type visitBlock(Block b) {
+        if (resolving)
+            scope.enterScope();
+        for (VarDecl v : b.varDecls) {
+            v.accept(this);
+        }
+        for (Stmt s : b.Stmt) {
+            s.accept(this);
+        }
+        if (resolving)
+            scope.exitScope();
+        return null;
+    }
+
+    @Override
+    public Type visitVarDecl(VarDecl vd) {
+        if (!resolving)
+            return null;
+        if (scope.lookupCurrent(vd.varName) != null) {
+            error("var declared twice: " + vd.varName);
+        } else {
+            scope.put(new VarSymbol(vd));
+        }
+        return null;
+    }
+
+    @Override
+    public Type visitVarExpr(VarExpr v) {
+        if (resolving)
+            resolve(v);
+        if (!typing)
+            return null;
+        if (v.vd == null) {
+            if (v.std == null)
+                return null;
+            return annotate(v, v.std.st);
+        }
+        return annotate(v, v.vd.type);
+    }
+
+    private void resolve(VarExpr v) {
+        Symbol s = scope.lookup(v.name);
+        if (s == null) {
+            error("Var " + v.name + " not declared!");
+        } else if (s instanceof ProcSymbol) {
+            error(v.name + " is not declared as a var!");
+        } else if (s instanceof VarSymbol) {
+            v.vd = ((VarSymbol) s).vd;
+        } else {
+            v.std = ((StructSymbol) s).std;
+            Symbol structSymbol = scope.lookupGlobal(v.std.st.s);
+            if (structSymbol == null) {
+                error("undefined struct!");
+            } else {
+                v.std = ((StructSymbol) structSymbol).std;
+            }
+        }
+    }
+
+    @Override
+    public Type visitFunCallExpr(FunCallExpr fc) {
+        Symbol s = null;
+        if (resolving) {
+            s = scope.lookup(fc.s);
+            if (s == null)
+                error("Function: " + fc.s + " not exist!");
+            else if (!(s instanceof ProcSymbol))
+                error(fc.s + " is not defined as a Fun!");
+        }
+        // the arguments are only resolved if the function exists
+        boolean resolveArgs = s != null;
+        FunDecl fd = s instanceof ProcSymbol ? ((ProcSymbol) s).fd : fc.fd;
+        List<Expr> args = fc.Exprs;
+
+        Type type = null;
+        if (!typing || fd == null) {
+            typing = false;
+            if (resolveArgs)
+                visitAll(args);
+        } else if (args.size() != fd.params.size()) {
+            typing = false;
+            if (resolveArgs)
+                visitAll(args);
+            typing = true;
+        } else {
+            for (Expr e : args) {
+                Type t = e.accept(this);
+                if (t == null)
+                    typing = false;
+            }
+            if (typing)
+                type = annotate(fc, fd.type);
+        }
+
+        if (resolveArgs) {
+            try {
+                fc.fd = ((ProcSymbol) s).fd;
+            } catch (ClassCastException e) {
+                printStackTrace(e);
+                error("ClassCastException");
+            }
+        }
+        return type;
+    }
+
+    private void visitAll(List<Expr> es) {
+        for (Expr e : es) {
+            e.accept(this);
+        }
+    }
+
+    @Override
+    public Type visitBinOp(BinOp bo) {
+        Type lhsT = bo.Exprs1.accept(this);
+        Type rhsT = bo.Exprs2.accept(this);
+        if (!typing)
+            return null;
+        if (bo.op != Op.NE && bo.op != Op.EQ) {
+            if (lhsT == BaseType.INT && rhsT == BaseType.INT)
+                return BaseType.INT;
+            return null;
+        }
+        return annotate(bo, BaseType.INT);
+    }
+
+    @Override
+    public Type visitArrayAccessExpr(ArrayAccessExpr aae) {
+        boolean wasTyping = typing;
+        Type t = aae.e1.accept(this);
+        Type indexT = aae.e2.accept(this);
+        if (!typing) {
+            // caught by TypeCheckVisitor.visitArrayAccessExpr
+            typing = wasTyping;
+            return null;
+        }
+        if ((t instanceof PointerType || t instanceof ArrayType) && indexT == BaseType.INT) {
+            if (t instanceof PointerType)
+                return annotate(aae, ((PointerType) t).t);
+            return annotate(aae, ((ArrayType) t).t);
+        }
+        return null;
+    }
+
+    @Override
+    public Type visitFieldAccessExpr(FieldAccessExpr fae) {
+        Type t = fae.e.accept(this);
+        if (!typing)
+            return null;
+        if (t instanceof StructType && fae.e instanceof VarExpr && ((VarExpr) fae.e).std != null) {
+            for (VarDecl vd : ((VarExpr) fae.e).std.varDecls) {
+                if (vd.varName.equals(fae.s))
+                    return annotate(fae, vd.type);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Type visitValueAtExpr(ValueAtExpr vae) {
+        Type t = vae.e.accept(this);
+        if (!typing)
+            return null;
+        if (t instanceof PointerType)
+            return annotate(vae, ((PointerType) t).t);
+        return null;
+    }
+
+    @Override
+    public Type visitSizeOfExpr(SizeOfExpr soe) {
+        if (!typing)
+            return null;
+        return annotate(soe, BaseType.INT);
+    }
+
+    @Override
+    public Type visitTypecastExpr(TypecastExpr te) {
+        Type t = te.e.accept(this);
+        if (!typing)
+            return null;
+        if (t == BaseType.CHAR && te.t == BaseType.INT)
+            return annotate(te, BaseType.INT);
+        else if ((t instanceof ArrayType || t instanceof PointerType) && te.t instanceof PointerType)
+            return annotate(te, te.t);
+        return null;
+    }
+
+    @Override
+    public Type visitIntLiteral(IntLiteral il) {
+        return BaseType.INT;
+    }
+
+    @Override
+    public Type visitStrLiteral(StrLiteral sl) {
+        return Types.array(BaseType.CHAR, sl.s.length() + 1);
+    }
+
+    @Override
+    public Type visitChrLiteral(ChrLiteral cl) {
+        return BaseType.CHAR;
+    }
+
+    @Override
+    public Type visitExprStmt(ExprStmt es) {
+        es.e.accept(this);
+        return null;
+    }
+
+    @Override
+    public Type visitWhile(While w) {
+        w.e.accept(this);
+        w.s.accept(this);
+        return null;
+    }
+
+    @Override
+    public Type visitIf(If i) {
+        i.e.accept(this);
+        i.s1.accept(this);
+        if (i.s2 != null)
+            i.s2.accept(this);
+        return null;
+    }
+
+    @Override
+    public Type visitAssign(Assign a) {
+        a.e1.accept(this);
+        a.e2.accept(this);
+        return null;
+    }
+
+    @Override
+    public Type visitReturn(Return r) {
+        if (r.e != null)
+            r.e.accept(this);
+        return null;
+    }
+
+    @Override
+    public Type visitBaseType(BaseType bt) {
+        return null;
+    }
+
+    @Override
+    public Type visitPointerType(PointerType pt) {
+        return null;
+    }
+
+    @Override
+    public Type visitStructType(StructType st) {
+        return null;
+    }
+
+    @Override
+    public Type visitArrayType(ArrayType at) {
+        return null;
+    }
+}
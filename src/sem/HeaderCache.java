@@ -0,0 +1,181 @@
+package sem;
+
+import ast.ASTCopier;
+import ast.Program;
+import lexer.BufferScanner;
+import lexer.TokenStream;
+import lexer.Tokeniser;
+import parser.Parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the #include directives of a program into Program.headers.
+ *
+ * A header is a Mini-C file whose declarations become visible to the including program,
+ * together with those of the headers it includes itself. Headers are searched for in the
+ * directory of the including file, then in the search path. minic-stdlib.h is provided by the
+ * built-in functions, and headers which cannot be found (e.g. stdio.h) are ignored.
+ *
+ * Each header is lexed and parsed once, and the tree the parser built is kept under its canonical
+ * path with a hash of its content, for as long as the file is unchanged. Semantic analysis and
+ * constant folding annotate and rewrite the trees they are given, so every compilation gets its own
+ * copy of the header, whose includes are then resolved and which is checked by the analyzer of the
+ * including program. Headers with syntax errors are not kept, so that their errors are reported
+ * again by the next program.
+ *
+ * Main compiles a single source, so there the cache only shares the headers included more than
+ * once by that compilation. Parsing each header once across many sources is for drivers which
+ * compile several of them in one process through shared().
+ */
+public class HeaderCache {
+
+    public static final String STDLIB = "minic-stdlib.h";
+
+    private static final HeaderCache shared = new HeaderCache();
+
+    public static HeaderCache shared() {
+        return shared;
+    }
+
+    private static class Entry {
+        final byte[] digest;
+        // as parsed, never annotated
+        final Program header;
+        final int errors;
+
+        Entry(byte[] digest, Program header, int errors) {
+            this.digest = digest;
+            this.header = header;
+            this.errors = errors;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private int hits = 0;
+    private int misses = 0;
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /*
+     * Resolves the includes of the program read from source and returns the number of errors
+     * found in the headers, which are checked by analyzer. Each header is included at most once.
+     */
+    public synchronized int resolve(Program p, File source, List<File> searchPath, SemanticAnalyzer analyzer) {
+        return resolve(p, source.getAbsoluteFile().getParentFile(), searchPath, analyzer, new HashSet<>(), new HashMap<>());
+    }
+
+    /*
+     * The headers already resolved for this compilation are shared by all the programs including them.
+     */
+    private int resolve(Program p, File dir, List<File> searchPath, SemanticAnalyzer analyzer, Set<String> active,
+                        Map<String, Program> resolved) {
+        int errors = 0;
+        Set<String> included = new HashSet<>();
+        for (String name : p.includes) {
+            if (name.equals(STDLIB))
+                continue;
+            File file = find(name, dir, searchPath);
+            if (file == null)
+                continue;
+            try {
+                String path = file.getCanonicalPath();
+                if (!included.add(path))
+                    continue;
+                Program header = resolved.get(path);
+                // a header which includes itself is left out
+                if (header == null && active.add(path)) {
+                    try {
+                        Entry e = load(path);
+                        header = new ASTCopier().copy(e.header);
+                        int headerErrors = e.errors;
+                        if (headerErrors == 0)
+                            headerErrors += resolve(header, new File(path).getParentFile(), searchPath, analyzer, active, resolved);
+                        if (headerErrors == 0)
+                            headerErrors += analyzer.analyze(header);
+                        errors += headerErrors;
+                        resolved.put(path, header);
+                    } finally {
+                        active.remove(path);
+                    }
+                }
+                if (header != null)
+                    p.headers.add(header);
+            } catch (IOException e) {
+                System.out.println("Cannot read header " + file + ": " + e.getMessage());
+                errors++;
+            }
+        }
+        return errors;
+    }
+
+    private static File find(String name, File dir, List<File> searchPath) {
+        File file = new File(name);
+        if (file.isAbsolute())
+            return file.isFile() ? file : null;
+        file = new File(dir, name);
+        if (file.isFile())
+            return file;
+        for (File d : searchPath) {
+            file = new File(d, name);
+            if (file.isFile())
+                return file;
+        }
+        return null;
+    }
+
+    /*
+     * Returns the header parsed from the file at the given canonical path.
+     */
+    private Entry load(String path) throws IOException {
+        byte[] content = Files.readAllBytes(new File(path).toPath());
+        byte[] digest = digest(content);
+        Entry e = entries.get(path);
+        if (e != null && Arrays.equals(e.digest, digest)) {
+            hits++;
+            return e;
+        }
+        misses++;
+        CharBuffer chars = Charset.defaultCharset().decode(ByteBuffer.wrap(content));
+        char[] source = new char[chars.remaining()];
+        chars.get(source);
+        Tokeniser tokeniser = new Tokeniser(new BufferScanner(source));
+        Parser parser = new Parser(new TokenStream(tokeniser));
+        Program header = parser.parse();
+        int errors = tokeniser.getErrorCount() + parser.getErrorCount();
+        e = new Entry(digest, header, errors);
+        if (errors == 0)
+            entries.put(path, e);
+        else
+            entries.remove(path);
+        return e;
+    }
+
+    private static byte[] digest(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
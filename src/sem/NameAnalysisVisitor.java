@@ -3,12 +3,14 @@ package sem;
 import ast.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 public class NameAnalysisVisitor extends BaseSemanticVisitor<Void> {
 
-    private Scope scope = new Scope();
-    private Scope rootScope = scope;
+    private final SymbolTable scope = new SymbolTable();
 
     @Override
     public Void visitBaseType(BaseType bt) {
@@ -23,12 +25,11 @@ public class NameAnalysisVisitor extends BaseSemanticVisitor<Void> {
         } else {
             scope.put((new StructSymbol(std)));
             if (std.varDecls.size() != 0) {
-                Scope oldScope = scope;
-                scope = new Scope(oldScope);
+                scope.enterScope();
                 for (VarDecl vd : std.varDecls) {
                     vd.accept(this);
                 }
-                scope = oldScope;
+                scope.exitScope();
             }
         }
         return null;
@@ -36,15 +37,14 @@ public class NameAnalysisVisitor extends BaseSemanticVisitor<Void> {
 
     @Override
     public Void visitBlock(Block b) {
-        Scope oldScope = scope;
-        scope = new Scope(oldScope);
+        scope.enterScope();
         for (VarDecl v : b.varDecls) {
             v.accept(this);
         }
         for (Stmt s : b.Stmt) {
             s.accept(this);
         }
-        scope = oldScope;
+        scope.exitScope();
         return null;
     }
 
@@ -69,11 +69,40 @@ public class NameAnalysisVisitor extends BaseSemanticVisitor<Void> {
 
     @Override
     public Void visitProgram(Program p) {
+        for (String name : declareGlobals(p, scope)) {
+            error("Name declared twice by included headers: " + name);
+        }
+
+        if (p.structTypeDecls.size() != 0) {
+            for (StructTypeDecl std : p.structTypeDecls) {
+                std.accept(this);
+            }
+        }
+
+        if (p.varDecls.size() != 0) {
+            for (VarDecl vd : p.varDecls) {
+                vd.accept(this);
+            }
+        }
+
+        if (p.funDecls.size() != 0) {
+            for (FunDecl fd : p.funDecls) {
+                fd.accept(this);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Declares the default functions and the declarations of the included headers, already analysed
+     * by the HeaderCache. Returns the names the headers declare more than once.
+     */
+    static List<String> declareGlobals(Program p, SymbolTable scope) {
         // Add default functions
         Block eb = new Block(null, null);
 
         List<VarDecl> params = new ArrayList<>();
-        params.add(new VarDecl(new PointerType(BaseType.CHAR), "s"));
+        params.add(new VarDecl(Types.pointer(BaseType.CHAR), "s"));
         scope.put(new ProcSymbol(new FunDecl(BaseType.VOID, "print_s", params, eb)));
 
         params = new ArrayList<>();
@@ -90,26 +119,39 @@ public class NameAnalysisVisitor extends BaseSemanticVisitor<Void> {
 
         params = new ArrayList<>();
         params.add(new VarDecl(BaseType.INT, "size"));
-        scope.put(new ProcSymbol(new FunDecl(new PointerType(BaseType.VOID), "mcmalloc", params, eb)));
+        scope.put(new ProcSymbol(new FunDecl(Types.pointer(BaseType.VOID), "mcmalloc", params, eb)));
 
-        if (p.structTypeDecls.size() != 0) {
-            for (StructTypeDecl std : p.structTypeDecls) {
-                std.accept(this);
-            }
+        List<String> duplicates = new ArrayList<>();
+        Set<Program> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Program h : p.headers) {
+            declareHeader(h, seen, scope, duplicates);
         }
+        return duplicates;
+    }
 
-        if (p.varDecls.size() != 0) {
-            for (VarDecl vd : p.varDecls) {
-                vd.accept(this);
-            }
+    private static void declareHeader(Program h, Set<Program> seen, SymbolTable scope, List<String> duplicates) {
+        if (!seen.add(h))
+            return;
+        for (Program inner : h.headers) {
+            declareHeader(inner, seen, scope, duplicates);
         }
-
-        if (p.funDecls.size() != 0) {
-            for (FunDecl fd : p.funDecls) {
-                fd.accept(this);
+        List<Symbol> symbols = new ArrayList<>();
+        for (StructTypeDecl std : h.structTypeDecls) {
+            symbols.add(new StructSymbol(std));
+        }
+        for (VarDecl vd : h.varDecls) {
+            symbols.add(new VarSymbol(vd));
+        }
+        for (FunDecl fd : h.funDecls) {
+            symbols.add(new ProcSymbol(fd));
+        }
+        for (Symbol s : symbols) {
+            if (scope.lookupCurrent(s.name) != null) {
+                duplicates.add(s.name);
+            } else {
+                scope.put(s);
             }
         }
-        return null;
     }
 
     @Override
@@ -136,7 +178,7 @@ public class NameAnalysisVisitor extends BaseSemanticVisitor<Void> {
                 return null;
             } else {
                 v.std = ((StructSymbol) s).std;
-                Symbol structSymbol = rootScope.lookup(v.std.st.s);
+                Symbol structSymbol = scope.lookupGlobal(v.std.st.s);
                 if (structSymbol == null) {
                     error("undefined struct!");
                 } else {
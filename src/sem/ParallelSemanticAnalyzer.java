@@ -0,0 +1,98 @@
+package sem;
+
+import ast.Expr;
+import ast.FunDecl;
+import ast.Program;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Semantic analysis with the function bodies checked in parallel.
+ *
+ * The global layer (default functions, headers, structs, global variables and the function
+ * signatures) is declared sequentially. Then each body is analysed by its own FusedSemanticVisitor,
+ * over a thread confined table which sees the globals declared up to its function, as in a
+ * sequential run. The error messages of each function are kept apart and printed in source order
+ * once all bodies are done.
+ *
+ * The sequential type checking gives up on every later function after an exception (see
+ * FusedSemanticVisitor), so the types annotated on the functions after the first one where that
+ * happens are erased.
+ */
+public class ParallelSemanticAnalyzer {
+
+    public int analyze(Program p) {
+        FusedSemanticVisitor global = new FusedSemanticVisitor();
+        global.declareGlobals(p);
+
+        List<BodyTask> tasks = new ArrayList<>();
+        for (FunDecl fd : p.funDecls) {
+            List<String> messages = new ArrayList<>();
+            global.deferErrorsTo(messages);
+            boolean declared = global.declareFunction(fd);
+            SymbolTable scope = new SymbolTable(global.getScope(), global.getScope().declarations());
+            tasks.add(new BodyTask(fd, declared, scope, messages));
+        }
+        global.deferErrorsTo(null);
+
+        if (tasks.size() == 1)
+            tasks.get(0).invoke();
+        else if (tasks.size() > 1)
+            ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+
+        int errors = global.getErrorCount();
+        boolean typing = true;
+        for (BodyTask task : tasks) {
+            for (String message : task.messages)
+                System.err.println(message);
+            errors += task.errors;
+            if (typing) {
+                typing = task.typing;
+            } else {
+                for (Expr e : task.annotated)
+                    e.type = null;
+            }
+        }
+        // the structs are sized once all bodies are checked, as in a sequential run
+        if (errors == 0)
+            errors += global.checkLayout(p);
+        return errors;
+    }
+
+    private static class BodyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FunDecl fd;
+        private final boolean declared;
+        private final SymbolTable scope;
+        private final List<String> messages;
+        private final List<Expr> annotated = new ArrayList<>();
+        private int errors;
+        private boolean typing;
+
+        BodyTask(FunDecl fd, boolean declared, SymbolTable scope, List<String> messages) {
+            this.fd = fd;
+            this.declared = declared;
+            this.scope = scope;
+            this.messages = messages;
+        }
+
+        @Override
+        protected void compute() {
+            FusedSemanticVisitor v = new FusedSemanticVisitor(scope);
+            v.deferErrorsTo(messages);
+            v.recordAnnotations(annotated);
+            v.checkBody(fd, declared);
+            errors = v.getErrorCount();
+            typing = v.isTyping();
+        }
+    }
+}
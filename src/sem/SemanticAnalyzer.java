@@ -4,21 +4,54 @@ import java.util.ArrayList;
 
 public class SemanticAnalyzer {
 
+    // run NameAnalysisVisitor and TypeCheckVisitor one after the other instead of the fused pass
+    private final boolean twoPass;
+    // check the function bodies in parallel, see ParallelSemanticAnalyzer
+    private final boolean parallel;
+
+    public SemanticAnalyzer() {
+        this(false);
+    }
+
+    public SemanticAnalyzer(boolean twoPass) {
+        this(twoPass, false);
+    }
+
+    public SemanticAnalyzer(boolean twoPass, boolean parallel) {
+        if (twoPass && parallel)
+            throw new IllegalArgumentException("the parallel analysis only runs the fused pass");
+        this.twoPass = twoPass;
+        this.parallel = parallel;
+    }
+
     public int analyze(ast.Program prog) {
+        return parallel ? new ParallelSemanticAnalyzer().analyze(prog) : check(prog);
+    }
+
+    private int check(ast.Program prog) {
+
         // List of visitors
-        ArrayList<SemanticVisitor> visitors = new ArrayList<SemanticVisitor>() {{
-            add(new NameAnalysisVisitor());
-            add(new TypeCheckVisitor());
+        ArrayList<BaseSemanticVisitor<?>> visitors = new ArrayList<BaseSemanticVisitor<?>>() {{
+            if (twoPass) {
+                add(new NameAnalysisVisitor());
+                add(new TypeCheckVisitor());
+            } else {
+                add(new FusedSemanticVisitor());
+            }
         }};
         // Error accumulator
         int errors = 0;
 
         // Apply each visitor to the AST
-        for (SemanticVisitor v : visitors) {
+        for (BaseSemanticVisitor<?> v : visitors) {
             prog.accept(v);
             errors += v.getErrorCount();
         }
 
+        // Size the structs, reporting those which cannot be laid out
+        if (errors == 0)
+            errors += visitors.get(visitors.size() - 1).checkLayout(prog);
+
         // Return the number of errors.
         return errors;
     }
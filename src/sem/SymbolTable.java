@@ -0,0 +1,125 @@
+package sem;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A flat symbol table for nested scopes.
+ *
+ * Each name maps to the stack of its bindings, the innermost one on top, so lookups cost a single
+ * hash access whatever the nesting depth. Every declaration is recorded in an undo log, and leaving
+ * a scope pops the bindings logged since it was entered. Entering and leaving a scope which
+ * declares nothing allocates nothing.
+ *
+ * A table may be opened over a global table that is no longer modified, seeing only the global
+ * declarations made before a given point. Such tables are confined to one thread each, while the
+ * global table is shared, e.g. to analyse function bodies in parallel.
+ */
+public class SymbolTable {
+
+    private static class Binding {
+        final Symbol symbol;
+        final int level;
+        // position of the declaration in the log
+        final int seq;
+        final Binding shadowed;
+
+        Binding(Symbol symbol, int level, int seq, Binding shadowed) {
+            this.symbol = symbol;
+            this.level = level;
+            this.seq = seq;
+            this.shadowed = shadowed;
+        }
+    }
+
+    private final Map<String, Binding> bindings = new HashMap<>();
+
+    // names declared so far, in order
+    private String[] log = new String[64];
+    private int logSize = 0;
+
+    // log size when each open scope was entered
+    private int[] marks = new int[16];
+    private int level = 0;
+
+    private final SymbolTable globals;
+    // number of the declarations of globals which are visible
+    private final int visible;
+
+    public SymbolTable() {
+        this(null, 0);
+    }
+
+    public SymbolTable(SymbolTable globals, int visible) {
+        this.globals = globals;
+        this.visible = visible;
+    }
+
+    /*
+     * Number of declarations made so far, the visible argument of a table opened over this one
+     * to see all of them.
+     */
+    public int declarations() {
+        return logSize;
+    }
+
+    public void enterScope() {
+        if (level == marks.length)
+            marks = Arrays.copyOf(marks, level * 2);
+        marks[level++] = logSize;
+    }
+
+    public void exitScope() {
+        int mark = marks[--level];
+        while (logSize > mark) {
+            String name = log[--logSize];
+            log[logSize] = null;
+            Binding b = bindings.get(name).shadowed;
+            if (b == null)
+                bindings.remove(name);
+            else
+                bindings.put(name, b);
+        }
+    }
+
+    public void put(Symbol sym) {
+        Binding b = bindings.get(sym.name);
+        if (b != null && b.level == level) {
+            // redeclaration in the same scope replaces the binding, as Scope did
+            bindings.put(sym.name, new Binding(sym, level, b.seq, b.shadowed));
+            return;
+        }
+        bindings.put(sym.name, new Binding(sym, level, logSize, b));
+        if (logSize == log.length)
+            log = Arrays.copyOf(log, logSize * 2);
+        log[logSize++] = sym.name;
+    }
+
+    public Symbol lookup(String name) {
+        Binding b = bindings.get(name);
+        if (b == null && globals != null)
+            return globals.lookupGlobal(name, visible);
+        return b == null ? null : b.symbol;
+    }
+
+    public Symbol lookupCurrent(String name) {
+        Binding b = bindings.get(name);
+        if (b == null && level == 0 && globals != null)
+            return globals.lookupGlobal(name, visible);
+        return b == null || b.level != level ? null : b.symbol;
+    }
+
+    public Symbol lookupGlobal(String name) {
+        if (globals != null)
+            return globals.lookupGlobal(name, visible);
+        return lookupGlobal(name, logSize);
+    }
+
+    private Symbol lookupGlobal(String name, int visible) {
+        Binding b = bindings.get(name);
+        while (b != null && b.level != 0)
+            b = b.shadowed;
+        return b == null || b.seq >= visible ? null : b.symbol;
+    }
+}
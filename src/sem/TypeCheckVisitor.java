@@ -155,7 +155,7 @@ public class TypeCheckVisitor extends BaseSemanticVisitor<Type> {
 
     @Override
     public Type visitStrLiteral(StrLiteral sl) {
-        return new ArrayType(BaseType.CHAR, sl.s.length() + 1);
+        return Types.array(BaseType.CHAR, sl.s.length() + 1);
     }
 
     @Override
@@ -0,0 +1,80 @@
+#!/bin/sh
+# Compiles the sample programs which have an expected output and compares:
+#   name.out    the output of the program compiled with -gen and run in MARS, both with the
+#               default inlining and with -inline-threshold 0
+#   name.ir     the dump of -ir
+#   name.stats  the rule counts printed by -gen -peephole-stats
+# and checks that -mmap and -plex, with chunks small enough to split every sample, lex as -lexer does,
+# that -table parses every sample, and the syntax errors of tests/syntax, as Parser does,
+# and that semantic analysis, headers included, reports the same with -two-pass and -psem.
+# Run from the project root after "ant build".
+
+MARS=desc/part3/Mars4_5.jar
+TMP=${TMPDIR:-/tmp}/minic-check.$$
+status=0
+
+check() {
+    if [ $? -eq 0 ] && cmp -s "$1" "$TMP"; then
+        echo "pass $*"
+    else
+        echo "FAIL $*"
+        status=1
+    fi
+}
+
+for expected in tests/*.out; do
+    [ -f "$expected" ] || continue
+    name=${expected%.*}
+    java -cp bin Main -gen "$name.c" "$TMP.asm" > /dev/null &&
+        java -jar "$MARS" nc sm "$TMP.asm" > "$TMP"
+    check "$expected"
+    java -cp bin Main -gen "$name.c" "$TMP.asm" -inline-threshold 0 > /dev/null &&
+        java -jar "$MARS" nc sm "$TMP.asm" > "$TMP"
+    check "$expected" -inline-threshold 0
+done
+
+for expected in tests/*.ir; do
+    [ -f "$expected" ] || continue
+    java -cp bin Main -ir "${expected%.*}.c" "$TMP" > /dev/null
+    check "$expected"
+done
+
+for expected in tests/*.stats; do
+    [ -f "$expected" ] || continue
+    java -cp bin Main -gen "${expected%.*}.c" "$TMP.asm" -peephole-stats > "$TMP"
+    check "$expected"
+done
+
+for source in tests/*.c tests/syntax/*.c; do
+    java -cp bin Main -lexer "$source" "$TMP.asm" > "$TMP.lex" 2>&1
+    for option in -mmap "-plex -chunk 1" "-plex -chunk 16"; do
+        java -cp bin Main -lexer "$source" "$TMP.asm" $option > "$TMP" 2>&1
+        if cmp -s "$TMP.lex" "$TMP"; then
+            echo "pass $source -lexer $option"
+        else
+            echo "FAIL $source -lexer $option"
+            status=1
+        fi
+    done
+    java -cp bin Main -ast "$source" "$TMP.asm" > "$TMP.ast"
+    java -cp bin Main -ast "$source" "$TMP.asm" -table > "$TMP"
+    if cmp -s "$TMP.ast" "$TMP"; then
+        echo "pass $source -table"
+    else
+        echo "FAIL $source -table"
+        status=1
+    fi
+    java -cp bin Main -sem "$source" "$TMP.asm" > "$TMP.sem" 2>&1
+    for option in -two-pass -psem; do
+        java -cp bin Main -sem "$source" "$TMP.asm" $option > "$TMP" 2>&1
+        if cmp -s "$TMP.sem" "$TMP"; then
+            echo "pass $source -sem $option"
+        else
+            echo "FAIL $source -sem $option"
+            status=1
+        fi
+    done
+done
+
+rm -f "$TMP" "$TMP.asm" "$TMP.lex" "$TMP.ast" "$TMP.sem"
+exit $status
@@ -0,0 +1,27 @@
+#include "minic-stdlib.h"
+
+// dead computations, stores into an array which is never read and functions main never calls
+// go away
+
+int unused(int x) {
+    return x + 1;
+}
+
+int twice(int x) {
+    return x * 2;
+}
+
+void main() {
+    int a;
+    int b;
+    int dead;
+    int scratch[2];
+    a = twice(5);
+    b = a * 7;
+    b = a + 1;
+    dead = b * 100;
+    scratch[0] = b;
+    scratch[1] = dead;
+    print_i(b);
+    print_c('\n');
+}
@@ -0,0 +1,32 @@
+#include "minic-stdlib.h"
+
+// multiplications, divisions and remainders by constants become shifts, adds and a
+// multiply-high, with the rounding towards zero of negative dividends
+
+int values[4];
+
+void main() {
+    int i;
+    int x;
+    values[0] = 100;
+    values[1] = 0 - 23;
+    values[2] = 7;
+    values[3] = 0 - 2147483647;
+    i = 0;
+    while (i < 4) {
+        x = values[i];
+        print_i(x * 8);
+        print_c(' ');
+        print_i(x * 10);
+        print_c(' ');
+        print_i(x / 4);
+        print_c(' ');
+        print_i(x / 7);
+        print_c(' ');
+        print_i(x % 3);
+        print_c(' ');
+        print_i(x % 16);
+        print_c('\n');
+        i = i + 1;
+    }
+}
@@ -0,0 +1,34 @@
+#include "minic-stdlib.h"
+
+// constant expressions, sizeof and casts of literals fold in the AST, as do the identities of
+// an expression which cannot be known
+
+struct rec {
+    int a;
+    char b;
+    int c;
+};
+
+int g;
+
+void main() {
+    int x;
+    g = 9;
+    x = g;
+    print_i(x + 0);
+    print_c(' ');
+    print_i(x * 1 - x);
+    print_c(' ');
+    print_i(x == x);
+    print_c(' ');
+    print_i(x < x);
+    print_c(' ');
+    print_i(sizeof(struct rec));
+    print_c(' ');
+    print_i(sizeof(int) * 4 + sizeof(char));
+    print_c(' ');
+    print_i((int) 'A' + 1);
+    print_c(' ');
+    print_i((2 + 3) * (10 - 4) / 7 % 3);
+    print_c('\n');
+}
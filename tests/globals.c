@@ -0,0 +1,20 @@
+#include "minic-stdlib.h"
+
+// globals accessed at a constant offset are addressed from their label
+
+int table[8];
+char name[6];
+int size;
+
+void main() {
+    table[7] = 35;
+    table[2] = 7;
+    name[0] = 'o';
+    name[4] = 'k';
+    size = 3;
+    print_i(table[7] + table[2] * size);
+    print_c(' ');
+    print_c(name[0]);
+    print_c(name[4]);
+    print_c('\n');
+}
@@ -0,0 +1,13 @@
+#include "minic-stdlib.h"
+#include "include/geometry.h"
+#include "include/point.h"
+
+// headers are found next to the including file, and each one is included once
+
+void main() {
+    scale = 2;
+    print_i(translate(0 - 3, 4));
+    print_c(' ');
+    print_i(manhattan(translate(1, 0 - 3), 5));
+    print_c('\n');
+}
@@ -0,0 +1,7 @@
+#include "point.h"
+
+int scale;
+
+int translate(int x, int dx) {
+    return x + dx * scale;
+}
@@ -0,0 +1,7 @@
+int manhattan(int x, int y) {
+    if (x < 0)
+        x = 0 - x;
+    if (y < 0)
+        y = 0 - y;
+    return x + y;
+}
@@ -0,0 +1,33 @@
+#include "minic-stdlib.h"
+
+// the address of an array walked by an induction variable becomes a pointer stepping by the
+// element size, and the loop test compares that pointer
+
+int table[10];
+char letters[6];
+
+void main() {
+    int i;
+    int sum;
+    i = 0;
+    while (i < 10) {
+        table[i] = i * i;
+        i = i + 1;
+    }
+    sum = 0;
+    i = 0;
+    while (i < 10) {
+        sum = sum + table[i];
+        i = i + 1;
+    }
+    i = 0;
+    while (i < 5) {
+        letters[i] = (char) ('a' + i);
+        i = i + 1;
+    }
+    letters[5] = '\0';
+    print_i(sum);
+    print_c(' ');
+    print_s((char*) letters);
+    print_c('\n');
+}
@@ -0,0 +1,26 @@
+#include "minic-stdlib.h"
+
+// small functions are inlined, callees first, and recursive ones stay calls
+
+int square(int x) {
+    return x * x;
+}
+
+int sumsq(int a, int b) {
+    return square(a) + square(b);
+}
+
+int fact(int n) {
+    if (n < 2)
+        return 1;
+    return n * fact(n - 1);
+}
+
+void main() {
+    print_i(sumsq(3, 4));
+    print_c(' ');
+    print_i(fact(6));
+    print_c(' ');
+    print_i(square(sumsq(1, 2)));
+    print_c('\n');
+}
@@ -0,0 +1,24 @@
+#include "minic-stdlib.h"
+
+// computations which do not change in a loop move to its preheader
+
+int base;
+int row[8];
+
+void main() {
+    int i;
+    int k;
+    int scale;
+    base = 3;
+    k = base;
+    scale = 5;
+    i = 0;
+    while (i < 8) {
+        row[i] = i + k * 100 + scale * k;
+        i = i + 1;
+    }
+    print_i(row[0]);
+    print_c(' ');
+    print_i(row[7]);
+    print_c('\n');
+}
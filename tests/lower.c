@@ -0,0 +1,42 @@
+#include "minic-stdlib.h"
+
+// globals, arrays, struct fields, strings, calls and control flow lowered to the IR
+
+struct pair {
+    int a;
+    char c;
+};
+
+int counts[4];
+char letter;
+
+int max(int x, int y) {
+    if (x > y)
+        return x;
+    return y;
+}
+
+void main() {
+    struct pair p;
+    int i;
+    char word[3];
+    p.a = 5;
+    p.c = 'z';
+    letter = p.c;
+    i = 0;
+    while (i < 4) {
+        counts[i] = max(i, 2);
+        i = i + 1;
+    }
+    word[0] = 'o';
+    word[1] = 'k';
+    word[2] = '\0';
+    print_i(counts[0] + counts[3] * 10 + p.a * 100);
+    print_c(' ');
+    print_c(letter);
+    print_c(' ');
+    print_s((char*) word);
+    print_c(' ');
+    print_s((char*) "done");
+    print_c('\n');
+}
@@ -0,0 +1,28 @@
+#include "minic-stdlib.h"
+
+// branches to the next instruction, copies and reloads left over by selection and allocation
+
+int total;
+
+int add(int a, int b) {
+    return a + b;
+}
+
+void main() {
+    int i;
+    int j;
+    i = 0;
+    total = 0;
+    while (i < 5) {
+        j = i;
+        if (j > 2)
+            total = add(total, j);
+        else
+            total = total + 1;
+        i = i + 1;
+    }
+    print_i(total);
+    print_c(' ');
+    print_i(total * 6);
+    print_c('\n');
+}
@@ -0,0 +1,26 @@
+#include "minic-stdlib.h"
+
+// a while loop is tested once before it and once at the end of each iteration
+
+int limit;
+
+void main() {
+    int i;
+    int n;
+    int sum;
+    limit = 6;
+    n = limit;
+    sum = 0;
+    i = 0;
+    while (i < n) {
+        sum = sum + i;
+        i = i + 1;
+    }
+    i = 10;
+    while (i < 5)
+        i = i + 1;
+    print_i(sum);
+    print_c(' ');
+    print_i(i);
+    print_c('\n');
+}
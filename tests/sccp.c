@@ -0,0 +1,32 @@
+#include "minic-stdlib.h"
+
+// constants flow through the branches they decide, and around loops whose phis only merge them
+
+void main() {
+    int x;
+    int y;
+    int z;
+    int k;
+    int i;
+    x = 4;
+    y = x * 3;
+    if (y > 10)
+        z = y - 2;
+    else
+        z = read_i();
+    while (z < 10)
+        z = z + 1;
+    k = 7;
+    i = 0;
+    while (i < 3) {
+        if (k != 7)
+            k = k + 1;
+        i = i + 1;
+    }
+    print_i(z * y);
+    print_c(' ');
+    print_i(k);
+    print_c(' ');
+    print_i(i);
+    print_c('\n');
+}
@@ -0,0 +1,32 @@
+#include "minic-stdlib.h"
+
+// the right operand of && and || only runs when the left one does not decide, and conditions
+// branch directly instead of materialising 0 or 1
+
+int calls;
+
+int touch(int v) {
+    calls = calls + 1;
+    return v;
+}
+
+void main() {
+    int x;
+    calls = 0;
+    if (touch(0) && touch(1))
+        print_s((char*) "and ");
+    if (touch(1) || touch(0))
+        print_s((char*) "or ");
+    print_i(calls);
+    print_c(' ');
+    x = touch(1) && touch(2);
+    print_i(x);
+    print_c(' ');
+    x = touch(0) || touch(0);
+    print_i(x);
+    print_c(' ');
+    while (calls < 10 && calls != 20)
+        calls = calls + 3;
+    print_i(calls);
+    print_c('\n');
+}
@@ -0,0 +1,42 @@
+#include "minic-stdlib.h"
+
+// locals whose address is never taken become temps, with phis where the paths join
+
+int collatz(int n) {
+    int steps;
+    steps = 0;
+    while (n != 1) {
+        if (n % 2 == 0)
+            n = n / 2;
+        else
+            n = 3 * n + 1;
+        steps = steps + 1;
+    }
+    return steps;
+}
+
+void main() {
+    int a;
+    int b;
+    int t;
+    int i;
+    int last[2];
+    a = 0;
+    b = 1;
+    i = 0;
+    while (i < 10) {
+        t = a + b;
+        a = b;
+        b = t;
+        i = i + 1;
+    }
+    // an array stays in the frame
+    last[0] = a;
+    last[1] = b;
+    print_i(collatz(27));
+    print_c(' ');
+    print_i(last[0]);
+    print_c(' ');
+    print_i(last[1]);
+    print_c('\n');
+}
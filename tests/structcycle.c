@@ -0,0 +1,18 @@
+// structs which cannot be laid out: a cycle through a member, and a member of an undeclared struct
+
+struct list {
+    int head;
+    struct node tail;
+};
+
+struct node {
+    struct list next;
+};
+
+struct box {
+    struct missing item;
+};
+
+void main() {
+    struct node n;
+}
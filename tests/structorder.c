@@ -0,0 +1,26 @@
+#include "minic-stdlib.h"
+
+// a struct member of a struct declared later takes the size of that struct
+
+struct a {
+    int x;
+    struct b inner;
+    int z;
+};
+
+struct b {
+    int p;
+    int q;
+    int r;
+};
+
+void main() {
+    struct a v;
+    v.x = 1;
+    v.inner.p = 2;
+    v.inner.r = 3;
+    v.z = 4;
+    print_i(sizeof(struct a));
+    print_c(' ');
+    print_i(v.x + v.inner.p * 10 + v.inner.r * 100 + v.z * 1000);
+}
@@ -0,0 +1,33 @@
+#include "minic-stdlib.h"
+
+// structs are passed and returned by value
+
+struct pt {
+    int x;
+    int y;
+};
+
+int getx(struct pt p) {
+    return p.x * 10 + p.y;
+}
+
+struct pt bump(struct pt p) {
+    p.x = p.x + 1;
+    return p;
+}
+
+void main() {
+    struct pt a;
+    struct pt b;
+    a.x = 3;
+    a.y = 4;
+    print_i(getx(a));
+    print_c('\n');
+    b = bump(a);
+    print_i(b.x);
+    print_c(' ');
+    print_i(b.y);
+    print_c(' ');
+    print_i(a.x);
+    print_c('\n');
+}
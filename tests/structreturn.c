@@ -0,0 +1,35 @@
+#include "minic-stdlib.h"
+
+// a struct returned by value outlives the frame of the function returning it
+
+struct pt {
+    int x;
+    int y;
+};
+
+struct pt make(int x, int y) {
+    struct pt p;
+    p.x = x;
+    p.y = y;
+    return p;
+}
+
+int sum(struct pt p) {
+    return p.x + p.y;
+}
+
+int join(struct pt p, struct pt q) {
+    return sum(p) * 100 + sum(q);
+}
+
+void main() {
+    struct pt a;
+    print_i(sum(make(8, 9)));
+    print_c(' ');
+    print_i(join(make(8, 9), make(1, 2)));
+    print_c(' ');
+    a = make(3, 4);
+    a = make(a.y, a.x);
+    print_i(a.x * 10 + a.y);
+    print_c('\n');
+}
@@ -0,0 +1,4 @@
+void main() {
+    int n;
+    n = (int n; //error here
+}
@@ -0,0 +1 @@
+int g = 3; //error here
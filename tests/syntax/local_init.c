@@ -0,0 +1,3 @@
+void main() {
+    char c = 0; //error here
+}
@@ -0,0 +1,3 @@
+void main() {
+    while (1) } //error here
+}
@@ -0,0 +1,10 @@
+struct s {
+    int a;
+};
+
+void main() {
+    struct s x;
+    struct s* p;
+    (x).a = 2;
+    (*p).a = 3;
+}
@@ -0,0 +1,4 @@
+void main() {
+    int* p;
+    (p)[0] = 1;
+}
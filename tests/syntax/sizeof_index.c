@@ -0,0 +1,4 @@
+void main() {
+    int n;
+    n = sizeof(int)[0];
+}
@@ -0,0 +1,3 @@
+struct - { //error here
+    int b;
+};